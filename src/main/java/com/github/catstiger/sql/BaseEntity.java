@@ -4,8 +4,15 @@ import java.io.Serializable;
 
 import javax.persistence.Id;
 
+import com.github.catstiger.sql.meta.EntityMeta;
+import com.github.catstiger.sql.meta.EntitySnapshot;
+
 public abstract class BaseEntity implements Serializable {
   protected Long id;
+  /**
+   * 装载时各个字段的值，用于{@link SQLRequest#updateChanged()}
+   */
+  private transient EntitySnapshot snapshot;
 
   @Id
   public Long getId() {
@@ -16,5 +23,35 @@ public abstract class BaseEntity implements Serializable {
     this.id = id;
   }
   
+  /**
+   * 使用缺省的命名策略，记录各个字段当前的值，之后{@link SQLRequest#updateChanged()}只更新发生变化的字段
+   */
+  public void takeSnapshot() {
+    takeSnapshot(SQLRequest.DEFAULT_NAME_STRATEGY);
+  }
+  
+  /**
+   * 记录各个字段当前的值，之后{@link SQLRequest#updateChanged()}只更新发生变化的字段。
+   * 通常由{@link com.github.catstiger.sql.mapper.BeanRowMapper}在装载之后调用，执行UPDATE之后，也可以再次调用。
+   * @param namingStrategy 命名策略
+   */
+  public void takeSnapshot(NamingStrategy namingStrategy) {
+    this.snapshot = EntitySnapshot.capture(EntityMeta.get(getClass(), namingStrategy), this);
+  }
+  
+  /**
+   * 返回最近一次{@link #takeSnapshot()}记录的状态，如果没有，则返回<code>null</code>
+   */
+  public EntitySnapshot snapshot() {
+    return snapshot;
+  }
+  
+  /**
+   * 清除记录的状态
+   */
+  public void clearSnapshot() {
+    this.snapshot = null;
+  }
+  
   
 }
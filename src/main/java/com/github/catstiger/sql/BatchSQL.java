@@ -0,0 +1,105 @@
+package com.github.catstiger.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+
+import com.github.catstiger.sql.stats.Fingerprint;
+
+/**
+ * 用于批量执行的SQL：一条SQL语句，以及每一次执行所对应的参数。可以直接用于
+ * {@code JdbcTemplate#batchUpdate(String, List)}，由JDBC驱动以executeBatch的方式执行：
+ * <pre>
+ * BatchSQL batchSql = new SQLRequest(User.class).insertBatch(users);
+ * jdbcTemplate.batchUpdate(batchSql.getSql(), batchSql.getBatchArgs());
+ * //或者，按照实体类元数据中的字段类型直接绑定参数
+ * jdbcTemplate.batchUpdate(batchSql.getSql(), batchSql.getBatchSetter());
+ * </pre>
+ * @author catstiger
+ *
+ */
+public final class BatchSQL {
+  private final String sql;
+  private final List<Object[]> batchArgs;
+  private final byte[] paramTypes;
+  
+  public BatchSQL(String sql, List<Object[]> batchArgs) {
+    this(sql, batchArgs, null);
+  }
+  
+  /**
+   * @param paramTypes 参数的类型，参见{@link ParameterBinder#typeOf(Class)}，可以为<code>null</code>
+   */
+  BatchSQL(String sql, List<Object[]> batchArgs, byte[] paramTypes) {
+    if(sql == null) {
+      throw new IllegalArgumentException("SQL must not be null.");
+    }
+    this.sql = sql;
+    this.batchArgs = (batchArgs == null ? Collections.emptyList() : batchArgs);
+    this.paramTypes = paramTypes;
+  }
+  
+  /**
+   * 返回SQL语句，使用?作为占位符
+   */
+  public String getSql() {
+    return sql;
+  }
+  
+  /**
+   * 返回每一次执行所对应的参数，与SQL语句中的占位符数量相同，顺序一致
+   */
+  public List<Object[]> getBatchArgs() {
+    return batchArgs;
+  }
+  
+  /**
+   * 返回SQL语句的指纹，参见{@link Fingerprint}
+   */
+  public String getFingerprint() {
+    return Fingerprint.of(sql);
+  }
+  
+  /**
+   * 批量执行的次数
+   */
+  public int size() {
+    return batchArgs.size();
+  }
+  
+  /**
+   * 将第row次执行的参数直接绑定到PreparedStatement，参见{@link ParameterBinder}
+   * @param ps PreparedStatement，由{@link #getSql()}创建
+   * @param row 第几次执行，从0开始
+   * @throws SQLException 绑定失败
+   */
+  public void bindTo(PreparedStatement ps, int row) throws SQLException {
+    Object[] args = batchArgs.get(row);
+    ParameterBinder.bind(ps, args, args.length, paramTypes);
+  }
+  
+  /**
+   * 返回一个BatchPreparedStatementSetter，调用{@link #bindTo(PreparedStatement, int)}绑定每一次执行的参数
+   */
+  public BatchPreparedStatementSetter getBatchSetter() {
+    return new BatchPreparedStatementSetter() {
+      @Override
+      public void setValues(PreparedStatement ps, int i) throws SQLException {
+        bindTo(ps, i);
+      }
+      
+      @Override
+      public int getBatchSize() {
+        return batchArgs.size();
+      }
+    };
+  }
+  
+  @Override
+  public String toString() {
+    return sql + " [" + batchArgs.size() + " rows]";
+  }
+}
@@ -0,0 +1,339 @@
+package com.github.catstiger.sql;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.github.catstiger.sql.cache.LruSQLCache;
+import com.github.catstiger.sql.cache.SQLCache;
+import com.github.catstiger.sql.cache.SQLCacheStats;
+import com.github.catstiger.sql.limit.LimitSQL;
+import com.github.catstiger.sql.meta.PropertyAccessor;
+
+/**
+ * 编译过的命名参数SQL。将SQL中的:name占位符替换为?，并记录每个?对应的参数名，之后只需按照参数名取值，
+ * 即可得到按顺序排列的参数数组，可以直接交给JdbcTemplate执行，不必每次都由NamedParameterJdbcTemplate重新解析SQL：
+ * <pre>
+ * CompiledSql compiled = CompiledSql.compile("select * from users where name=:name and dept_id=:deptId");
+ * jdbcTemplate.query(compiled.getSql(), rowMapper, compiled.bind(params));
+ * </pre>
+ * <ul>
+ *     <li>同一个SQL文本只解析一次，结果缓存在有容量限制的LRU缓存中</li>
+ *     <li>引号中的内容、注释、以及::（类型转换）不作为占位符</li>
+ *     <li>参数名可以包含“.”，例如:user.id，从实体对象取值时只使用最后一个“.”之后的部分</li>
+ *     <li>同一个参数名可以出现多次</li>
+ *     <li>参数值是集合（Iterable）或者数组（byte[]除外）时，与NamedParameterJdbcTemplate相同，展开为多个?，例如id in (:ids)展开为id in (?, ?, ?)。
+ *     展开后的SQL按照各个集合的长度缓存。只返回参数数组的{@link #bind(Map)}不能改变SQL，遇到集合会抛出异常，应该使用{@link #toSQLReady(Map)}</li>
+ * </ul>
+ * @author catstiger
+ *
+ */
+public final class CompiledSql {
+  private static final SQLCache<String, CompiledSql> cache = new LruSQLCache<String, CompiledSql>();
+  /**
+   * 展开集合参数之后的SQL，按照SQL和各个参数展开后的长度缓存
+   */
+  private static final SQLCache<ExpandKey, String> expandedCache = new LruSQLCache<ExpandKey, String>();
+  
+  private final String sql;
+  private final String[] names;
+  /**
+   * 每个参数对应的?在SQL中的位置
+   */
+  private final int[] positions;
+  /**
+   * 最近一次从实体对象取值时使用的类，及其各个参数对应的属性读写器
+   */
+  private volatile AccessorPlan plan;
+  
+  private CompiledSql(String sql, String[] names, int[] positions) {
+    this.sql = sql;
+    this.names = names;
+    this.positions = positions;
+  }
+  
+  /**
+   * 编译一个命名参数SQL，同一个SQL文本只编译一次
+   * @param namedSql 使用:name作为占位符的SQL
+   * @return Instance of CompiledSql
+   */
+  public static CompiledSql compile(String namedSql) {
+    if(namedSql == null) {
+      throw new IllegalArgumentException("SQL must not be null.");
+    }
+    CompiledSql compiled = cache.get(namedSql);
+    if(compiled == null) {
+      compiled = parse(namedSql);
+      cache.put(namedSql, compiled);
+    }
+    return compiled;
+  }
+  
+  /**
+   * 返回编译缓存的统计数据
+   */
+  public static SQLCacheStats cacheStats() {
+    return cache.stats();
+  }
+  
+  private static CompiledSql parse(String namedSql) {
+    int len = namedSql.length();
+    StringBuilder sql = new StringBuilder(len);
+    List<String> names = new ArrayList<String>(10);
+    List<Integer> positions = new ArrayList<Integer>(10);
+    int i = 0;
+    while(i < len) {
+      char c = namedSql.charAt(i);
+      if(c == '\'' || c == '"' || c == '`') { //引号
+        int end = namedSql.indexOf(c, i + 1);
+        end = (end < 0 ? len : end + 1);
+        sql.append(namedSql, i, end);
+        i = end;
+      } else if(c == '-' && i + 1 < len && namedSql.charAt(i + 1) == '-') { //单行注释
+        int end = namedSql.indexOf('\n', i);
+        end = (end < 0 ? len : end);
+        sql.append(namedSql, i, end);
+        i = end;
+      } else if(c == '/' && i + 1 < len && namedSql.charAt(i + 1) == '*') { //多行注释
+        int end = namedSql.indexOf("*/", i + 2);
+        end = (end < 0 ? len : end + 2);
+        sql.append(namedSql, i, end);
+        i = end;
+      } else if(c == ':' && i + 1 < len && namedSql.charAt(i + 1) == ':') { //类型转换
+        sql.append("::");
+        i += 2;
+      } else if(c == ':' && i + 1 < len && Character.isJavaIdentifierStart(namedSql.charAt(i + 1))) {
+        int end = i + 1;
+        while(end < len && (Character.isJavaIdentifierPart(namedSql.charAt(end)) 
+            || (namedSql.charAt(end) == '.' && end + 1 < len && Character.isJavaIdentifierStart(namedSql.charAt(end + 1))))) {
+          end++;
+        }
+        names.add(namedSql.substring(i + 1, end));
+        positions.add(sql.length());
+        sql.append('?');
+        i = end;
+      } else {
+        sql.append(c);
+        i++;
+      }
+    }
+    int[] pos = new int[positions.size()];
+    for(int n = 0; n < pos.length; n++) {
+      pos[n] = positions.get(n);
+    }
+    return new CompiledSql(SQLText.intern(sql.toString()), names.toArray(new String[names.size()]), pos);
+  }
+  
+  /**
+   * 返回使用?作为占位符的SQL
+   */
+  public String getSql() {
+    return sql;
+  }
+  
+  /**
+   * 按照占位符的顺序，返回参数名
+   */
+  public String[] getNames() {
+    return names.clone();
+  }
+  
+  /**
+   * 按照占位符的顺序，从Map中取得参数值。参数值不能是集合或者数组，否则需要展开SQL，请使用{@link #toSQLReady(Map)}
+   * @param params 命名参数，key为参数名
+   * @return 参数数组
+   */
+  public Object[] bind(Map<String, ?> params) {
+    Object[] args = new Object[names.length];
+    for(int i = 0; i < names.length; i++) {
+      Object value = value(params, i);
+      if(value instanceof Iterable || sizeOf(value) >= 0) {
+        throw new IllegalArgumentException("命名参数 " + names[i] + " 是集合或者数组，需要展开SQL，请使用toSQLReady(Map)或者SQLReady#positional()");
+      }
+      args[i] = value;
+    }
+    return args;
+  }
+  
+  /**
+   * 按照占位符的顺序，从实体对象（或者任何JavaBean）的属性中取得参数值
+   * @param entity 实体对象
+   * @return 参数数组
+   */
+  public Object[] bindBean(Object entity) {
+    AccessorPlan current = plan;
+    if(current == null || current.beanClass != entity.getClass()) {
+      current = new AccessorPlan(entity.getClass(), names);
+      plan = current;
+    }
+    Object[] args = new Object[names.length];
+    for(int i = 0; i < names.length; i++) {
+      args[i] = current.accessors[i].get(entity);
+    }
+    return args;
+  }
+  
+  /**
+   * 使用命名参数构建SQLReady，SQL使用?作为占位符，集合或者数组参数展开为多个?
+   */
+  public SQLReady toSQLReady(Map<String, ?> params) {
+    return toSQLReady(params, SQLRequest.DEFAULT_LIMIT_SQL);
+  }
+  
+  SQLReady toSQLReady(Map<String, ?> params, LimitSQL limitSql) {
+    Object[] values = new Object[names.length];
+    int[] sizes = null;
+    int count = names.length;
+    for(int i = 0; i < names.length; i++) {
+      Object value = value(params, i);
+      if(value instanceof Iterable && !(value instanceof Collection)) {
+        List<Object> items = new ArrayList<Object>();
+        for(Object item : (Iterable<?>) value) {
+          items.add(item);
+        }
+        value = items;
+      }
+      values[i] = value;
+      int size = sizeOf(value);
+      if(size >= 0) {
+        if(size == 0) {
+          throw new IllegalArgumentException("命名参数 " + names[i] + " 是空的集合或者数组，无法展开");
+        }
+        if(sizes == null) {
+          sizes = new int[names.length];
+          Arrays.fill(sizes, -1);
+        }
+        sizes[i] = size;
+        count += size - 1;
+      }
+    }
+    if(sizes == null) {
+      return new SQLReady(sql, values, limitSql);
+    }
+    
+    Object[] args = new Object[count];
+    int index = 0;
+    for(int i = 0; i < names.length; i++) {
+      Object value = values[i];
+      if(sizes[i] < 0) {
+        args[index++] = value;
+      } else if(value instanceof Collection) {
+        for(Object item : (Collection<?>) value) {
+          args[index++] = item;
+        }
+      } else {
+        for(int n = 0; n < sizes[i]; n++) {
+          args[index++] = Array.get(value, n);
+        }
+      }
+    }
+    return new SQLReady(expand(sizes), args, limitSql);
+  }
+  
+  /**
+   * 将集合参数对应的?展开为多个?，结果按照各个参数展开后的长度缓存
+   */
+  private String expand(int[] sizes) {
+    ExpandKey key = new ExpandKey(sql, sizes);
+    String expanded = expandedCache.get(key);
+    if(expanded == null) {
+      StringBuilder buf = new StringBuilder(sql.length() + sizes.length * 8);
+      int from = 0;
+      for(int i = 0; i < positions.length; i++) {
+        buf.append(sql, from, positions[i]).append('?');
+        for(int n = 1; n < sizes[i]; n++) {
+          buf.append(", ?");
+        }
+        from = positions[i] + 1;
+      }
+      buf.append(sql, from, sql.length());
+      expanded = SQLText.intern(buf.toString());
+      expandedCache.put(key, expanded);
+    }
+    return expanded;
+  }
+  
+  private Object value(Map<String, ?> params, int i) {
+    Object value = params.get(names[i]);
+    if(value == null && !params.containsKey(names[i])) {
+      throw new IllegalArgumentException("缺少命名参数 " + names[i]);
+    }
+    return value;
+  }
+  
+  /**
+   * 集合或者数组（byte[]除外）的长度，其他的参数值返回-1，其他的Iterable已经在{@link #toSQLReady(Map, LimitSQL)}中转换为List
+   */
+  private static int sizeOf(Object value) {
+    if(value == null) {
+      return -1;
+    }
+    if(value instanceof Collection) {
+      return ((Collection<?>) value).size();
+    }
+    if(value.getClass().isArray() && !(value instanceof byte[])) {
+      return Array.getLength(value);
+    }
+    return -1;
+  }
+  
+  @Override
+  public String toString() {
+    return sql;
+  }
+  
+  /**
+   * 展开集合参数之后的SQL的缓存键值，-1表示对应的参数不是集合
+   */
+  private static final class ExpandKey {
+    private final String sql;
+    private final int[] sizes;
+    private final int hash;
+    
+    ExpandKey(String sql, int[] sizes) {
+      this.sql = sql;
+      this.sizes = sizes;
+      this.hash = 31 * sql.hashCode() + Arrays.hashCode(sizes);
+    }
+    
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(!(obj instanceof ExpandKey)) {
+        return false;
+      }
+      ExpandKey other = (ExpandKey) obj;
+      return hash == other.hash && Arrays.equals(sizes, other.sizes) && sql.equals(other.sql);
+    }
+  }
+  
+  /**
+   * 某个类的属性读写器，与参数一一对应
+   */
+  private static final class AccessorPlan {
+    private final Class<?> beanClass;
+    private final PropertyAccessor[] accessors;
+    
+    AccessorPlan(Class<?> beanClass, String[] names) {
+      this.beanClass = beanClass;
+      this.accessors = new PropertyAccessor[names.length];
+      for(int i = 0; i < names.length; i++) {
+        String property = names[i].substring(names[i].lastIndexOf('.') + 1);
+        accessors[i] = PropertyAccessor.forProperty(beanClass, property);
+        if(accessors[i] == null) {
+          throw new IllegalArgumentException("属性不存在 " + beanClass.getName() + "." + property);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package com.github.catstiger.sql;
+
+import java.util.List;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLOver;
+import com.alibaba.druid.sql.ast.SQLSetQuantifier;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateExpr;
+import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
+import com.alibaba.druid.sql.ast.expr.SQLQueryExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+
+/**
+ * 使用Druid SQL解析器，将一个查询语句改写为COUNT查询：
+ * <ul>
+ *     <li>去掉ORDER BY和LIMIT子句</li>
+ *     <li>简单的查询，直接将字段列表替换为COUNT(*)，例如：SELECT id, name FROM users WHERE ... 改写为 SELECT COUNT(*) FROM users WHERE ...，
+ *     数据库不必生成派生表</li>
+ *     <li>包含DISTINCT、GROUP BY、HAVING、聚合函数（包括嵌套在表达式中的，例如IFNULL(SUM(amount), 0)）、窗口函数的查询，
+ *     以及UNION查询，仍然使用SELECT COUNT(*) FROM (...) table_</li>
+ * </ul>
+ * 改写的结果由{@link SQLFactory#countSql(String, com.github.catstiger.sql.limit.LimitSQL)}按照SQL文本缓存。
+ * @author catstiger
+ *
+ */
+final class CountSQL {
+  private CountSQL() {
+  }
+  
+  /**
+   * 改写查询语句
+   * @param querySql 查询语句
+   * @param dbType 数据库类型，参见{@link com.github.catstiger.sql.limit.LimitSQL#getDbType()}
+   * @return COUNT查询语句，如果无法解析，则返回<code>null</code>
+   */
+  static String rewrite(String querySql, String dbType) {
+    SQLSelectStatement statement = parse(querySql, dbType);
+    if(statement == null) {
+      return null;
+    }
+    SQLSelectQuery query = statement.getSelect().getQuery();
+    if(query instanceof SQLSelectQueryBlock && isSimple((SQLSelectQueryBlock) query)) {
+      SQLAggregateExpr count = new SQLAggregateExpr("COUNT");
+      count.getArguments().add(new SQLAllColumnExpr());
+      replaceSelectList((SQLSelectQueryBlock) query, count);
+      return SQLUtils.toSQLString(statement, dbType);
+    }
+    return wrap(SQLUtils.toSQLString(statement, dbType));
+  }
+  
+  /**
+   * 改写查询语句，用于有上限的COUNT查询：去掉ORDER BY和LIMIT子句，简单的查询，将字段列表替换为1，例如：
+   * SELECT id, name FROM users WHERE ... 改写为 SELECT 1 FROM users WHERE ...
+   * @return 改写后的查询语句，如果无法解析，则返回<code>null</code>
+   */
+  static String selectOne(String querySql, String dbType) {
+    SQLSelectStatement statement = parse(querySql, dbType);
+    if(statement == null) {
+      return null;
+    }
+    SQLSelectQuery query = statement.getSelect().getQuery();
+    if(query instanceof SQLSelectQueryBlock && isSimple((SQLSelectQueryBlock) query)) {
+      replaceSelectList((SQLSelectQueryBlock) query, new SQLIntegerExpr(1));
+    }
+    return SQLUtils.toSQLString(statement, dbType);
+  }
+  
+  /**
+   * 解析查询语句，并去掉顶层的ORDER BY和LIMIT子句
+   * @return 如果不是一个查询语句或者无法解析，返回<code>null</code>
+   */
+  private static SQLSelectStatement parse(String querySql, String dbType) {
+    List<SQLStatement> statements;
+    try {
+      statements = SQLUtils.parseStatements(querySql, dbType);
+    } catch (RuntimeException e) { //解析器不支持的语法
+      return null;
+    }
+    if(statements == null || statements.size() != 1 || !(statements.get(0) instanceof SQLSelectStatement)) {
+      return null;
+    }
+    SQLSelectStatement statement = (SQLSelectStatement) statements.get(0);
+    SQLSelect select = statement.getSelect();
+    select.setOrderBy(null);
+    SQLSelectQuery query = select.getQuery();
+    if(query instanceof MySqlSelectQueryBlock) {
+      MySqlSelectQueryBlock queryBlock = (MySqlSelectQueryBlock) query;
+      queryBlock.setOrderBy(null);
+      queryBlock.setLimit(null);
+    }
+    return statement;
+  }
+  
+  private static void replaceSelectList(SQLSelectQueryBlock queryBlock, SQLExpr expr) {
+    List<SQLSelectItem> selectList = queryBlock.getSelectList();
+    selectList.clear();
+    selectList.add(new SQLSelectItem(expr));
+  }
+  
+  /**
+   * 使用派生表计算行数
+   */
+  static String wrap(String querySql) {
+    return new StringBuilder(querySql.length() + 40).append("SELECT COUNT(*) FROM (").append(querySql).append(") table_ ").toString();
+  }
+  
+  /**
+   * 字段列表可以直接替换为COUNT(*)的查询：没有DISTINCT、GROUP BY、HAVING，并且字段列表的任何表达式中都没有聚合函数和窗口函数
+   */
+  private static boolean isSimple(SQLSelectQueryBlock queryBlock) {
+    int distinct = queryBlock.getDistionOption();
+    if(distinct != 0 && distinct != SQLSetQuantifier.ALL) {
+      return false;
+    }
+    if(queryBlock.getGroupBy() != null) {
+      return false;
+    }
+    AggregateFinder finder = new AggregateFinder();
+    try {
+      for(SQLSelectItem item : queryBlock.getSelectList()) {
+        item.getExpr().accept(finder);
+        if(finder.found) {
+          return false;
+        }
+      }
+    } catch (RuntimeException e) { //访问者不支持的方言节点，按照复杂查询处理
+      return false;
+    }
+    return true;
+  }
+  
+  /**
+   * 在字段列表的表达式中查找聚合函数和窗口函数，不进入标量子查询，因为子查询中的聚合函数不影响外层查询的行数
+   */
+  private static final class AggregateFinder extends MySqlASTVisitorAdapter {
+    private boolean found = false;
+    
+    @Override
+    public boolean visit(SQLAggregateExpr x) {
+      found = true;
+      return false;
+    }
+    
+    @Override
+    public boolean visit(SQLOver x) {
+      found = true;
+      return false;
+    }
+    
+    @Override
+    public boolean visit(SQLQueryExpr x) {
+      return false;
+    }
+  }
+  
+  /**
+   * 缓存的键值：数据库类型、查询语句，以及改写的方式
+   */
+  static final class Key {
+    private final String dbType;
+    private final String sql;
+    private final boolean capped;
+    private final int hash;
+    
+    Key(String dbType, String sql, boolean capped) {
+      this.dbType = dbType;
+      this.sql = sql;
+      this.capped = capped;
+      this.hash = (31 * sql.hashCode() + dbType.hashCode()) * 31 + (capped ? 1 : 0);
+    }
+    
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && capped == other.capped && dbType.equals(other.dbType) && sql.equals(other.sql);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.github.catstiger.sql;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import com.github.catstiger.sql.stats.StatementStatsRegistry;
+
+/**
+ * 逐行读取查询结果，用于数据量很大、不能一次装入List的查询，例如数据导出：
+ * <pre>
+ * try(Stream&lt;User&gt; users = Cursor.stream(jdbcTemplate, sqlReady, new BeanRowMapper&lt;&gt;(User.class))) {
+ *   users.forEach(user -&gt; writer.write(user));
+ * }
+ * </pre>
+ * <ul>
+ *     <li>使用只读、只能向前滚动的ResultSet，fetch size由{@link com.github.catstiger.sql.limit.LimitSQL#getStreamingFetchSize()}决定，
+ *     MySQL使用Integer.MIN_VALUE，驱动逐行读取数据，不会将全部结果读入内存</li>
+ *     <li>每次调用{@link #next()}的时候才读取并转换一行数据</li>
+ *     <li>读取完毕，或者调用{@link #close()}（Stream则是{@link Stream#close()}）的时候，关闭ResultSet、Statement，并释放连接。
+ *     连接通过{@link DataSourceUtils}获取，如果在Spring事务中，则使用事务所绑定的连接</li>
+ * </ul>
+ * 对于MySQL，在Cursor关闭之前，同一个连接不能执行其他的SQL。
+ * {@link StatementStatsRegistry}启用的时候，Cursor关闭时记录执行和读取数据的耗时、行数，以及转换对象的耗时。
+ * @author catstiger
+ *
+ * @param <T> 每一行转换后的类型
+ */
+public final class Cursor<T> implements Iterator<T>, Closeable {
+  private final JdbcTemplate jdbcTemplate;
+  private final String sql;
+  private final RowMapper<T> rowMapper;
+  private Connection conn;
+  private PreparedStatement ps;
+  private ResultSet rs;
+  private int rowNum = 0;
+  /**
+   * rs当前所在的行是否已经读取过，即是否需要调用rs.next()
+   */
+  private boolean consumed = true;
+  private boolean closed = false;
+  /**
+   * 执行查询和读取数据（rs.next()）的耗时，以及转换对象的耗时，单位为纳秒
+   */
+  private long fetchNanos = 0L;
+  private long mappingNanos = 0L;
+  
+  private Cursor(JdbcTemplate jdbcTemplate, String sql, RowMapper<T> rowMapper) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.sql = sql;
+    this.rowMapper = rowMapper;
+  }
+  
+  /**
+   * 执行查询，返回一个Cursor，使用完毕之后必须关闭
+   * @param jdbcTemplate 提供DataSource，以及异常的转换
+   * @param sqlReady 查询语句及其参数，可以使用命名参数
+   * @param rowMapper 将每一行转换为对象，例如{@link com.github.catstiger.sql.mapper.BeanRowMapper}
+   * @return Instance of Cursor
+   */
+  public static <T> Cursor<T> open(JdbcTemplate jdbcTemplate, SQLReady sqlReady, RowMapper<T> rowMapper) {
+    SQLReady ready = sqlReady.positional();
+    Cursor<T> cursor = new Cursor<T>(jdbcTemplate, ready.getSql(), rowMapper);
+    DataSource ds = jdbcTemplate.getDataSource();
+    try {
+      cursor.conn = DataSourceUtils.getConnection(ds);
+      cursor.ps = cursor.conn.prepareStatement(cursor.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      cursor.ps.setFetchSize(ready.getDialect().getStreamingFetchSize());
+      ready.bindTo(cursor.ps);
+      long begin = System.nanoTime();
+      cursor.rs = cursor.ps.executeQuery();
+      cursor.fetchNanos += System.nanoTime() - begin;
+    } catch (SQLException e) {
+      cursor.close();
+      throw jdbcTemplate.getExceptionTranslator().translate("Cursor", cursor.sql, e);
+    } catch (RuntimeException e) {
+      cursor.close();
+      throw e;
+    }
+    return cursor;
+  }
+  
+  /**
+   * 执行查询，返回一个顺序的Stream，使用完毕之后必须关闭，建议使用try-with-resources
+   * @see #open(JdbcTemplate, SQLReady, RowMapper)
+   */
+  public static <T> Stream<T> stream(JdbcTemplate jdbcTemplate, SQLReady sqlReady, RowMapper<T> rowMapper) {
+    return open(jdbcTemplate, sqlReady, rowMapper).stream();
+  }
+  
+  /**
+   * 将本Cursor转换为一个顺序的Stream，Stream关闭的时候，关闭本Cursor
+   */
+  public Stream<T> stream() {
+    Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED);
+    return StreamSupport.stream(spliterator, false).onClose(this::close);
+  }
+  
+  @Override
+  public boolean hasNext() {
+    if(closed) {
+      return false;
+    }
+    if(consumed) {
+      try {
+        long begin = System.nanoTime();
+        boolean hasRow = rs.next();
+        fetchNanos += System.nanoTime() - begin;
+        if(!hasRow) {
+          close();
+          return false;
+        }
+      } catch (SQLException e) {
+        close();
+        throw jdbcTemplate.getExceptionTranslator().translate("Cursor", sql, e);
+      }
+      consumed = false;
+    }
+    return true;
+  }
+  
+  @Override
+  public T next() {
+    if(!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    consumed = true;
+    long begin = System.nanoTime();
+    try {
+      return rowMapper.mapRow(rs, rowNum++);
+    } catch (SQLException e) {
+      close();
+      throw jdbcTemplate.getExceptionTranslator().translate("Cursor", sql, e);
+    } finally {
+      mappingNanos += System.nanoTime() - begin;
+    }
+  }
+  
+  /**
+   * 已经读取的行数
+   */
+  public int getRowNum() {
+    return rowNum;
+  }
+  
+  /**
+   * 关闭ResultSet、Statement，并释放连接，可以多次调用
+   */
+  @Override
+  public void close() {
+    if(closed) {
+      return;
+    }
+    closed = true;
+    if(rs != null) {
+      StatementStatsRegistry.getInstance().record(sql, fetchNanos + mappingNanos, rowNum, mappingNanos);
+    }
+    JdbcUtils.closeResultSet(rs);
+    JdbcUtils.closeStatement(ps);
+    if(conn != null) {
+      DataSourceUtils.releaseConnection(conn, jdbcTemplate.getDataSource());
+    }
+    rs = null;
+    ps = null;
+    conn = null;
+  }
+}
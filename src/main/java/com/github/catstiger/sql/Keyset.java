@@ -0,0 +1,289 @@
+package com.github.catstiger.sql;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.github.catstiger.sql.limit.LimitSQL;
+import com.github.catstiger.sql.meta.PropertyAccessor;
+import com.github.catstiger.utils.StringUtils;
+
+/**
+ * Keyset（seek）分页所使用的排序键。与LIMIT offset不同，keyset分页记住上一页最后一行的排序键的值，
+ * 下一页从这个值之后开始抓取：
+ * <pre>
+ * WHERE (created, id) &lt; (?, ?) ORDER BY created desc, id desc LIMIT 20
+ * </pre>
+ * 数据库可以利用索引直接定位，翻到多深的页面，代价都是一样的。使用方式如下：
+ * <pre>
+ * Keyset keyset = Keyset.orderBy("u.created", SQLReady.DESC).thenBy("u.id", SQLReady.DESC);
+ * SQLReady sqlReady = new SQLReady("select u.id, u.created from users u where u.status=?", status)
+ *   .seek(keyset, page.getCursor(), page.getLimit());
+ * List&lt;User&gt; rows = jdbcTemplate.query(sqlReady.getSql(), new BeanRowMapper&lt;&gt;(User.class), sqlReady.getArgs());
+ * page.setRows(rows);
+ * page.setNextCursor(keyset.nextCursor(rows, page.getLimit()));
+ * </pre>
+ * 要求：
+ * <ul>
+ *     <li>最后一个排序键必须是唯一的（通常是主键），排序键都不可以为<code>null</code></li>
+ *     <li>原始SQL中不能包含ORDER BY子句，排序由Keyset生成；最外层也不能包含GROUP BY、HAVING、UNION和LIMIT子句</li>
+ *     <li>游标（cursor）是排序键的值经过编码的字符串，可以原样返回给客户端，下一次请求时再传回来</li>
+ * </ul>
+ * @author catstiger
+ *
+ */
+public final class Keyset implements Serializable {
+  private static final long serialVersionUID = -6153870325838436719L;
+  
+  private final List<String> columns;
+  private final List<Boolean> descs;
+  
+  private Keyset(List<String> columns, List<Boolean> descs) {
+    this.columns = columns;
+    this.descs = descs;
+  }
+  
+  /**
+   * 创建一个Keyset，指定第一个排序键
+   * @param column 字段名，可以带有表的别名，例如u.created
+   * @param direction 排序方向，{@link SQLReady#ASC}或者{@link SQLReady#DESC}
+   */
+  public static Keyset orderBy(String column, String direction) {
+    return new Keyset(Collections.<String>emptyList(), Collections.<Boolean>emptyList()).thenBy(column, direction);
+  }
+  
+  /**
+   * 追加一个排序键，返回一个新的Keyset
+   * @param column 字段名，可以带有表的别名，例如u.id
+   * @param direction 排序方向，{@link SQLReady#ASC}或者{@link SQLReady#DESC}
+   */
+  public Keyset thenBy(String column, String direction) {
+    if(StringUtils.isBlank(column)) {
+      throw new IllegalArgumentException("Sql column must not be null.");
+    }
+    List<String> cols = new ArrayList<>(columns);
+    List<Boolean> dirs = new ArrayList<>(descs);
+    cols.add(column.trim());
+    dirs.add(SQLReady.DESC.equalsIgnoreCase(direction));
+    return new Keyset(Collections.unmodifiableList(cols), Collections.unmodifiableList(dirs));
+  }
+  
+  public List<String> getColumns() {
+    return columns;
+  }
+  
+  /**
+   * 排序键的数量
+   */
+  public int size() {
+    return columns.size();
+  }
+  
+  /**
+   * 生成ORDER BY子句
+   */
+  String orderByClause() {
+    StringBuilder sql = new StringBuilder(20 + columns.size() * 20).append(" ORDER BY ");
+    for(int i = 0; i < columns.size(); i++) {
+      if(i > 0) {
+        sql.append(", ");
+      }
+      sql.append(columns.get(i)).append(descs.get(i) ? " desc" : " asc");
+    }
+    return sql.toString();
+  }
+  
+  /**
+   * 生成“位于游标之后”的条件，并按照占位符的顺序把参数追加到args中。如果数据库支持行值比较，并且所有排序键的方向相同，
+   * 则生成(a, b) &gt; (?, ?)，否则生成等价的展开形式(a &gt; ? OR (a = ? AND b &gt; ?))
+   * @param values 游标中的排序键的值
+   * @param limitSql 决定数据库方言
+   * @param args 用于装载参数
+   */
+  String seekPredicate(Object[] values, LimitSQL limitSql, List<Object> args) {
+    boolean sameDirection = true;
+    for(Boolean desc : descs) {
+      sameDirection &= (desc.booleanValue() == descs.get(0).booleanValue());
+    }
+    StringBuilder sql = new StringBuilder(columns.size() * 30);
+    if(columns.size() > 1 && sameDirection && limitSql.supportsRowValues()) {
+      sql.append("(");
+      for(int i = 0; i < columns.size(); i++) {
+        sql.append(i > 0 ? ", " : "").append(columns.get(i));
+        args.add(values[i]);
+      }
+      sql.append(descs.get(0) ? ") < (" : ") > (");
+      for(int i = 0; i < columns.size(); i++) {
+        sql.append(i > 0 ? ", ?" : "?");
+      }
+      return sql.append(")").toString();
+    }
+    
+    sql.append("(");
+    for(int i = 0; i < columns.size(); i++) {
+      if(i > 0) {
+        sql.append(" OR ");
+      }
+      sql.append("(");
+      for(int j = 0; j < i; j++) {
+        sql.append(columns.get(j)).append(" = ? AND ");
+        args.add(values[j]);
+      }
+      sql.append(columns.get(i)).append(descs.get(i) ? " < ?" : " > ?").append(")");
+      args.add(values[i]);
+    }
+    return sql.append(")").toString();
+  }
+  
+  /**
+   * 根据给定的排序键的值，生成游标
+   * @param values 排序键的值，与排序键的数量相同，顺序一致
+   */
+  public String cursor(Object... values) {
+    if(values == null || values.length != columns.size()) {
+      throw new IllegalArgumentException("排序键的值的数量必须与排序键的数量相同。");
+    }
+    StringBuilder buf = new StringBuilder(values.length * 16);
+    for(Object value : values) {
+      String tag;
+      String text;
+      if(value == null) {
+        buf.append('N');
+        continue;
+      } else if(value instanceof Long) {
+        tag = "L";
+        text = value.toString();
+      } else if(value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        tag = "I";
+        text = value.toString();
+      } else if(value instanceof BigDecimal) {
+        tag = "B";
+        text = ((BigDecimal) value).toPlainString();
+      } else if(value instanceof Double || value instanceof Float) {
+        tag = "F";
+        text = value.toString();
+      } else if(value instanceof Timestamp) {
+        tag = "T";
+        text = ((Timestamp) value).getTime() + "." + ((Timestamp) value).getNanos();
+      } else if(value instanceof Date) {
+        tag = "D";
+        text = String.valueOf(((Date) value).getTime());
+      } else if(value instanceof String) {
+        tag = "S";
+        text = (String) value;
+      } else {
+        throw new IllegalArgumentException("不支持的排序键类型 " + value.getClass().getName());
+      }
+      buf.append(tag).append(text.length()).append(':').append(text);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.toString().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  /**
+   * 根据上一页的最后一行，生成下一页的游标：
+   * <ul>
+   *     <li>如果行数小于limit，说明没有下一页，返回<code>null</code></li>
+   *     <li>如果行是一个Map，则以字段名（去掉表的别名）或者其驼峰形式为key读取排序键的值</li>
+   *     <li>否则，读取与字段名对应的属性，例如u.created_at对应createdAt</li>
+   * </ul>
+   * @param rows 上一页的数据
+   * @param limit 每页的行数
+   */
+  public String nextCursor(List<?> rows, int limit) {
+    if(rows == null || rows.isEmpty() || rows.size() < limit) {
+      return null;
+    }
+    Object last = rows.get(rows.size() - 1);
+    Object[] values = new Object[columns.size()];
+    for(int i = 0; i < columns.size(); i++) {
+      values[i] = valueOf(last, columns.get(i));
+    }
+    return cursor(values);
+  }
+  
+  private static Object valueOf(Object row, String column) {
+    String label = column.substring(column.lastIndexOf('.') + 1);
+    String property = StringUtils.toCamelCase(label);
+    if(row instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) row;
+      return map.containsKey(label) ? map.get(label) : map.get(property);
+    }
+    PropertyAccessor accessor = PropertyAccessor.forProperty(row.getClass(), property);
+    if(accessor == null) {
+      throw new IllegalArgumentException("属性不存在 " + property);
+    }
+    return accessor.get(row);
+  }
+  
+  /**
+   * 解析游标，返回排序键的值
+   * @param cursor 由{@link #cursor(Object...)}或者{@link #nextCursor(List, int)}生成的游标
+   */
+  public Object[] parseCursor(String cursor) {
+    String text;
+    try {
+      text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("无效的游标 " + cursor, e);
+    }
+    
+    List<Object> values = new ArrayList<>(columns.size());
+    int pos = 0;
+    try {
+      while(pos < text.length()) {
+        char tag = text.charAt(pos++);
+        if(tag == 'N') {
+          values.add(null);
+          continue;
+        }
+        int colon = text.indexOf(':', pos);
+        int len = Integer.parseInt(text.substring(pos, colon));
+        String value = text.substring(colon + 1, colon + 1 + len);
+        pos = colon + 1 + len;
+        values.add(parseValue(tag, value));
+      }
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("无效的游标 " + cursor, e);
+    }
+    if(values.size() != columns.size()) {
+      throw new IllegalArgumentException("游标与排序键不匹配 " + cursor);
+    }
+    return values.toArray();
+  }
+  
+  private static Object parseValue(char tag, String value) {
+    switch (tag) {
+    case 'L':
+      return Long.valueOf(value);
+    case 'I':
+      return Integer.valueOf(value);
+    case 'B':
+      return new BigDecimal(value);
+    case 'F':
+      return Double.valueOf(value);
+    case 'D':
+      return new Date(Long.parseLong(value));
+    case 'T':
+      int dot = value.indexOf('.');
+      Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, dot)));
+      timestamp.setNanos(Integer.parseInt(value.substring(dot + 1)));
+      return timestamp;
+    case 'S':
+      return value;
+    default:
+      throw new IllegalArgumentException("未知的类型 " + tag);
+    }
+  }
+  
+  @Override
+  public String toString() {
+    return orderByClause().trim();
+  }
+}
@@ -26,8 +26,20 @@ public final class Page implements Serializable {
   private int limit;
   
   private long total;
+  /**
+   * 总数是否精确，使用估算的或者有上限的总数时为<code>false</code>，参考{@link com.github.catstiger.sql.count.CountStrategy}
+   */
+  private boolean totalExact = true;
   
   private Collection<?> rows;
+  /**
+   * keyset分页，本页的游标，为空表示第一页，参考{@link Keyset}
+   */
+  private String cursor;
+  /**
+   * keyset分页，下一页的游标，为空表示没有下一页
+   */
+  private String nextCursor;
   
   public Page() {
     this.start = 0;
@@ -122,6 +134,17 @@ public final class Page implements Serializable {
     this.total = total;
   }
 
+  /**
+   * 总数是否精确，如果不精确，{@link #getTotal()}是估算的总数，或者“至少有这么多行”
+   */
+  public boolean isTotalExact() {
+    return totalExact;
+  }
+
+  public void setTotalExact(boolean totalExact) {
+    this.totalExact = totalExact;
+  }
+
   public Collection<?> getRows() {
     return rows;
   }
@@ -130,4 +153,27 @@ public final class Page implements Serializable {
     this.rows = rows;
   }
 
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+  
+  /**
+   * keyset分页，是否有下一页
+   */
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+
 }
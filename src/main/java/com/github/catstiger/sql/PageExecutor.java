@@ -0,0 +1,202 @@
+package com.github.catstiger.sql;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.catstiger.sql.count.CachedCount;
+import com.github.catstiger.sql.count.CountResult;
+import com.github.catstiger.sql.count.CountStrategy;
+import com.github.catstiger.sql.count.ExactCount;
+import com.github.catstiger.sql.stats.StatementStatsRegistry;
+
+/**
+ * 执行分页查询，填充{@link Page}。COUNT查询和数据查询同时执行，分别使用连接池中的不同连接，
+ * 因此，一次分页查询的耗时接近于两者中较慢的一个，而不是两者之和：
+ * <pre>
+ * PageExecutor pageExecutor = new PageExecutor(jdbcTemplate).skipCountOnShortPage(true).cacheTotals(30000L);
+ * Page page = pageExecutor.query(sqlReady, 0, 20, new BeanRowMapper&lt;&gt;(User.class));
+ * </pre>
+ * <ul>
+ *     <li>skipCountOnShortPage：先执行数据查询，如果返回的行数少于limit，则总数为start + 行数，不再执行COUNT查询；
+ *     否则再执行COUNT查询。此时两个查询顺序执行，适合于结果通常不满一页的场景。</li>
+ *     <li>cacheTotals：COUNT查询的结果，按照COUNT语句和参数缓存一段时间，同样条件的后续分页查询不再执行COUNT查询。</li>
+ *     <li>countStrategy：计算总数的方式，缺省为精确的COUNT(*)，参见{@link CountStrategy}。
+ *     使用估算的或者有上限的总数时，{@link Page#isTotalExact()}返回<code>false</code></li>
+ * </ul>
+ * 如果调用者处于Spring管理的事务中，COUNT查询和数据查询在当前线程中顺序执行，使用事务的连接，因此可以看到事务中尚未提交的修改，
+ * 也不会在持有事务连接的同时，等待另外的线程从连接池中获取连接；否则，COUNT查询在另外的线程中执行。
+ * {@link StatementStatsRegistry}启用的时候，记录数据查询的耗时、行数和转换对象的耗时。
+ * @author catstiger
+ *
+ */
+public class PageExecutor {
+  /**
+   * 缺省的线程池，用于执行COUNT查询，线程的数量有上限，没有空闲的线程时，COUNT查询在调用者的线程中执行
+   */
+  private static volatile ExecutorService defaultExecutor;
+  
+  private final JdbcTemplate jdbcTemplate;
+  private final Executor executor;
+  private boolean skipCountOnShortPage = false;
+  private CountStrategy countStrategy = new ExactCount();
+  
+  /**
+   * 使用缺省的线程池执行COUNT查询
+   */
+  public PageExecutor(JdbcTemplate jdbcTemplate) {
+    this(jdbcTemplate, getDefaultExecutor());
+  }
+  
+  /**
+   * @param jdbcTemplate 用于执行查询
+   * @param executor 用于执行COUNT查询
+   */
+  public PageExecutor(JdbcTemplate jdbcTemplate, Executor executor) {
+    if(jdbcTemplate == null || executor == null) {
+      throw new IllegalArgumentException("jdbcTemplate and executor must not be null.");
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.executor = executor;
+  }
+  
+  private static ExecutorService getDefaultExecutor() {
+    if(defaultExecutor == null) {
+      synchronized (PageExecutor.class) {
+        if(defaultExecutor == null) {
+          int threads = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+          defaultExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, "sql-page-count");
+            thread.setDaemon(true);
+            return thread;
+          }, new ThreadPoolExecutor.CallerRunsPolicy());
+          ((ThreadPoolExecutor) defaultExecutor).allowCoreThreadTimeOut(true);
+        }
+      }
+    }
+    return defaultExecutor;
+  }
+  
+  /**
+   * 数据查询返回的行数少于limit的时候，不执行COUNT查询
+   * @return this instance.
+   */
+  public PageExecutor skipCountOnShortPage(boolean skipCountOnShortPage) {
+    this.skipCountOnShortPage = skipCountOnShortPage;
+    return this;
+  }
+  
+  /**
+   * 设置计算总数的方式
+   * @param countStrategy 参见{@link CountStrategy}
+   * @return this instance.
+   */
+  public PageExecutor countStrategy(CountStrategy countStrategy) {
+    if(countStrategy == null) {
+      throw new IllegalArgumentException("countStrategy must not be null.");
+    }
+    this.countStrategy = countStrategy;
+    return this;
+  }
+  
+  /**
+   * 缓存COUNT查询的结果，即使用{@link CachedCount}包装当前的CountStrategy
+   * @param ttlMillis 缓存的时间，单位为毫秒，小于等于0则不缓存
+   * @return this instance.
+   */
+  public PageExecutor cacheTotals(long ttlMillis) {
+    if(ttlMillis > 0) {
+      this.countStrategy = new CachedCount(countStrategy, ttlMillis);
+    }
+    return this;
+  }
+  
+  /**
+   * 执行分页查询
+   * @param sqlReady 查询语句及其参数，不包括limit子句，可以使用命名参数
+   * @param start 第一行的位置，从0开始
+   * @param limit 每页的行数
+   * @param rowMapper 用于将每一行转换为对象
+   * @return 填充了数据和总数的Page
+   */
+  public <T> Page query(SQLReady sqlReady, int start, int limit, RowMapper<T> rowMapper) {
+    final SQLReady ready = sqlReady.positional();
+    final String dataSql = ready.limitSql(start, limit);
+    
+    Page page = new Page(start, limit);
+    List<T> rows;
+    CountResult total;
+    
+    if(skipCountOnShortPage || TransactionSynchronizationManager.isActualTransactionActive()) {
+      //在事务中，使用事务的连接顺序执行
+      rows = queryRows(dataSql, ready, rowMapper);
+      if(skipCountOnShortPage && rows.size() < limit && (start == 0 || !rows.isEmpty())) {
+        total = new CountResult((long) start + rows.size(), true);
+      } else {
+        total = countStrategy.count(jdbcTemplate, ready);
+      }
+    } else {
+      CompletableFuture<CountResult> counting = CompletableFuture.supplyAsync(() -> countStrategy.count(jdbcTemplate, ready), executor);
+      rows = queryRows(dataSql, ready, rowMapper);
+      total = join(counting);
+    }
+    page.setRows(rows);
+    page.setTotal(total.getTotal());
+    page.setTotalExact(total.isExact());
+    return page;
+  }
+  
+  /**
+   * 执行数据查询，如果启用了统计，则记录耗时、行数和转换对象的耗时
+   */
+  private <T> List<T> queryRows(String dataSql, SQLReady ready, RowMapper<T> rowMapper) {
+    StatementStatsRegistry registry = StatementStatsRegistry.getInstance();
+    if(!registry.isEnabled()) {
+      return jdbcTemplate.query(dataSql, ready.getPreparedStatementSetter(), rowMapper);
+    }
+    final long[] mappingNanos = new long[1];
+    long begin = System.nanoTime();
+    List<T> rows = jdbcTemplate.query(dataSql, ready.getPreparedStatementSetter(), (rs, rowNum) -> {
+      long mappingBegin = System.nanoTime();
+      try {
+        return rowMapper.mapRow(rs, rowNum);
+      } finally {
+        mappingNanos[0] += System.nanoTime() - mappingBegin;
+      }
+    });
+    registry.record(dataSql, System.nanoTime() - begin, rows.size(), mappingNanos[0]);
+    return rows;
+  }
+  
+  private static CountResult join(CompletableFuture<CountResult> counting) {
+    try {
+      return counting.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+  
+  /**
+   * 清除缓存的COUNT结果，例如数据发生了较大变化之后
+   */
+  public void clearTotals() {
+    if(countStrategy instanceof CachedCount) {
+      ((CachedCount) countStrategy).clear();
+    }
+  }
+}
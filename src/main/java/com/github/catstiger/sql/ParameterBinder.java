@@ -0,0 +1,224 @@
+package com.github.catstiger.sql;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+
+import com.github.catstiger.sql.mapper.BlobHandle;
+import com.github.catstiger.sql.mapper.ClobHandle;
+
+/**
+ * 向PreparedStatement绑定参数。参数的类型事先由实体类的元数据确定（例如{@link SQLFactory}生成的SQL），
+ * 绑定时直接调用setLong、setInt、setTimestamp、setString等方法，不必由JDBC驱动在setObject中逐个判断参数的类型；
+ * 参数为<code>null</code>的时候，使用对应的SQL类型调用setNull。
+ * <p>
+ * 类型未知（{@link #OBJECT}），或者参数值与预期的类型不符的时候，按照参数值的实际类型绑定。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class ParameterBinder {
+  public static final byte OBJECT = 0;
+  public static final byte STRING = 1;
+  public static final byte LONG = 2;
+  public static final byte INT = 3;
+  public static final byte SHORT = 4;
+  public static final byte BYTE = 5;
+  public static final byte DOUBLE = 6;
+  public static final byte FLOAT = 7;
+  public static final byte BOOLEAN = 8;
+  public static final byte BIG_DECIMAL = 9;
+  public static final byte TIMESTAMP = 10;
+  public static final byte DATE = 11;
+  public static final byte TIME = 12;
+  public static final byte BYTES = 13;
+  
+  /**
+   * 各个类型对应的{@link Types}，用于setNull
+   */
+  private static final int[] SQL_TYPES = {
+      Types.NULL, Types.VARCHAR, Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT, Types.DOUBLE, Types.REAL,
+      Types.BOOLEAN, Types.DECIMAL, Types.TIMESTAMP, Types.DATE, Types.TIME, Types.VARBINARY
+  };
+  
+  private ParameterBinder() {
+  }
+  
+  /**
+   * 根据Java类型（通常是实体类属性的类型），返回参数的类型
+   * @param type Java类型，可以为<code>null</code>
+   * @return 参数的类型，不能识别的类型返回{@link #OBJECT}
+   */
+  public static byte typeOf(Class<?> type) {
+    if(type == null) {
+      return OBJECT;
+    }
+    if(type == String.class) {
+      return STRING;
+    }
+    if(type == Long.class || type == long.class) {
+      return LONG;
+    }
+    if(type == Integer.class || type == int.class) {
+      return INT;
+    }
+    if(type == Short.class || type == short.class) {
+      return SHORT;
+    }
+    if(type == Byte.class || type == byte.class) {
+      return BYTE;
+    }
+    if(type == Double.class || type == double.class) {
+      return DOUBLE;
+    }
+    if(type == Float.class || type == float.class) {
+      return FLOAT;
+    }
+    if(type == Boolean.class || type == boolean.class) {
+      return BOOLEAN;
+    }
+    if(type == BigDecimal.class) {
+      return BIG_DECIMAL;
+    }
+    if(type == java.sql.Date.class) {
+      return DATE;
+    }
+    if(type == Time.class) {
+      return TIME;
+    }
+    if(Date.class.isAssignableFrom(type)) {
+      return TIMESTAMP;
+    }
+    if(type == byte[].class) {
+      return BYTES;
+    }
+    return OBJECT;
+  }
+  
+  /**
+   * 按照顺序绑定参数
+   * @param ps PreparedStatement
+   * @param args 参数值
+   * @param count 参数的数量，即args中前count个元素有效
+   * @param types 参数的类型，可以为<code>null</code>，或者短于参数的数量，此时按照参数值的实际类型绑定
+   * @throws SQLException 绑定失败
+   */
+  public static void bind(PreparedStatement ps, Object[] args, int count, byte[] types) throws SQLException {
+    int typed = (types == null ? 0 : Math.min(types.length, count));
+    for(int i = 0; i < typed; i++) {
+      bind(ps, i + 1, args[i], types[i]);
+    }
+    for(int i = typed; i < count; i++) {
+      bind(ps, i + 1, args[i], OBJECT);
+    }
+  }
+  
+  /**
+   * 绑定一个参数
+   * @param ps PreparedStatement
+   * @param index 参数的位置，从1开始
+   * @param value 参数值
+   * @param type 参数的类型，参见{@link #typeOf(Class)}
+   * @throws SQLException 绑定失败
+   */
+  public static void bind(PreparedStatement ps, int index, Object value, byte type) throws SQLException {
+    if(value == null) {
+      ps.setNull(index, SQL_TYPES[type]);
+      return;
+    }
+    switch(type) {
+      case STRING:
+        if(value instanceof String) {
+          ps.setString(index, (String) value);
+          return;
+        }
+        break;
+      case LONG:
+        if(value instanceof Long) {
+          ps.setLong(index, (Long) value);
+          return;
+        }
+        break;
+      case INT:
+        if(value instanceof Integer) {
+          ps.setInt(index, (Integer) value);
+          return;
+        }
+        break;
+      case TIMESTAMP:
+        if(value instanceof Timestamp) {
+          ps.setTimestamp(index, (Timestamp) value);
+          return;
+        }
+        break;
+      case BIG_DECIMAL:
+        if(value instanceof BigDecimal) {
+          ps.setBigDecimal(index, (BigDecimal) value);
+          return;
+        }
+        break;
+      case BOOLEAN:
+        if(value instanceof Boolean) {
+          ps.setBoolean(index, (Boolean) value);
+          return;
+        }
+        break;
+      case DOUBLE:
+        if(value instanceof Double) {
+          ps.setDouble(index, (Double) value);
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    bindValue(ps, index, value);
+  }
+  
+  /**
+   * 按照参数值的实际类型绑定
+   */
+  private static void bindValue(PreparedStatement ps, int index, Object value) throws SQLException {
+    if(value instanceof String) {
+      ps.setString(index, (String) value);
+    } else if(value instanceof Long) {
+      ps.setLong(index, (Long) value);
+    } else if(value instanceof Integer) {
+      ps.setInt(index, (Integer) value);
+    } else if(value instanceof Date) {
+      if(value instanceof Timestamp) {
+        ps.setTimestamp(index, (Timestamp) value);
+      } else if(value instanceof java.sql.Date) {
+        ps.setDate(index, (java.sql.Date) value);
+      } else if(value instanceof Time) {
+        ps.setTime(index, (Time) value);
+      } else {
+        ps.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+      }
+    } else if(value instanceof BigDecimal) {
+      ps.setBigDecimal(index, (BigDecimal) value);
+    } else if(value instanceof Boolean) {
+      ps.setBoolean(index, (Boolean) value);
+    } else if(value instanceof Double) {
+      ps.setDouble(index, (Double) value);
+    } else if(value instanceof Float) {
+      ps.setFloat(index, (Float) value);
+    } else if(value instanceof Short) {
+      ps.setShort(index, (Short) value);
+    } else if(value instanceof Byte) {
+      ps.setByte(index, (Byte) value);
+    } else if(value instanceof byte[]) {
+      ps.setBytes(index, (byte[]) value);
+    } else if(value instanceof ClobHandle) {
+      ps.setCharacterStream(index, ((ClobHandle) value).get(), ((ClobHandle) value).length());
+    } else if(value instanceof BlobHandle) {
+      ps.setBinaryStream(index, ((BlobHandle) value).get(), ((BlobHandle) value).length());
+    } else {
+      ps.setObject(index, value);
+    }
+  }
+}
@@ -1,37 +1,27 @@
 package com.github.catstiger.sql;
 
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import javax.persistence.Entity;
-import javax.persistence.Id;
-import javax.persistence.JoinColumn;
-import javax.persistence.Transient;
-
-import org.springframework.util.DigestUtils;
-
-import com.github.catstiger.sql.annotation.FullMatches;
 import com.github.catstiger.sql.annotation.FullText;
 import com.github.catstiger.sql.annotation.RangeQuery;
+import com.github.catstiger.sql.cache.LruSQLCache;
+import com.github.catstiger.sql.cache.SQLCache;
+import com.github.catstiger.sql.cache.SQLCacheStats;
 import com.github.catstiger.sql.id.IdGen;
 import com.github.catstiger.sql.id.SnowflakeIDWorker;
 import com.github.catstiger.sql.limit.LimitSQL;
+import com.github.catstiger.sql.meta.ColumnMeta;
+import com.github.catstiger.sql.meta.EntityMeta;
 import com.github.catstiger.utils.Assert;
 import com.github.catstiger.utils.ClassUtils;
 import com.github.catstiger.utils.CollectionUtils;
@@ -41,7 +31,18 @@ import com.google.common.base.Joiner;
 
 
 public final class SQLFactory {
-  private static Map<String, String> sqlCache = new ConcurrentHashMap<String, String>();
+  /**
+   * SELECT语句的缓存
+   */
+  private final SQLCache<SQLKey, String> sqlCache;
+  /**
+   * INSERT、UPDATE和查询条件的SQL模板
+   */
+  private final SQLCache<SQLTemplate.Key, SQLTemplate> templateCache;
+  /**
+   * COUNT查询，键值为数据库类型和查询语句
+   */
+  private final SQLCache<CountSQL.Key, String> countCache;
   /**
    * 缺省的IdGen实现，不支持集群模式，集群下请使用SnowFlakeIdGen.
    */
@@ -51,19 +52,72 @@ public final class SQLFactory {
     public Long nextId() {
       return worker.nextId();
     }
+    
+    @Override
+    public long[] nextIds(int count) {
+      return worker.nextIds(count);
+    }
   };
   
-  private SQLFactory() {
+  /**
+   * 使用缺省容量的{@link LruSQLCache}创建SQLFactory
+   */
+  public SQLFactory() {
+    this(LruSQLCache.provider(LruSQLCache.DEFAULT_MAXIMUM_SIZE));
+  }
+  
+  /**
+   * 使用指定的缓存实现创建SQLFactory，可以通过{@link SQLRequest#sqlFactory(SQLFactory)}使用
+   * @param cacheProvider 用于创建SQL缓存和SQL模板缓存
+   */
+  public SQLFactory(SQLCache.Provider cacheProvider) {
+    if(cacheProvider == null) {
+      throw new IllegalArgumentException("cacheProvider must not be null.");
+    }
+    this.sqlCache = cacheProvider.create("sql");
+    this.templateCache = cacheProvider.create("template");
+    this.countCache = cacheProvider.create("count");
   }
   
-  private static SQLFactory instance;
+  /**
+   * 延迟创建的单例，由类加载机制保证线程安全
+   */
+  private static final class InstanceHolder {
+    private static final SQLFactory INSTANCE = new SQLFactory();
+  }
   
   public static SQLFactory getInstance() {
-    if(instance == null) {
-      instance = new SQLFactory();
-    }
-    
-    return instance;
+    return InstanceHolder.INSTANCE;
+  }
+  
+  /**
+   * 返回SELECT语句缓存的统计数据
+   */
+  public SQLCacheStats getSqlCacheStats() {
+    return sqlCache.stats();
+  }
+  
+  /**
+   * 返回INSERT、UPDATE和查询条件模板缓存的统计数据
+   */
+  public SQLCacheStats getTemplateCacheStats() {
+    return templateCache.stats();
+  }
+  
+  /**
+   * 返回COUNT查询缓存的统计数据
+   */
+  public SQLCacheStats getCountCacheStats() {
+    return countCache.stats();
+  }
+  
+  /**
+   * 清空本实例的所有缓存
+   */
+  public void clearCache() {
+    sqlCache.clear();
+    templateCache.clear();
+    countCache.clear();
   }
   
   /**
@@ -81,14 +135,15 @@ public final class SQLFactory {
    * @return SQL
    */
   public SQLReady select(SQLRequest sqlRequest, boolean supportsJoin) {
-    String key = sqlKey(sqlRequest, "select", supportsJoin);
+    SQLKey key = sqlRequest.sqlKey(SQLKey.OP_SELECT, supportsJoin);
     //从缓存中取得SQL
     String sqlObj = sqlCache.get(key);
     if(sqlObj != null) {
-      return new SQLReady(sqlObj, new Object[]{}, sqlRequest.limitSql); 
+      return new SQLReady(sqlObj, new Object[]{}, sqlRequest.limitSql).withSqlFactory(this);
     }
+    EntityMeta entityMeta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
     Collection<ColField> colFields = columns(sqlRequest, supportsJoin);
-    String tablename = sqlRequest.namingStrategy.tablename(sqlRequest.entityClass);
+    String tablename = entityMeta.getTablename();
     
     final StringBuilder sqlBuf = new StringBuilder(1000).append("SELECT ");
     
@@ -113,10 +168,10 @@ public final class SQLFactory {
     
     //FROM后面的主表
     sqlBuf.append(" \n FROM ").append(tablename);
-    String mainAlias = sqlRequest.namingStrategy.tableAlias(sqlRequest.entityClass);  //字段所在表别名
+    String mainAlias = entityMeta.getTableAlias();  //字段所在表别名
     sqlBuf.append(" ").append(mainAlias).append(" \n");
     
-    ColField primary = findPrimary(colFields);
+    ColumnMeta primary = entityMeta.getPrimary();
     
     //关联查询
     if(supportsJoin) {
@@ -136,20 +191,21 @@ public final class SQLFactory {
     }
     
     if(sqlRequest.byId) {
-      String idCol = (primary != null ? primary.col : "id");
+      String idCol = (primary != null ? primary.getCol() : "id");
       
       sqlBuf.append(" WHERE ").append(sqlRequest.usingAlias ? mainAlias + "." :  "").append(idCol).append("=");
       if(sqlRequest.namedParams) {
-        String idField = (primary != null ? mainAlias + "." + primary.fieldname : mainAlias + ".id");
+        String idField = (primary != null ? mainAlias + "." + primary.getFieldname() : mainAlias + ".id");
         sqlBuf.append(":").append(idField);
       } else {
         sqlBuf.append("?");
       }
     }
     sqlBuf.append("\n");
-    sqlCache.put(key, sqlBuf.toString()); //装入缓存
+    String sql = SQLText.intern(sqlBuf.toString());
+    sqlCache.put(key, sql); //装入缓存
     
-    return new SQLReady(sqlBuf.toString(), new Object[]{}, sqlRequest.limitSql); 
+    return new SQLReady(sql, new Object[]{}, sqlRequest.limitSql).withSqlFactory(this);
   }
   
   
@@ -171,95 +227,64 @@ public final class SQLFactory {
     if(sqlRequest.entity == null) {
       throw new java.lang.IllegalArgumentException("给出的实体类不可为空。");
     }
-    ORMHelper ormHelper = ORMHelper.getInstance(sqlRequest.namingStrategy);
-    
-    Collection<ColField> colFields = columns(sqlRequest, supportsJoin);
-    List<String> sqls = new ArrayList<>(colFields.size()); //存SQL片段
-    List<Object> args = new ArrayList<>(colFields.size()); //存参数值
-    Map<String, Object> namedParams = new HashMap<>(colFields.size()); //存参数值
+    if(supportsJoin) {
+      return joinConditions(sqlRequest);
+    }
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    List<ColumnMeta> columns = meta.getColumns();
+    int size = columns.size();
+    //每个字段占3个槽位：字段值，范围查询的开始值和结束值
+    Object[] values = new Object[size * 3];
+    BitSet mask = new BitSet(size * 3);
     
-    for(Iterator<ColField> itr = colFields.iterator(); itr.hasNext();) {
-      ColField colField = itr.next();
-      if(colField.isForeign) {
+    for(ColumnMeta column : columns) {
+      if(column.isForeign() || !isIncluded(sqlRequest, column.getFieldname())) {
         continue;
       }
-      
-      Field field = colField.getField();
-      Object value = null;
-      if(colField.ownerValue != null) {
-        value = getField(field, colField.ownerValue);
-      }
-      if(value == null) {
-        continue;
+      int slot = column.getIndex();
+      readCondition(column, sqlRequest.entity, slot, size + slot * 2, values, mask);
+    }
+    
+    int flags = sqlRequest.sqlKey(SQLKey.OP_CONDITIONS, false).getFlags();
+    SQLTemplate.Key key = new SQLTemplate.Key(meta, flags, mask);
+    SQLTemplate template = templateCache.get(key);
+    if(template == null) {
+      SQLTemplate.Builder builder = new SQLTemplate.Builder(sqlRequest.namedParams, 200);
+      String prefix = (sqlRequest.usingAlias ? meta.getTableAlias() + "." : "");
+      for(int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+        appendCondition(builder, prefix, columns.get(i), i, size + i * 2, mask);
       }
-      
-      //处理主键
-      if(ormHelper.isPrimaryKey(field)) {
-        doPrimaryKey(sqlRequest, colField, value, sqls, args, namedParams);
+      template = builder.build();
+      templateCache.put(key, template);
+    }
+    
+    return template.bind(values, sqlRequest.namedParams, sqlRequest.limitSql).withSqlFactory(this);
+  }
+  
+  /**
+   * 支持外键关联的查询条件，涉及关联表中的字段，因此不缓存SQL模板
+   */
+  private SQLReady joinConditions(SQLRequest sqlRequest) {
+    List<ColField> colFields = getColFields(sqlRequest, true);
+    int size = colFields.size();
+    Object[] values = new Object[size * 3];
+    BitSet mask = new BitSet(size * 3);
+    
+    for(int i = 0; i < size; i++) {
+      ColField colField = colFields.get(i);
+      if(colField.isForeign || colField.ownerValue == null) {
         continue;
       }
-      //处理字符串
-      if(ClassUtils.isAssignable(field.getType(), String.class)) {
-        FullText ftAnn = getAnnotation(field, FullText.class); //全文检索
-        if(ftAnn != null) {
-          doFullText(sqlRequest, colField, value, ftAnn, sqls, args, namedParams);
-          continue;
-        }
-        FullMatches fmAnn = getAnnotation(field, FullMatches.class); //全匹配，代替LIKE %%
-        if(fmAnn != null) {
-          doFullMatches(sqlRequest, colField, value, ftAnn, sqls, args, namedParams);
-          continue;
-        }
-        //Like查询
-        if(fmAnn == null && ftAnn == null) {
-          doLike(sqlRequest, colField, value, sqls, args, namedParams);
-          continue;
-        }
-      }
-      //处理数字
-      if(ClassUtils.isAssignable(field.getType(), Number.class)) {
-        RangeQuery rqAnn = getAnnotation(field, RangeQuery.class);
-        if(rqAnn != null) {
-          doRangeQuery(sqlRequest, colField, value, rqAnn, sqls, args, namedParams);
-          continue;
-        }
-      }
-      //处理日期和时间
-      if(ClassUtils.isAssignable(field.getType(), Date.class)) {
-        RangeQuery rqAnn = getAnnotation(field, RangeQuery.class);
-        if(rqAnn != null) {
-          doRangeQuery(sqlRequest, colField, value, rqAnn, sqls, args, namedParams);
-          continue;
-        }
-      }
-      
-      //处理其他情况（前面没有处理的）
-      String tableAlias = sqlRequest.namingStrategy.tableAlias(sqlRequest.entityClass);
-      String colname = sqlRequest.namingStrategy.columnName(sqlRequest.entityClass, field);
-      
-      if(sqlRequest.namedParams) { //命名参数
-        StringBuilder sql = new StringBuilder(100);
-        if(sqlRequest.usingAlias) { //使用表名别名
-          sql.append(tableAlias).append(".");
-        } 
-        sqls.add(sql.append(colname).append("=").append(":").append(field.getName()).toString());
-        namedParams.put(field.getName(), value);
-      } else {
-        StringBuilder sql = new StringBuilder(100);
-        if(sqlRequest.usingAlias) { //使用表名别名
-          sql.append(tableAlias).append(".");
-        } 
-        sqls.add(new StringBuilder(100).append(colname).append("=").append("?").toString());
-        args.add(value);
-      }
+      readCondition(colField.meta, colField.ownerValue, i, size + i * 2, values, mask);
     }
     
-    String sql = Joiner.on(" AND ").join(sqls);
-    if(sqlRequest.namedParams) {
-      return new SQLReady(sql, namedParams, sqlRequest.limitSql);
-    } else {
-      return new SQLReady(sql, args.toArray(new Object[]{}), sqlRequest.limitSql);
+    SQLTemplate.Builder builder = new SQLTemplate.Builder(sqlRequest.namedParams, 200);
+    for(int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+      ColField colField = colFields.get(i);
+      String prefix = (sqlRequest.usingAlias ? colField.alias + "." : "");
+      appendCondition(builder, prefix, colField.meta, i, size + i * 2, mask);
     }
+    return builder.build().bind(values, sqlRequest.namedParams, sqlRequest.limitSql).withSqlFactory(this);
   }
   
   /**
@@ -278,51 +303,69 @@ public final class SQLFactory {
     if(entity.getId() == null) {
       entity.setId(DEF_IDGEN.nextId());
     }
-    Class<?> entityClass = sqlRequest.entityClass;
-    String tablename = sqlRequest.namingStrategy.tablename(entityClass);
-    Collection<ColField> colFields = columns(sqlRequest, false);
-    
-    List<Object> args = new ArrayList<Object>(colFields.size()); //使用？做占位符
-    Map<String, Object> namedParams = new LinkedHashMap<>(colFields.size()); //使用别名做占位符
-    //字段列表
-    List<String> prevValues = new ArrayList<String>(colFields.size());
-    //占位符
-    List<String> afterValues = new ArrayList<String>(colFields.size());
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    List<ColumnMeta> columns = meta.getColumns();
+    Object[] values = new Object[columns.size()];
+    BitSet mask = new BitSet(columns.size()); //参与INSERT的字段
     
-    for(Iterator<ColField> itr = colFields.iterator(); itr.hasNext();) {
-      ColField colField = itr.next();
-      Field field = colField.getField();
-      Object arg = getField(field, entity);
-      if(arg == null && !sqlRequest.includesNull) { //不包括NULL字段
+    for(ColumnMeta column : columns) {
+      if(!isWritable(sqlRequest, column)) {
         continue;
       }
-      prevValues.add(colField.col);
-      
-      if(sqlRequest.namedParams) { //使用别名，参数存放在Map中，别名为KEY
-        namedParams.put(colField.fieldname, arg);
-        afterValues.add(":" + colField.fieldname);
-      } else { //使用？
-        args.add(arg);
-        afterValues.add("?");
+      Object arg = column.getValue(entity);
+      if(arg == null && !sqlRequest.includesNull) { //不包括NULL字段
+        continue;
       }
+      values[column.getIndex()] = arg;
+      mask.set(column.getIndex());
     }
-    if(prevValues.isEmpty() || afterValues.isEmpty()) {
+    if(mask.isEmpty()) {
       throw new IllegalStateException("无法构造有效的INSERT语句。");
     }
     
-    String cols = Joiner.on(",").join(prevValues);
-    String values = Joiner.on(",").join(afterValues);
-    
-    StringBuilder sqlBuf = new StringBuilder(200).append("INSERT INTO ").append(tablename).append(" (\n")
-        .append(cols).append(") VALUES (\n").append(values).append(")");
-    
-    
-    if(sqlRequest.namedParams) {
-      return new SQLReady(sqlBuf.toString(), namedParams, sqlRequest.limitSql);
-    } else {
-      return new SQLReady(sqlBuf.toString(), args.toArray(new Object[]{}), sqlRequest.limitSql);
+    int flags = sqlRequest.sqlKey(SQLKey.OP_INSERT, false).getFlags();
+    SQLTemplate.Key key = new SQLTemplate.Key(meta, flags, mask);
+    SQLTemplate template = templateCache.get(key);
+    if(template == null) {
+      template = insertTemplate(meta, mask, sqlRequest.namedParams);
+      templateCache.put(key, template);
     }
+    return template.bind(values, sqlRequest.namedParams, sqlRequest.limitSql).withSqlFactory(this);
   }
+  
+  /**
+   * 构建INSERT语句的模板，只包括mask中的字段
+   */
+  private SQLTemplate insertTemplate(EntityMeta meta, BitSet mask, boolean namedParams) {
+    List<ColumnMeta> columns = meta.getColumns();
+    SQLTemplate.Builder builder = new SQLTemplate.Builder(namedParams, 200)
+        .append(insertHeader(meta, mask)).append("(\n");
+    //占位符
+    for(int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+      if(i != mask.nextSetBit(0)) {
+        builder.append(",");
+      }
+      builder.param(i, SQLTemplate.VALUE, columns.get(i).getFieldname(), paramType(columns.get(i)));
+    }
+    return builder.append(")").build();
+  }
+  
+  /**
+   * INSERT语句VALUES之前的部分，包括表名和mask中的字段，例如：INSERT INTO users (\nid,name) VALUES 
+   */
+  private String insertHeader(EntityMeta meta, BitSet mask) {
+    List<ColumnMeta> columns = meta.getColumns();
+    StringBuilder header = new StringBuilder(100).append("INSERT INTO ").append(meta.getTablename()).append(" (\n");
+    //字段列表
+    for(int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+      if(i != mask.nextSetBit(0)) {
+        header.append(",");
+      }
+      header.append(columns.get(i).getCol());
+    }
+    return header.append(") VALUES ").toString();
+  }
+  
   /**
    * 生成Insert SQL，忽略为<code>null</code>的字段。
    * 如果给出的SQLRequest对象中，namedParams为<code>true</code>，则返回带有参数的SQL，数据使用MAP封装，否则返回带有?的SQL，数据采用数组封装。
@@ -333,6 +376,322 @@ public final class SQLFactory {
     sqlRequest = sqlRequest.includesNull(false);
     return insert(sqlRequest);
   }
+
+  /**
+   * 根据一组实体对象，构造一个批量INSERT语句，以及每个实体对应的参数，用于JDBC executeBatch：
+   * <ul>
+   *     <li>所有实体必须是同一个实体类</li>
+   *     <li>SQL中的字段，是所有实体中不为<code>null</code>的字段的并集，如果includesNull为true，则包括全部字段</li>
+   *     <li>如果实体的ID为空，则通过IdGen批量生成ID</li>
+   *     <li>只使用?作为占位符，忽略namedParams的设置</li>
+   * </ul>
+   * @param sqlRequest 生成SQL所需的参数，其中的实体对象被忽略
+   * @param entities 需要插入的实体对象
+   * @return Instance of BatchSQL
+   */
+  public BatchSQL insertBatch(SQLRequest sqlRequest, List<? extends BaseEntity> entities) {
+    EntityMeta meta = prepareBatch(sqlRequest, entities);
+    BitSet mask = batchMask(sqlRequest, meta, entities);
+    SQLTemplate template = batchTemplate(sqlRequest, meta, mask);
+    
+    List<Object[]> batchArgs = new ArrayList<Object[]>(entities.size());
+    Object[] values = new Object[meta.getColumns().size()];
+    for(BaseEntity entity : entities) {
+      readValues(meta, mask, entity, values);
+      batchArgs.add(template.args(values));
+    }
+    return new BatchSQL(template.getSql(), batchArgs, template.getTypes());
+  }
+  
+  /**
+   * 根据一组实体对象，构造多行INSERT语句，即INSERT INTO ... VALUES (...),(...),...。
+   * 字段和ID的处理规则与{@link #insertBatch(SQLRequest, List)}相同。每条语句包含的行数不超过{@link SQLRequest#batchRows}，
+   * 预估的长度（SQL文本加参数）不超过{@link SQLRequest#batchBytes}，超出的部分拆分为多条语句。
+   * @param sqlRequest 生成SQL所需的参数，其中的实体对象被忽略
+   * @param entities 需要插入的实体对象
+   * @return 一条或者多条INSERT语句及其参数
+   */
+  public List<SQLReady> insertMultiRows(SQLRequest sqlRequest, List<? extends BaseEntity> entities) {
+    EntityMeta meta = prepareBatch(sqlRequest, entities);
+    BitSet mask = batchMask(sqlRequest, meta, entities);
+    SQLTemplate template = batchTemplate(sqlRequest, meta, mask);
+    
+    String header = SQLText.canonical(insertHeader(meta, mask));
+    //每一行的占位符，例如(?,?,?)
+    StringBuilder row = new StringBuilder(template.size() * 2 + 2).append("(");
+    for(int i = 0; i < template.size(); i++) {
+      row.append(i == 0 ? "?" : ",?");
+    }
+    row.append(")");
+    
+    List<SQLReady> sqlReadies = new ArrayList<SQLReady>();
+    Object[] values = new Object[meta.getColumns().size()];
+    StringBuilder sql = null;
+    List<Object> args = null;
+    int rows = 0;
+    long bytes = 0;
+    
+    for(BaseEntity entity : entities) {
+      readValues(meta, mask, entity, values);
+      Object[] rowArgs = template.args(values);
+      long rowBytes = row.length() + 2;
+      for(Object arg : rowArgs) {
+        rowBytes += estimateBytes(arg);
+      }
+      //超出行数或者长度的限制，则开始一条新的语句，每条语句至少包含一行
+      if(rows > 0 && (rows >= sqlRequest.batchRows || bytes + rowBytes > sqlRequest.batchBytes)) {
+        sqlReadies.add(new SQLReady(sql.toString(), args.toArray(), sqlRequest.limitSql).paramTypes(repeat(template.getTypes(), rows)).withSqlFactory(this));
+        rows = 0;
+      }
+      if(rows == 0) {
+        int expected = Math.min(sqlRequest.batchRows, entities.size());
+        sql = new StringBuilder(header.length() + expected * (row.length() + 2)).append(header).append(" ");
+        args = new ArrayList<Object>(expected * rowArgs.length);
+        bytes = header.length();
+      } else {
+        sql.append(", ");
+      }
+      sql.append(row);
+      for(Object arg : rowArgs) {
+        args.add(arg);
+      }
+      bytes += rowBytes;
+      rows++;
+    }
+    sqlReadies.add(new SQLReady(sql.toString(), args.toArray(), sqlRequest.limitSql).paramTypes(repeat(template.getTypes(), rows)).withSqlFactory(this));
+    
+    return sqlReadies;
+  }
+  
+  /**
+   * 多行INSERT语句的参数类型，即每一行的参数类型重复rows次
+   */
+  private static byte[] repeat(byte[] types, int rows) {
+    byte[] repeated = new byte[types.length * rows];
+    for(int i = 0; i < rows; i++) {
+      System.arraycopy(types, 0, repeated, i * types.length, types.length);
+    }
+    return repeated;
+  }
+  
+  /**
+   * 根据SQLRequest中的实体对象，构造一个UPSERT语句：主键对应的记录不存在则INSERT，否则UPDATE。
+   * <ul>
+   *     <li>字段的处理与{@link #insert(SQLRequest)}相同，主键总是包括在内，如果ID为空，则自动生成</li>
+   *     <li>语句由{@link SQLRequest#limitSql}对应的数据库方言生成：MySQL使用INSERT ... ON DUPLICATE KEY UPDATE，
+   *     H2使用MERGE INTO ... KEY(id)，Oracle使用MERGE INTO ... USING</li>
+   *     <li>只使用?作为占位符，忽略namedParams的设置</li>
+   * </ul>
+   * @param sqlRequest {@link SQLRequest}的实例，包含了生成SQL所需的条件。
+   * @return {@link SQLReady}包含了生成的SQL和对应的参数。
+   */
+  public SQLReady upsert(SQLRequest sqlRequest) {
+    if(sqlRequest.entity == null) {
+      throw new java.lang.IllegalArgumentException("给出的实体类不可为空。");
+    }
+    BaseEntity entity = sqlRequest.entity;
+    if(entity.getId() == null) {
+      entity.setId(DEF_IDGEN.nextId());
+    }
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    Object[] values = new Object[meta.getColumns().size()];
+    BitSet mask = upsertMask(sqlRequest, meta, entity);
+    readValues(meta, mask, entity, values);
+    
+    SQLTemplate template = upsertTemplate(sqlRequest, meta, mask);
+    return template.bind(values, false, sqlRequest.limitSql).withSqlFactory(this);
+  }
+  
+  /**
+   * 根据一组实体对象，构造UPSERT语句，以及每个实体对应的参数，用于JDBC executeBatch。
+   * ID的处理规则与{@link #insertBatch(SQLRequest, List)}相同，语句的生成参考{@link #upsert(SQLRequest)}。
+   * <p>
+   * 与批量INSERT不同，UPSERT会用语句中的字段覆盖已经存在的记录，所以每个实体只使用它自己不为<code>null</code>的字段（与{@link #upsert(SQLRequest)}相同），
+   * 字段相同的实体合并为一个BatchSQL，按照首次出现的顺序返回。因此，不同的BatchSQL之间，实体的执行顺序可能与给出的顺序不同。
+   * 如果includesNull为true，则所有实体使用全部字段，只返回一个BatchSQL，<code>null</code>会覆盖已经存在的值。
+   * </p>
+   * @param sqlRequest 生成SQL所需的参数，其中的实体对象被忽略
+   * @param entities 实体对象
+   * @return 一个或者多个BatchSQL，每个对应一组字段相同的实体
+   */
+  public List<BatchSQL> upsertBatch(SQLRequest sqlRequest, List<? extends BaseEntity> entities) {
+    EntityMeta meta = prepareBatch(sqlRequest, entities);
+    Map<BitSet, List<Object[]>> groups = new LinkedHashMap<BitSet, List<Object[]>>(4);
+    Map<BitSet, SQLTemplate> templates = new HashMap<BitSet, SQLTemplate>(4);
+    Object[] values = new Object[meta.getColumns().size()];
+    for(BaseEntity entity : entities) {
+      BitSet mask = upsertMask(sqlRequest, meta, entity);
+      SQLTemplate template = templates.get(mask);
+      if(template == null) {
+        template = upsertTemplate(sqlRequest, meta, mask);
+        templates.put(mask, template);
+        groups.put(mask, new ArrayList<Object[]>(entities.size()));
+      }
+      readValues(meta, mask, entity, values);
+      groups.get(mask).add(template.args(values));
+    }
+    
+    List<BatchSQL> batches = new ArrayList<BatchSQL>(groups.size());
+    for(Map.Entry<BitSet, List<Object[]>> group : groups.entrySet()) {
+      SQLTemplate template = templates.get(group.getKey());
+      batches.add(new BatchSQL(template.getSql(), group.getValue(), template.getTypes()));
+    }
+    return batches;
+  }
+  
+  /**
+   * UPSERT语句的字段：主键，以及实体中不为<code>null</code>的字段，如果includesNull为true，则包括全部字段
+   */
+  private BitSet upsertMask(SQLRequest sqlRequest, EntityMeta meta, BaseEntity entity) {
+    List<ColumnMeta> columns = meta.getColumns();
+    BitSet mask = new BitSet(columns.size());
+    for(ColumnMeta column : columns) {
+      if(column.isPrimary()) {
+        mask.set(column.getIndex());
+        continue;
+      }
+      if(!isWritable(sqlRequest, column)) {
+        continue;
+      }
+      if(sqlRequest.includesNull || column.getValue(entity) != null) {
+        mask.set(column.getIndex());
+      }
+    }
+    return mask;
+  }
+  
+  /**
+   * UPSERT语句的模板，由数据库方言生成，按照方言缓存
+   */
+  private SQLTemplate upsertTemplate(SQLRequest sqlRequest, EntityMeta meta, BitSet mask) {
+    ColumnMeta primary = meta.getPrimary();
+    if(primary == null) {
+      throw new IllegalStateException("实体类没有主键，无法构造UPSERT语句 " + meta.getEntityClass().getName());
+    }
+    LimitSQL dialect = sqlRequest.limitSql;
+    int flags = sqlRequest.sqlKey(SQLKey.OP_UPSERT, false).getFlags() & ~SQLKey.NAMED_PARAMS;
+    SQLTemplate.Key key = new SQLTemplate.Key(meta, flags, mask, dialect.getClass());
+    SQLTemplate template = templateCache.get(key);
+    if(template == null) {
+      List<ColumnMeta> columns = meta.getColumns();
+      List<String> cols = new ArrayList<String>(mask.cardinality());
+      for(int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+        cols.add(columns.get(i).getCol());
+      }
+      SQLTemplate.Builder builder = new SQLTemplate.Builder(false, 0)
+          .append(dialect.getUpsertSql(meta.getTablename(), cols, primary.getCol()));
+      for(int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+        builder.bindOnly(i, SQLTemplate.VALUE, columns.get(i).getFieldname(), paramType(columns.get(i)));
+      }
+      template = builder.build();
+      templateCache.put(key, template);
+    }
+    return template;
+  }
+  
+  /**
+   * 检查批量插入的实体，并为ID为空的实体批量生成ID
+   * @return 实体类的元数据
+   */
+  private EntityMeta prepareBatch(SQLRequest sqlRequest, List<? extends BaseEntity> entities) {
+    if(CollectionUtils.isEmpty(entities)) {
+      throw new java.lang.IllegalArgumentException("给出的实体列表不可为空。");
+    }
+    Class<?> entityClass = (sqlRequest.entityClass != null ? sqlRequest.entityClass : entities.get(0).getClass());
+    int noIds = 0;
+    for(BaseEntity entity : entities) {
+      if(entity == null || entity.getClass() != entityClass) {
+        throw new java.lang.IllegalArgumentException("批量插入的实体必须是同一个实体类 " + entityClass.getName());
+      }
+      if(entity.getId() == null) {
+        noIds++;
+      }
+    }
+    
+    if(noIds > 0) {
+      long[] ids = DEF_IDGEN.nextIds(noIds);
+      int i = 0;
+      for(BaseEntity entity : entities) {
+        if(entity.getId() == null) {
+          entity.setId(ids[i++]);
+        }
+      }
+    }
+    return EntityMeta.get(entityClass, sqlRequest.namingStrategy);
+  }
+  
+  /**
+   * 批量插入的字段：所有实体中不为<code>null</code>的字段的并集，如果includesNull为true，则包括全部字段
+   */
+  private BitSet batchMask(SQLRequest sqlRequest, EntityMeta meta, List<? extends BaseEntity> entities) {
+    List<ColumnMeta> columns = meta.getColumns();
+    BitSet mask = new BitSet(columns.size());
+    for(ColumnMeta column : columns) {
+      if(!isWritable(sqlRequest, column)) {
+        continue;
+      }
+      if(sqlRequest.includesNull) {
+        mask.set(column.getIndex());
+        continue;
+      }
+      for(BaseEntity entity : entities) {
+        if(column.getValue(entity) != null) {
+          mask.set(column.getIndex());
+          break;
+        }
+      }
+    }
+    if(mask.isEmpty()) {
+      throw new IllegalStateException("无法构造有效的INSERT语句。");
+    }
+    return mask;
+  }
+  
+  /**
+   * 批量插入使用的INSERT模板，只使用?作为占位符，与同样字段的{@link #insert(SQLRequest)}共用缓存
+   */
+  private SQLTemplate batchTemplate(SQLRequest sqlRequest, EntityMeta meta, BitSet mask) {
+    int flags = sqlRequest.sqlKey(SQLKey.OP_INSERT, false).getFlags() & ~SQLKey.NAMED_PARAMS;
+    SQLTemplate.Key key = new SQLTemplate.Key(meta, flags, mask);
+    SQLTemplate template = templateCache.get(key);
+    if(template == null) {
+      template = insertTemplate(meta, mask, false);
+      templateCache.put(key, template);
+    }
+    return template;
+  }
+  
+  /**
+   * 读取实体中，mask所指定的字段的值，放入对应的槽位
+   */
+  private void readValues(EntityMeta meta, BitSet mask, BaseEntity entity, Object[] values) {
+    List<ColumnMeta> columns = meta.getColumns();
+    for(int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+      values[i] = columns.get(i).getValue(entity);
+    }
+  }
+  
+  /**
+   * 预估一个参数在SQL中占用的字节数，字符串按照UTF-8最坏的情况计算
+   */
+  private static long estimateBytes(Object arg) {
+    if(arg == null) {
+      return 4L;
+    }
+    if(arg instanceof CharSequence) {
+      return ((CharSequence) arg).length() * 3L + 2;
+    }
+    if(arg instanceof Number) {
+      return 20L;
+    }
+    if(arg instanceof Date) {
+      return 28L;
+    }
+    if(arg instanceof byte[]) {
+      return ((byte[]) arg).length * 2L + 3;
+    }
+    return String.valueOf(arg).length() + 2L;
+  }
  
   /**
    * 根据SQLRequest构造一个SQL UPDATE语句及其对应的参数数组。
@@ -346,64 +705,123 @@ public final class SQLFactory {
    * @return
    */
   public SQLReady update(SQLRequest sqlRequest) {
-    ORMHelper ormHelper = ORMHelper.getInstance(sqlRequest.namingStrategy);
-    
     if(sqlRequest.entity == null) {
       throw new NullPointerException("给出的实体类不可为空。");
     }
-    Class<?> entityClass = sqlRequest.entityClass;
-    String tablename = sqlRequest.namingStrategy.tablename(entityClass);
-    
-    Collection<ColField> colFields = columns(sqlRequest, false);
-    if(colFields == null || colFields.isEmpty()) {
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    List<ColumnMeta> columns = meta.getColumns();
+    if(columns.isEmpty()) {
       throw new java.lang.IllegalArgumentException("无法获取实体类的属性。");
     }
-    List<Object> args = new ArrayList<>(colFields.size()); //存放SQL对应的参数
-    Map<String, Object> namedParams = new LinkedHashMap<>(colFields.size()); //使用别名做占位符
-    List<String> sqls = new ArrayList<>(colFields.size()); //存放col=?
+    int size = columns.size();
+    //最后一个槽位存放主键的值
+    Object[] values = new Object[size + 1];
+    BitSet mask = new BitSet(size + 1); //参与UPDATE的字段
     
-    for(ColField cf : colFields) {
-      Field field = cf.getField();
-      if(ormHelper.isPrimaryKey(field)) { //主键忽略
+    for(ColumnMeta column : columns) {
+      if(column.isPrimary() || !isWritable(sqlRequest, column)) { //主键忽略
         continue;
       }
-      Object v = getField(field, sqlRequest.entity);
+      Object v = column.getValue(sqlRequest.entity);
       if(v == null && !sqlRequest.includesNull) {
         continue;
       }
-      if(sqlRequest.namedParams) {
-        namedParams.put(field.getName(), v);
-        sqls.add(sqlRequest.namingStrategy.columnName(sqlRequest.entityClass, field) + "=:" + field.getName());
-      } else {
-        args.add(v);
-        sqls.add(sqlRequest.namingStrategy.columnName(sqlRequest.entityClass, field) + "=?");
-      }
+      values[column.getIndex()] = v;
+      mask.set(column.getIndex());
     }
-    if(sqls.isEmpty()) {
+    if(mask.isEmpty()) {
       throw new IllegalStateException("无法构造有效的UPDATE语句。");
     }
-    final StringBuilder sqlBuf = new StringBuilder(100).append("UPDATE ").append(tablename).append(" SET ");
-    sqlBuf.append(Joiner.on(",").join(sqls));
     //ByID更新
     if(sqlRequest.byId && sqlRequest.entity.getId() != null) {
-      ColField primary = findPrimary(colFields);
-      String idCol = (primary != null ? primary.col : "id");
-      sqlBuf.append(" WHERE ").append(idCol).append("=");
-      
-      if(sqlRequest.namedParams) {
-        String idField = (primary != null ? primary.fieldname : "id");
-        sqlBuf.append(":").append(idField);
-      } else {
-        sqlBuf.append("?");
+      values[size] = sqlRequest.entity.getId();
+      mask.set(size);
+    }
+    
+    int flags = sqlRequest.sqlKey(SQLKey.OP_UPDATE, false).getFlags();
+    SQLTemplate.Key key = new SQLTemplate.Key(meta, flags, mask);
+    SQLTemplate template = templateCache.get(key);
+    if(template == null) {
+      template = updateTemplate(meta, mask, sqlRequest.namedParams);
+      templateCache.put(key, template);
+    }
+    return template.bind(values, sqlRequest.namedParams, sqlRequest.limitSql).withSqlFactory(this);
+  }
+  
+  /**
+   * 根据实体对象的快照（参考{@link BaseEntity#takeSnapshot()}），构造一个只更新发生变化的字段的UPDATE语句：
+   * <ul>
+   *     <li>SET子句只包括与快照相比发生变化的字段，变为<code>null</code>的字段也包括在内，忽略主键和includesNull的设置</li>
+   *     <li>总是追加WHERE id=?子句，因此实体的主键不可为空</li>
+   *     <li>如果没有字段发生变化，则返回<code>null</code>，调用者不必执行任何语句</li>
+   * </ul>
+   * 生成SQL之后，快照保持不变，执行成功之后，可以再次调用{@link BaseEntity#takeSnapshot()}。
+   * @param sqlRequest {@link SQLRequest}的实例，包含了生成SQL所需的条件。
+   * @return {@link SQLReady}包含了生成的SQL和对应的参数，没有变化则返回<code>null</code>
+   */
+  public SQLReady updateChanged(SQLRequest sqlRequest) {
+    BaseEntity entity = sqlRequest.entity;
+    if(entity == null) {
+      throw new NullPointerException("给出的实体类不可为空。");
+    }
+    if(entity.snapshot() == null) {
+      throw new IllegalStateException("实体对象没有快照，请使用BeanRowMapper#withSnapshot(true)装载，或者调用BaseEntity#takeSnapshot()。");
+    }
+    if(entity.getId() == null) {
+      throw new IllegalStateException("实体对象的主键不可为空。");
+    }
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    List<ColumnMeta> columns = meta.getColumns();
+    int size = columns.size();
+    BitSet changed = entity.snapshot().changed(meta, entity);
+    
+    Object[] values = new Object[size + 1];
+    BitSet mask = new BitSet(size + 1);
+    for(int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+      ColumnMeta column = columns.get(i);
+      if(column.isPrimary() || !isWritable(sqlRequest, column)) {
+        continue;
       }
-      args.add(sqlRequest.entity.getId());
+      values[i] = column.getValue(entity);
+      mask.set(i);
+    }
+    if(mask.isEmpty()) { //没有变化
+      return null;
     }
+    values[size] = entity.getId();
+    mask.set(size);
     
-    if(sqlRequest.namedParams) {
-      return new SQLReady(sqlBuf.toString(), namedParams, sqlRequest.limitSql);
-    } else {
-      return new SQLReady(sqlBuf.toString(), args.toArray(new Object[]{}), sqlRequest.limitSql);
+    int flags = sqlRequest.sqlKey(SQLKey.OP_UPDATE, false).getFlags() | SQLKey.BY_ID;
+    SQLTemplate.Key key = new SQLTemplate.Key(meta, flags, mask);
+    SQLTemplate template = templateCache.get(key);
+    if(template == null) {
+      template = updateTemplate(meta, mask, sqlRequest.namedParams);
+      templateCache.put(key, template);
     }
+    return template.bind(values, sqlRequest.namedParams, sqlRequest.limitSql).withSqlFactory(this);
+  }
+  
+  /**
+   * 构建UPDATE语句的模板，SET子句只包括mask中的字段，如果mask中包括最后一个槽位，则追加WHERE id=?
+   */
+  private SQLTemplate updateTemplate(EntityMeta meta, BitSet mask, boolean namedParams) {
+    List<ColumnMeta> columns = meta.getColumns();
+    int size = columns.size();
+    SQLTemplate.Builder builder = new SQLTemplate.Builder(namedParams, 200)
+        .append("UPDATE ").append(meta.getTablename()).append(" SET ");
+    for(int i = mask.nextSetBit(0); i >= 0 && i < size; i = mask.nextSetBit(i + 1)) {
+      if(i != mask.nextSetBit(0)) {
+        builder.append(",");
+      }
+      ColumnMeta column = columns.get(i);
+      builder.append(column.getCol()).append("=").param(i, SQLTemplate.VALUE, column.getFieldname(), paramType(column));
+    }
+    if(mask.get(size)) {
+      ColumnMeta primary = meta.getPrimary();
+      builder.append(" WHERE ").append(primary != null ? primary.getCol() : "id").append("=")
+          .param(size, SQLTemplate.VALUE, primary != null ? primary.getFieldname() : "id", paramType(primary));
+    }
+    return builder.build();
   }
   
   /**
@@ -421,6 +839,157 @@ public final class SQLFactory {
     return this.update(sqlRequest);
   }
   
+  /**
+   * 根据一组ID，构造DELETE FROM ... WHERE id IN (...)语句，参考{@link #deleteByIds(SQLRequest, long[])}
+   * @param entityClass 实体类
+   * @param ids 主键
+   */
+  public List<SQLReady> deleteByIds(Class<?> entityClass, Collection<Long> ids) {
+    return deleteByIds(new SQLRequest(entityClass).sqlFactory(this), toIdArray(ids));
+  }
+  
+  /**
+   * 根据一组ID，构造DELETE FROM ... WHERE id IN (...)语句。ID去重、排序之后，每1000个一组，
+   * 每组占位符的数量向上取整为{@link #IN_BUCKETS}中的一个，不足的部分用最后一个ID填充，
+   * 因此，不论ID有多少个，最多只会产生4种不同的SQL，有利于数据库缓存PreparedStatement。
+   * @param sqlRequest 生成SQL所需的参数，只使用其中的实体类和命名策略
+   * @param ids 主键
+   * @return 每组ID对应一个SQLReady，ids为空则返回空的List
+   */
+  public List<SQLReady> deleteByIds(SQLRequest sqlRequest, long[] ids) {
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    String head = new StringBuilder(100).append("DELETE FROM ").append(meta.getTablename())
+        .append(" WHERE ").append(primaryCol(meta)).toString();
+    return inLists(head, new Object[0], ids, sqlRequest.limitSql);
+  }
+  
+  /**
+   * 根据一组ID，构造SELECT ... WHERE id IN (...)语句，参考{@link #selectByIds(SQLRequest, long[])}
+   * @param entityClass 实体类
+   * @param ids 主键
+   */
+  public List<SQLReady> selectByIds(Class<?> entityClass, Collection<Long> ids) {
+    return selectByIds(new SQLRequest(entityClass).sqlFactory(this), toIdArray(ids));
+  }
+  
+  /**
+   * 根据一组ID，构造SELECT ... WHERE id IN (...)语句，SELECT部分与{@link #select(SQLRequest, boolean)}相同（不支持外键关联），
+   * ID的分组规则参考{@link #deleteByIds(SQLRequest, long[])}
+   * @param sqlRequest 生成SQL所需的参数
+   * @param ids 主键
+   * @return 每组ID对应一个SQLReady，ids为空则返回空的List
+   */
+  public List<SQLReady> selectByIds(SQLRequest sqlRequest, long[] ids) {
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    sqlRequest = sqlRequest.copy().byId(false); //不改变调用者的SQLRequest
+    String head = new StringBuilder(300).append(select(sqlRequest, false).getSql()).append(" WHERE ")
+        .append(sqlRequest.usingAlias ? meta.getTableAlias() + "." : "").append(primaryCol(meta)).toString();
+    return inLists(head, new Object[0], ids, sqlRequest.limitSql);
+  }
+  
+  /**
+   * 使用给定实体对象中的字段值，更新一组ID对应的记录，参考{@link #updateByIds(SQLRequest, long[])}
+   * @param entityTemplate 实体对象，其中需要更新的字段不为<code>null</code>，ID被忽略
+   * @param ids 主键
+   */
+  public List<SQLReady> updateByIds(BaseEntity entityTemplate, Collection<Long> ids) {
+    return updateByIds(new SQLRequest(entityTemplate).sqlFactory(this), toIdArray(ids));
+  }
+  
+  /**
+   * 构造UPDATE ... SET ... WHERE id IN (...)语句，SET子句与{@link #update(SQLRequest)}相同，但是不生成WHERE id=?，
+   * ID的分组规则参考{@link #deleteByIds(SQLRequest, long[])}。只使用?作为占位符，忽略namedParams的设置。
+   * @param sqlRequest 生成SQL所需的参数，其中的实体对象作为模板
+   * @param ids 主键
+   * @return 每组ID对应一个SQLReady，ids为空则返回空的List
+   */
+  public List<SQLReady> updateByIds(SQLRequest sqlRequest, long[] ids) {
+    EntityMeta meta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    SQLReady set = update(sqlRequest.copy().byId(false).namedParams(false)); //不改变调用者的SQLRequest
+    String head = new StringBuilder(200).append(set.getSql()).append(" WHERE ").append(primaryCol(meta)).toString();
+    return inLists(head, set.getArgs(), ids, sqlRequest.limitSql);
+  }
+  
+  /**
+   * IN列表的占位符数量
+   */
+  static final int[] IN_BUCKETS = {16, 64, 256, 1000};
+  /**
+   * 与{@link #IN_BUCKETS}对应的占位符，例如 IN (?,?,?)
+   */
+  private static final String[] IN_PLACEHOLDERS = new String[IN_BUCKETS.length];
+  
+  static {
+    for(int i = 0; i < IN_BUCKETS.length; i++) {
+      StringBuilder buf = new StringBuilder(IN_BUCKETS[i] * 2 + 6).append(" IN (");
+      for(int j = 0; j < IN_BUCKETS[i]; j++) {
+        buf.append(j == 0 ? "?" : ",?");
+      }
+      IN_PLACEHOLDERS[i] = buf.append(")").toString();
+    }
+  }
+  
+  /**
+   * 将ID分组，每组生成一个SQLReady，SQL为head + IN (?,?...)，参数为headArgs + 该组的ID
+   */
+  private List<SQLReady> inLists(String head, Object[] headArgs, long[] ids, LimitSQL limitSql) {
+    if(ids == null || ids.length == 0) {
+      return new ArrayList<SQLReady>(0);
+    }
+    long[] sorted = distinct(ids);
+    int maxBucket = IN_BUCKETS[IN_BUCKETS.length - 1];
+    List<SQLReady> sqlReadies = new ArrayList<SQLReady>(sorted.length / maxBucket + 1);
+    
+    for(int offset = 0; offset < sorted.length; offset += maxBucket) {
+      int size = Math.min(maxBucket, sorted.length - offset);
+      int bucket = 0;
+      while(IN_BUCKETS[bucket] < size) {
+        bucket++;
+      }
+      Object[] args = new Object[headArgs.length + IN_BUCKETS[bucket]];
+      System.arraycopy(headArgs, 0, args, 0, headArgs.length);
+      for(int i = 0; i < IN_BUCKETS[bucket]; i++) {
+        //不足的部分，用最后一个ID填充
+        args[headArgs.length + i] = sorted[offset + Math.min(i, size - 1)];
+      }
+      sqlReadies.add(new SQLReady(head + IN_PLACEHOLDERS[bucket], args, limitSql).withSqlFactory(this));
+    }
+    return sqlReadies;
+  }
+  
+  /**
+   * 排序并去掉重复的ID，不修改原数组
+   */
+  private static long[] distinct(long[] ids) {
+    long[] sorted = ids.clone();
+    Arrays.sort(sorted);
+    int n = 0;
+    for(int i = 0; i < sorted.length; i++) {
+      if(i == 0 || sorted[i] != sorted[n - 1]) {
+        sorted[n++] = sorted[i];
+      }
+    }
+    return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+  }
+  
+  private static long[] toIdArray(Collection<Long> ids) {
+    if(ids == null) {
+      return new long[0];
+    }
+    long[] array = new long[ids.size()];
+    int n = 0;
+    for(Long id : ids) {
+      if(id != null) {
+        array[n++] = id;
+      }
+    }
+    return n == array.length ? array : Arrays.copyOf(array, n);
+  }
+  
+  private static String primaryCol(EntityMeta meta) {
+    return meta.getPrimary() != null ? meta.getPrimary().getCol() : "id";
+  }
+  
   /**
    * 根据给定的SQLRequest，获取对应的列名-字段名列表
    * @param sqlRequest 给定实SQLRequest
@@ -445,41 +1014,95 @@ public final class SQLFactory {
   }
   
   /**
-   * 去除SQL的order by 子句
+   * 去除SQL最外层的ORDER BY子句，子查询中的、括号、引号和注释中的ORDER BY保持不变。
+   * ORDER BY之后的最外层的LIMIT子句保留。
    */
   public String removeOrders(String sql) {
     Assert.hasText(sql);
-    Pattern p = Pattern.compile("order\\s*by[\\w|\\W|\\s|\\S]*",
-        Pattern.CASE_INSENSITIVE);
-    Matcher m = p.matcher(sql);
-    StringBuffer sb = new StringBuffer();
-    while (m.find()) {
-      m.appendReplacement(sb, "");
+    int[] order = SQLText.clause(sql, true, "order", "by");
+    if(order == null) {
+      return sql;
     }
-    m.appendTail(sb);
-    return sb.toString();
+    int[] limit = SQLText.clause(sql, true, "limit");
+    String tail = (limit != null && limit[0] > order[0]) ? " " + sql.substring(limit[0]) : "";
+    return sql.substring(0, order[0]).trim() + tail;
   }
   
   /**
-   * 删除SQL语句中limit子句
-   * @param sql
-   * @return
+   * 删除SQL语句最外层的limit子句，子查询中的LIMIT，以及credit_limit这样的标识符保持不变
+   * @param sql 原始SQL
+   * @return 修改之后的SQL
    */
   public String removeLimit(String sql) {
     Assert.hasText(sql);
-    int index = sql.toLowerCase().lastIndexOf("limit");
-    if(index > 0) {
-      return sql.substring(0, index);
+    int[] limit = SQLText.clause(sql, true, "limit");
+    if(limit == null) {
+      return sql;
     }
-    return sql;
+    return sql.substring(0, limit[0]).trim();
   }
   
   /**
-   * 将一个普通的SQL，转换为COUNT查询的SQL，去掉Select中的字段列表，和ORDER子句。
+   * 将一个普通的SQL，转换为COUNT查询的SQL，按照MySQL的语法解析，参见{@link #countSql(String, LimitSQL)}
    * @param querySql 普通的SQL
    */
   public String countSql(String querySql) {
-    return new StringBuilder(150).append("SELECT COUNT(*) FROM (").append(removeOrders(removeLimit(querySql))).append(") table_ ").toString();
+    return countSql(querySql, SQLRequest.DEFAULT_LIMIT_SQL);
+  }
+  
+  /**
+   * 将一个普通的SQL，转换为COUNT查询的SQL：
+   * <ul>
+   *     <li>使用Druid SQL解析器去掉ORDER BY和LIMIT子句，并将字段列表直接替换为COUNT(*)</li>
+   *     <li>包含DISTINCT、GROUP BY或者聚合函数的查询，使用SELECT COUNT(*) FROM (...) table_</li>
+   *     <li>解析器不支持的SQL，使用{@link #removeOrders(String)}和{@link #removeLimit(String)}去掉最外层的ORDER BY和LIMIT之后，
+   *     再使用SELECT COUNT(*) FROM (...) table_</li>
+   * </ul>
+   * 结果按照SQL文本和数据库类型缓存。
+   * @param querySql 普通的SQL
+   * @param limitSql 数据库方言，决定解析SQL时使用的语法
+   */
+  public String countSql(String querySql, LimitSQL limitSql) {
+    Assert.hasText(querySql);
+    if(limitSql == null) {
+      limitSql = SQLRequest.DEFAULT_LIMIT_SQL;
+    }
+    CountSQL.Key key = new CountSQL.Key(limitSql.getDbType(), querySql, false);
+    String countSql = countCache.get(key);
+    if(countSql == null) {
+      countSql = CountSQL.rewrite(querySql, limitSql.getDbType());
+      if(countSql == null) {
+        countSql = CountSQL.wrap(removeOrders(removeLimit(querySql)));
+      }
+      countSql = SQLText.intern(countSql);
+      countCache.put(key, countSql);
+    }
+    return countSql;
+  }
+  
+  /**
+   * 将一个普通的SQL，转换为有上限的COUNT查询的SQL，例如：SELECT COUNT(*) FROM (SELECT 1 FROM users WHERE ... LIMIT 10000) table_，
+   * 数据库最多扫描cap行，用于总数很大、不需要精确总数的场景。
+   * @param querySql 普通的SQL
+   * @param cap 总数的上限
+   * @param limitSql 数据库方言，决定解析SQL时使用的语法，以及LIMIT子句
+   */
+  public String cappedCountSql(String querySql, long cap, LimitSQL limitSql) {
+    Assert.hasText(querySql);
+    if(limitSql == null) {
+      limitSql = SQLRequest.DEFAULT_LIMIT_SQL;
+    }
+    CountSQL.Key key = new CountSQL.Key(limitSql.getDbType(), querySql, true);
+    String selectOne = countCache.get(key);
+    if(selectOne == null) {
+      selectOne = CountSQL.selectOne(querySql, limitSql.getDbType());
+      if(selectOne == null) {
+        selectOne = removeOrders(removeLimit(querySql));
+      }
+      selectOne = SQLText.canonical(selectOne);
+      countCache.put(key, selectOne);
+    }
+    return CountSQL.wrap(limitSql.getLimitSql(selectOne, 0, (int) Math.min(cap, Integer.MAX_VALUE)));
   }
   
   /**
@@ -514,119 +1137,60 @@ public final class SQLFactory {
     return SQLRequest.DEFAULT_NAME_STRATEGY.tablename(entityClass);
   }
   
-  /**
-   * 获取SQL语句的缓存键值
-   * @param sqlRequest SQLRequest对象
-   * @param type SQL类型
-   * @return 缓存Key
-   */
-  private String sqlKey(SQLRequest sqlRequest, String type, boolean supportsJoin) {
-    StringBuilder keyBuilder = new StringBuilder(200).append(type).append(sqlRequest.toString()).append(supportsJoin);
-    return DigestUtils.md5DigestAsHex(keyBuilder.toString().getBytes(Charset.forName("UTF-8")));
-  }
-  
   private List<ColField> getColFields(SQLRequest sqlRequest, boolean supportsJoin) {
-    PropertyDescriptor[] propertyDescriptors = ReflectUtils.getPropertyDescriptors(sqlRequest.entityClass);
-    if(propertyDescriptors == null) {
-      throw new RuntimeException("无法获取PropertyDescriptor " + sqlRequest.entityClass.getName());
-    }
+    EntityMeta entityMeta = EntityMeta.get(sqlRequest.entityClass, sqlRequest.namingStrategy);
+    List<ColumnMeta> columns = entityMeta.getColumns();
     
-    List<ColField> colFields = new ArrayList<ColField>(propertyDescriptors.length);
-    Map<Class<?>, Integer> typeCounts = new HashMap<>(5);
-    for(PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-      if(propertyDescriptor == null) {
-        continue;
-      }
-      //Read方法
-      Method readMethod = propertyDescriptor.getReadMethod();
-      Field field = ReflectUtils.findField(sqlRequest.entityClass, propertyDescriptor.getName());
-      if(readMethod == null || field == null) {
-        continue;
-      }
-      //如果标注为Transient,则忽略
-      if(getAnnotation(field, Transient.class) != null) {
-        continue;
-      }
-      if(getAnnotation(field, java.beans.Transient.class) != null) {
-        continue;
-      }
-      
-      //如果是集合类或者数组，则忽略
-      if(ClassUtils.isAssignable(propertyDescriptor.getPropertyType(), Collection.class) || propertyDescriptor.getPropertyType().isArray()) {
-        continue;
-      }
-      String fieldname = propertyDescriptor.getName();
-      //必须包含
-      if(!CollectionUtils.isEmpty(sqlRequest.includes) && !sqlRequest.includes.contains(fieldname)) {
+    List<ColField> colFields = new ArrayList<ColField>(columns.size());
+    Map<Class<?>, Integer> typeCounts = null;
+    for(ColumnMeta columnMeta : columns) {
+      if(!isIncluded(sqlRequest, columnMeta.getFieldname())) {
         continue;
       }
-      //必须排除
-      if(!CollectionUtils.isEmpty(sqlRequest.excludes) && sqlRequest.excludes.contains(fieldname)) {
-        continue;
-      }
-      //列名，根据字段名转换得到，与表生成的规则相同
-      String columnName = sqlRequest.namingStrategy.columnName(sqlRequest.entityClass, fieldname);      
-      boolean isPrimary = (getAnnotation(field, Id.class) != null);
-      Class<?> type = field.getType();
-      //Class<?> ownerClass = sqlRequest.entityClass;
-      boolean isForeign = (getAnnotation(field, JoinColumn.class) != null && type.getAnnotation(Entity.class) != null);
       //处理外键中的字段
-      if(isForeign && supportsJoin) {
-        ColField colField = new ColField(columnName, field, isPrimary, isForeign, type, sqlRequest.entityClass);
-        colField.tablename = sqlRequest.namingStrategy.tablename(colField.type);
-        colField.alias = sqlRequest.namingStrategy.tableAlias(colField.type);
+      if(columnMeta.isForeign() && supportsJoin) {
+        EntityMeta refMeta = EntityMeta.get(columnMeta.getType(), sqlRequest.namingStrategy);
+        ColField colField = new ColField(columnMeta, sqlRequest.entityClass);
+        colField.tablename = refMeta.getTablename();
         
         //外键需要加载对应的entity
         Object fkValue = null;
         if(sqlRequest.entity != null) {
-          fkValue = this.getField(field, sqlRequest.entity);
+          fkValue = columnMeta.getValue(sqlRequest.entity);
           if(fkValue == null) {
-            fkValue = ReflectUtils.instantiate(colField.type);
+            fkValue = ReflectUtils.instantiate(columnMeta.getType());
             colField.ownerValue = sqlRequest.entity;
           }
         }
         colFields.add(colField);
         //涉及的表的计数，防止别名冲突
-        if(typeCounts.containsKey(colField.type)) {
-          typeCounts.put(colField.type, typeCounts.get(colField.type) + 1);
-        } else {
-          typeCounts.put(colField.type, 0);
+        if(typeCounts == null) {
+          typeCounts = new HashMap<>(5);
         }
-        final int c = typeCounts.get(colField.type);
-        colField.alias = colField.alias + "_" + c;
-        
-        //关联表中的数据
-        List<String> exc = new ArrayList<>(sqlRequest.excludes.size() + 1);
-        exc.addAll(sqlRequest.excludes);
-        //exc.add("id"); //不包括外键表里面的主键
-        SQLRequest sr = new SQLRequest(type)
-            .includes(sqlRequest.includes.toArray(new String[]{}))
-            .excludes(exc.toArray(new String[]{}))
-            .usingAlias(sqlRequest.usingAlias)
-            .includesNull(sqlRequest.includesNull);
-        
-        List<ColField> fkFields = getColFields(sr, false);
-        final Object foreignValue = fkValue; //临时的，必须final
+        Integer count = typeCounts.get(colField.type);
+        final int c = (count == null ? 0 : count + 1);
+        typeCounts.put(colField.type, c);
+        colField.alias = refMeta.getTableAlias() + "_" + c;
         
-        fkFields.forEach(e -> {
-          e.ownerValue = foreignValue;
-          e.alias = e.alias + "_" + c;
-          if(!e.isForeign) { //仅关联一层，因此，引用表的外键就不考虑了
-            colFields.add(e);
+        //关联表中的数据，仅关联一层，因此，引用表的外键就不考虑了
+        for(ColumnMeta refColumn : refMeta.getColumns()) {
+          if(refColumn.isForeign() || !isIncluded(sqlRequest, refColumn.getFieldname())) {
+            continue;
           }
-        });
-
+          ColField refField = new ColField(refColumn, refMeta.getEntityClass());
+          refField.tablename = refMeta.getTablename();
+          refField.alias = colField.alias;
+          refField.ownerValue = fkValue;
+          colFields.add(refField);
+        }
         //外键关联字段，要保存对应表的主键
-        for(ColField fkcf : fkFields) {
-          if(fkcf.isPrimary) {
-            colField.fkPrimaryColumn = fkcf.col;
-            break;
-          }
+        if(refMeta.getPrimary() != null) {
+          colField.fkPrimaryColumn = refMeta.getPrimary().getCol();
         }
       } else {
-        ColField colField = new ColField(columnName, field, isPrimary, isForeign, type, sqlRequest.entityClass);
-        colField.tablename = sqlRequest.namingStrategy.tablename(colField.ownerClass);
-        colField.alias = sqlRequest.namingStrategy.tableAlias(colField.ownerClass);
+        ColField colField = new ColField(columnMeta, sqlRequest.entityClass);
+        colField.tablename = entityMeta.getTablename();
+        colField.alias = entityMeta.getTableAlias();
         
         if(sqlRequest.entity != null) {
           colField.ownerValue = sqlRequest.entity;
@@ -634,193 +1198,146 @@ public final class SQLFactory {
         colFields.add(colField);
       }
     }
-    
-    colFields.sort(new Comparator<ColField>() {
-      @Override
-      public int compare(ColField cf1, ColField cf2) {
-        if(cf1 == null && cf2 == null) {
-          return 0;
-        }
-        
-        if(cf1 == null && cf2 != null) {
-          return -1;
-        }
-        
-        if(cf1 != null && cf2 == null) {
-          return 1;
-        }
-        
-        if("id".equalsIgnoreCase(cf1.col)) {
-          return -1;
-        }
-        
-        if(cf1.col != null) {
-          return cf1.col.compareToIgnoreCase(cf2.col);
-        }
-        
-        throw new NullPointerException("字段名不可为空。");
-      }
-    });
+    //EntityMeta中的字段已经排好序，只有加入关联表的字段之后，才需要重新排序
+    if(typeCounts != null) {
+      colFields.sort((cf1, cf2) -> EntityMeta.COLUMN_ORDER.compare(cf1.col, cf2.col));
+    }
     
     return colFields;
   }
   
-
-  private Object getField(Field field, Object entity) {
-    Method getter = ORMHelper.getInstance().getAccessMethod(field);
-    Object value;
-    if(getter != null) {
-      value = ReflectUtils.invokeMethod(getter, entity);
-    } else {
-      value = getField(field, entity);
-    }
-    
-    return value;
-  }
-  
-  private void doRangeQuery(SQLRequest sqlRequest, ColField colField, Object value, RangeQuery rqAnn, List<String> sqls, List<Object> args, Map<String, Object> namedParams) {
-    //处理START
-    String startFieldName = rqAnn.start();
-    StringBuilder sql = new StringBuilder(100);
-    if(sqlRequest.usingAlias) {
-      sql.append(colField.alias).append(".");
-    } 
-    
-    if(StringUtils.isNotBlank(startFieldName)) {
-      Field startField = ReflectUtils.findField(colField.ownerClass, startFieldName);
-      if(startField == null) {
-        throw new java.lang.RuntimeException("属性不存在 " + startFieldName);
-      }
-      Object startValue = getField(startField, sqlRequest.entity); //开始值
-      if(startValue != null) {
-        sql.append(colField.col).append(rqAnn.greatAndEquals() ? ">=" : ">");
-        if(sqlRequest.namedParams) {
-          sql.append(":").append(startFieldName);
-          namedParams.put(startFieldName, startValue);
-        } else {
-          sql.append("?");
-          args.add(startValue);
-        }
-        sqls.add(sql.toString());
-      }
-    }
-    
-    //处理END
-    String endFieldName = rqAnn.end();
-    StringBuilder sql2 = new StringBuilder(100);
-    if(sqlRequest.usingAlias) {
-      sql2.append(colField.alias).append(".");
-    } 
-    
-    if(StringUtils.isNotBlank(endFieldName)) {
-      Field endField = ReflectUtils.findField(colField.ownerClass, endFieldName);
-      if(endField == null) {
-        throw new java.lang.RuntimeException("属性不存在 " + startFieldName);
-      }
-      Object endValue = getField(endField, sqlRequest.entity); //结束值
-      if(endValue != null) {
-        sql2.append(colField.col).append(rqAnn.lessAndEquals() ? "<=" : "<");
-        if(sqlRequest.namedParams) {
-          sql2.append(":").append(endFieldName);
-          namedParams.put(endFieldName, endValue);
-        } else {
-          sql2.append("?");
-          args.add(endValue);
-        }
-        sqls.add(sql2.toString());
-      }
+  /**
+   * 根据SQLRequest的includes和excludes，判断一个属性是否应该出现在SQL中
+   */
+  /**
+   * 字段是否参与INSERT、UPDATE和UPSERT：满足includes和excludes的要求，并且不是只读的字段（参见{@link ColumnMeta#isReadOnly()}）。
+   * 只读的字段只有在includes中明确列出的时候才会写入，例如新建的实体对象。
+   */
+  private boolean isWritable(SQLRequest sqlRequest, ColumnMeta column) {
+    if(column.isReadOnly() && !sqlRequest.includes.contains(column.getFieldname())) {
+      return false;
     }
+    return isIncluded(sqlRequest, column.getFieldname());
   }
   
-  private void doPrimaryKey(SQLRequest sqlRequest, ColField colField, Object value, List<String> sqls, List<Object> args, Map<String, Object> namedParams) {
-    if(sqlRequest.namedParams) {
-      sqls.add((sqlRequest.usingAlias ? colField.alias + "." : "") + colField.col + "=:id");
-      namedParams.put("id", value);
-    } else {
-      sqls.add((sqlRequest.usingAlias ? colField.alias + "." : "") + colField.col + "=?");
-      args.add(value);
+  private boolean isIncluded(SQLRequest sqlRequest, String fieldname) {
+    //必须包含
+    if(!CollectionUtils.isEmpty(sqlRequest.includes) && !sqlRequest.includes.contains(fieldname)) {
+      return false;
+    }
+    //必须排除
+    if(!CollectionUtils.isEmpty(sqlRequest.excludes) && sqlRequest.excludes.contains(fieldname)) {
+      return false;
     }
+    return true;
   }
   
-  private void doFullText(SQLRequest sqlRequest, ColField colField, Object value, FullText ftAnn, List<String> sqls, List<Object> args, Map<String, Object> namedParams) {
-    String colname = ftAnn.relativeColumn(); //取得FullText设定的列
-    if(StringUtils.isBlank(colname)) {
-      colname = colField.col;
+  /**
+   * 读取一个字段作为查询条件所需的值，放入对应的槽位。范围查询的开始值和结束值，分别放入rangeSlot和rangeSlot + 1
+   */
+  private void readCondition(ColumnMeta column, Object owner, int slot, int rangeSlot, Object[] values, BitSet mask) {
+    Object value = column.getValue(owner);
+    if(value == null) {
+      return;
     }
+    values[slot] = value;
+    mask.set(slot);
     
-    StringBuilder sql = new StringBuilder(100).append(" MATCH(")
-        .append((sqlRequest.usingAlias ? colField.alias + "." : ""))
-        .append(colname).append(") AGAINST (");
-    if(sqlRequest.namedParams) {
-      sql.append(":").append(colField.field.getName());
-      namedParams.put(colField.field.getName(), value);
-    } else {
-      sql.append("?");
-      args.add(value);
+    if(isRangeQuery(column)) {
+      RangeQuery rqAnn = column.getRangeQuery();
+      if(StringUtils.isNotBlank(rqAnn.start())) {
+        Object startValue = column.getRangeStartValue(owner); //开始值
+        if(startValue != null) {
+          values[rangeSlot] = startValue;
+          mask.set(rangeSlot);
+        }
+      }
+      if(StringUtils.isNotBlank(rqAnn.end())) {
+        Object endValue = column.getRangeEndValue(owner); //结束值
+        if(endValue != null) {
+          values[rangeSlot + 1] = endValue;
+          mask.set(rangeSlot + 1);
+        }
+      }
     }
-    sql.append(" IN BOOLEAN MODE)");
-    
-    sqls.add(sql.toString());
   }
   
-  private void doLike(SQLRequest sqlRequest, ColField colField, Object value, List<String> sqls, List<Object> args, Map<String, Object> namedParams) {
-    StringBuilder sql = new StringBuilder(100).append((sqlRequest.usingAlias ? colField.alias + "." : "")).append(colField.col).append(" LIKE ");
-    if(sqlRequest.namedParams) {
-      sql.append(":").append(colField.field.getName());
-      namedParams.put(colField.field.getName(), value.toString() + "%");
-    } else {
-      sql.append("?");
-      args.add(value.toString() + "%");
+  /**
+   * 数字和日期类型的字段，如果被@RangeQuery标注，则采用范围查询
+   */
+  private boolean isRangeQuery(ColumnMeta column) {
+    if(column.getRangeQuery() == null || column.isPrimary()) {
+      return false;
     }
-    sqls.add(sql.toString());
+    Class<?> type = column.getType();
+    return !ClassUtils.isAssignable(type, String.class)
+        && (ClassUtils.isAssignable(type, Number.class) || ClassUtils.isAssignable(type, Date.class));
   }
   
-  private void doFullMatches(SQLRequest sqlRequest, ColField colField, Object value, FullText ftAnn, List<String> sqls, List<Object> args, Map<String, Object> namedParams) {
-    StringBuilder sql = new StringBuilder(100).append(" LOCATE(");
-    if(sqlRequest.namedParams) {
-      sql.append(":")
-      .append(colField.field.getName())
-      .append(",")
-      .append((sqlRequest.usingAlias ? colField.alias + "." : ""))
-      .append(colField.col).append(") > 0 ");
-      namedParams.put(colField.field.getName(), value);
-    } else {
-      sql.append("?")
-      .append(",")
-      .append((sqlRequest.usingAlias ? colField.alias + "." : ""))
-      .append(colField.col).append(") > 0");
-      args.add(value);
+  /**
+   * 根据字段的类型和标注，追加一个查询条件，多个条件之间使用AND连接
+   * @param builder SQL模板
+   * @param prefix 表的别名和"."，不使用别名的时候为空字符串
+   * @param column 字段
+   * @param slot 字段值的槽位
+   * @param rangeSlot 范围查询开始值的槽位，结束值的槽位为rangeSlot + 1
+   * @param mask 有值的槽位
+   */
+  private void appendCondition(SQLTemplate.Builder builder, String prefix, ColumnMeta column, int slot, int rangeSlot, BitSet mask) {
+    Class<?> type = column.getType();
+    //处理主键
+    if(column.isPrimary()) {
+      and(builder).append(prefix).append(column.getCol()).append("=").param(slot, SQLTemplate.VALUE, "id", paramType(column));
+      return;
     }
-    
-    sqls.add(sql.toString());
-  }
-  
-  private static <T extends Annotation> T getAnnotation(Field field, Class<T> annotationClass) {
-    Objects.requireNonNull(field);
-    ORMHelper ormHelper = ORMHelper.getInstance();
-    
-    T ann = field.getAnnotation(annotationClass);
-    if(ann == null) {
-      Method getter = ormHelper.getAccessMethod(field);
-      ann = getter.getAnnotation(annotationClass);
+    //处理字符串
+    if(ClassUtils.isAssignable(type, String.class)) {
+      FullText ftAnn = column.getFullText();
+      if(ftAnn != null) { //全文检索，对应的字段由@FullText设定，如果没有设定，则采用本字段
+        String colname = StringUtils.isBlank(ftAnn.relativeColumn()) ? column.getCol() : ftAnn.relativeColumn();
+        and(builder).append(" MATCH(").append(prefix).append(colname).append(") AGAINST (")
+            .param(slot, SQLTemplate.VALUE, column.getFieldname(), String.class).append(" IN BOOLEAN MODE)");
+      } else if(column.getFullMatches() != null) { //全匹配，代替LIKE %%
+        and(builder).append(" LOCATE(").param(slot, SQLTemplate.VALUE, column.getFieldname(), String.class)
+            .append(",").append(prefix).append(column.getCol()).append(") > 0");
+      } else { //Like查询
+        and(builder).append(prefix).append(column.getCol()).append(" LIKE ").param(slot, SQLTemplate.LIKE, column.getFieldname(), String.class);
+      }
+      return;
     }
-    
-    return ann;
+    //处理数字、日期和时间
+    if(isRangeQuery(column)) {
+      RangeQuery rqAnn = column.getRangeQuery();
+      if(mask.get(rangeSlot)) {
+        and(builder).append(prefix).append(column.getCol()).append(rqAnn.greatAndEquals() ? ">=" : ">")
+            .param(rangeSlot, SQLTemplate.VALUE, rqAnn.start());
+      }
+      if(mask.get(rangeSlot + 1)) {
+        and(builder).append(prefix).append(column.getCol()).append(rqAnn.lessAndEquals() ? "<=" : "<")
+            .param(rangeSlot + 1, SQLTemplate.VALUE, rqAnn.end());
+      }
+      return;
+    }
+    //处理其他情况（前面没有处理的）
+    and(builder).append(prefix).append(column.getCol()).append("=").param(slot, SQLTemplate.VALUE, column.getFieldname(), paramType(column));
   }
   
-  private ColField findPrimary(Collection<ColField> colFields) {
-    if(colFields == null || colFields.isEmpty()) {
+  /**
+   * 字段作为SQL参数时的Java类型，外键字段的值不是实体类本身，因此返回<code>null</code>，由绑定时的实际值决定
+   */
+  private static Class<?> paramType(ColumnMeta column) {
+    if(column == null || column.isForeign()) {
       return null;
     }
-    for(Iterator<ColField> itr = colFields.iterator(); itr.hasNext();) {
-      ColField cf = itr.next();
-      if(cf.isPrimary) {
-        return cf;
-      }
-    }
-    return null;
+    return column.getType();
   }
   
+  private SQLTemplate.Builder and(SQLTemplate.Builder builder) {
+    if(builder.length() > 0) {
+      builder.append(" AND ");
+    }
+    return builder;
+  }
   
   /**
    * 用于装载数据库字段col, 和实体类属性field的对应关系
@@ -839,11 +1356,28 @@ public final class SQLFactory {
     private Class<?> ownerClass;
     private String tablename;
     private String alias;
+    private transient ColumnMeta meta;
     
     public ColField() {
       
     }
     
+    /**
+     * 根据{@link ColumnMeta}构建ColField，不需要再通过反射获取字段信息
+     * @param meta 字段的元数据
+     * @param ownerClass 字段所在的实体类
+     */
+    public ColField(ColumnMeta meta, Class<?> ownerClass) {
+      this.meta = meta;
+      this.col = meta.getCol();
+      this.fieldname = meta.getFieldname();
+      this.field = meta.getField();
+      this.isPrimary = meta.isPrimary();
+      this.isForeign = meta.isForeign();
+      this.type = meta.getType();
+      this.ownerClass = ownerClass;
+    }
+    
     public ColField(String col, String fieldname, boolean isPrimary, boolean isForeign, Class<?> type, Class<?> ownerClass) {
       this.col = col;
       this.fieldname = fieldname;
@@ -883,6 +1417,10 @@ public final class SQLFactory {
       }
       return field;
     }
+    
+    public ColumnMeta getMeta() {
+      return meta;
+    }
    
   }
 
@@ -0,0 +1,113 @@
+package com.github.catstiger.sql;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SQL缓存的键值，由SQLRequest中影响SQL文本的各项要素组成：实体类、命名策略、各种开关、includes和excludes。
+ * <p>
+ * SQLKey是不可变的，hashCode在构造的时候计算，同一个SQLRequest会缓存其SQLKey，因此，命中缓存的时候几乎没有额外的开销。
+ * 它代替了对{@link SQLRequest#toString()}做MD5摘要的做法。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class SQLKey {
+  public static final int USING_ALIAS = 1;
+  public static final int NAMED_PARAMS = 1 << 1;
+  public static final int INCLUDES_NULL = 1 << 2;
+  public static final int BY_ID = 1 << 3;
+  public static final int SUPPORTS_JOIN = 1 << 4;
+  /**
+   * SQL类型，占用高位
+   */
+  public static final int OP_SELECT = 1 << 8;
+  public static final int OP_INSERT = 1 << 9;
+  public static final int OP_UPDATE = 1 << 10;
+  public static final int OP_CONDITIONS = 1 << 11;
+  public static final int OP_UPSERT = 1 << 12;
+
+  private static final String[] EMPTY = new String[0];
+
+  private final Class<?> entityClass;
+  private final Class<?> namingStrategyClass;
+  private final int flags;
+  private final String[] includes;
+  private final String[] excludes;
+  private final int hash;
+
+  SQLKey(Class<?> entityClass, Class<?> namingStrategyClass, int flags, List<String> includes, List<String> excludes) {
+    this.entityClass = entityClass;
+    this.namingStrategyClass = namingStrategyClass;
+    this.flags = flags;
+    this.includes = toArray(includes);
+    this.excludes = toArray(excludes);
+
+    int h = entityClass.hashCode();
+    h = 31 * h + namingStrategyClass.hashCode();
+    h = 31 * h + flags;
+    h = 31 * h + Arrays.hashCode(this.includes);
+    h = 31 * h + Arrays.hashCode(this.excludes);
+    this.hash = h;
+  }
+
+  /**
+   * 排序并去掉重复的属性名，includes和excludes的顺序不影响SQL，因此也不影响键值
+   */
+  private static String[] toArray(List<String> names) {
+    if(names == null || names.isEmpty()) {
+      return EMPTY;
+    }
+    String[] array = names.toArray(new String[names.size()]);
+    if(array.length == 1) {
+      return array;
+    }
+    Arrays.sort(array);
+    int size = 1;
+    for(int i = 1; i < array.length; i++) {
+      if(!array[i].equals(array[size - 1])) {
+        array[size++] = array[i];
+      }
+    }
+    return size == array.length ? array : Arrays.copyOf(array, size);
+  }
+
+  /**
+   * 构造键值时使用的开关，包括SQL类型
+   */
+  public int getFlags() {
+    return flags;
+  }
+
+  public Class<?> getEntityClass() {
+    return entityClass;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if(this == obj) {
+      return true;
+    }
+    if(!(obj instanceof SQLKey)) {
+      return false;
+    }
+    SQLKey other = (SQLKey) obj;
+    return hash == other.hash && flags == other.flags
+        && entityClass == other.entityClass
+        && namingStrategyClass == other.namingStrategyClass
+        && Arrays.equals(includes, other.includes)
+        && Arrays.equals(excludes, other.excludes);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(100).append(entityClass.getName()).append("#").append(namingStrategyClass.getSimpleName())
+        .append("#").append(Integer.toHexString(flags))
+        .append("#").append(Arrays.toString(includes)).append("#").append(Arrays.toString(excludes)).toString();
+  }
+}
@@ -1,14 +1,20 @@
 package com.github.catstiger.sql;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BooleanSupplier;
 
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
 import com.github.catstiger.sql.limit.LimitSQL;
+import com.github.catstiger.sql.stats.Fingerprint;
 import com.github.catstiger.utils.StringUtils;
-import com.google.common.base.Joiner;
 
 /**
  * 用于存放生成的SQL，以及对应的参数。SQLReady可以简化“SQL拼接”，使得代码更加清爽简洁。下面是一个场景：
@@ -22,9 +28,14 @@ import com.google.common.base.Joiner;
  */
 public final class SQLReady {
   /**
-   * SQL对应的参数列表
+   * SQL对应的参数列表，有效的参数数量为{@link #argCount}
+   */
+  private Object[] args;
+  private int argCount = 0;
+  /**
+   * 参数的类型，参见{@link ParameterBinder#typeOf(Class)}，由{@link SQLFactory}根据实体类的元数据设置，可以为<code>null</code>
    */
-  private List<Object> args = new ArrayList<>(10);
+  private byte[] paramTypes;
   /**
    * 命名SQL对应的参数列表
    */
@@ -34,15 +45,33 @@ public final class SQLReady {
    */
   private LimitSQL limitSql = SQLRequest.DEFAULT_LIMIT_SQL;
   /**
-   * SQL片段，所有的元素组合成一个完整的SQL
+   * 生成本实例的{@link SQLFactory}，用于生成COUNT和LIMIT SQL，为<code>null</code>则使用{@link SQLFactory#getInstance()}
+   */
+  private SQLFactory sqlFactory;
+  /**
+   * SQL片段，依次追加，片段之间用{@link #SQL_SPLITTER}分隔
+   */
+  private final StringBuilder sql;
+  /**
+   * 已经追加的SQL片段的数量
+   */
+  private int segments = 0;
+  /**
+   * 缓存的完整SQL，追加SQL片段之后失效
+   */
+  private String rendered;
+  /**
+   * SQL中是否已经包含ORDER BY，WHERE，随着SQL片段的追加而更新
    */
-  private List<String> appended = new ArrayList<>(10);
+  private boolean hasOrderBy = false;
+  private boolean hasWhere = false;
   /**
    * 组合SQL使用的分隔符
    */
   private static final String SQL_SPLITTER = " ";
   
   private static final String ORDER_BY = " ORDER BY ";
+  private static final String WHERE = " WHERE ";
   /**
    * 排序方向常量
    */
@@ -58,12 +87,7 @@ public final class SQLReady {
    * @param args 对应的参数，与SQL语句中的占位符数量相同，顺序一致。
    */
   public SQLReady(String sql, Object... args) {
-    appended.add(sql);
-    if(args != null) {
-      for(Object arg : args) {
-        this.args.add(arg);
-      }
-    }
+    this(sql, args, SQLRequest.DEFAULT_LIMIT_SQL);
   }
   
   /**
@@ -72,11 +96,7 @@ public final class SQLReady {
    * @param namedParameters {@code Map}装载的命名参数，key为名称，value为参数值。key值必须与SQL中的命名占位符一致。
    */
   public SQLReady(String sql, Map<String, Object> namedParameters) {
-    if(sql == null) {
-      throw new IllegalArgumentException("SQL must not be null.");
-    }
-    appended.add(sql);
-    this.namedParameters = namedParameters;
+    this(sql, namedParameters, SQLRequest.DEFAULT_LIMIT_SQL);
   }
   
   /**
@@ -88,13 +108,11 @@ public final class SQLReady {
     if(sql == null) {
       throw new IllegalArgumentException("SQL must not be null.");
     }
-    
-    appended.add(sql);
-    if(args != null) {
-      for(Object arg : args) {
-        this.args.add(arg);
-      }
-    }
+    this.sql = new StringBuilder(sql.length() + 64);
+    this.args = new Object[(args == null ? 0 : args.length) + 8];
+    appendSegment(sql);
+    this.rendered = sql; //未追加片段之前，直接使用原来的实例，缓存中驻留的SQL可以原样传递给JDBC
+    addArgs(args);
     this.limitSql = limitSql;
   }
   /**
@@ -104,7 +122,13 @@ public final class SQLReady {
    * @param limitSql {@code LimitSQL}的实例
    */
   public SQLReady(String sql, Map<String, Object> namedParameters, LimitSQL limitSql) {
-    appended.add(sql);
+    if(sql == null) {
+      throw new IllegalArgumentException("SQL must not be null.");
+    }
+    this.sql = new StringBuilder(sql.length() + 64);
+    this.args = new Object[8];
+    appendSegment(sql);
+    this.rendered = sql;
     this.namedParameters = namedParameters;
     this.limitSql = limitSql;
   }
@@ -114,15 +138,141 @@ public final class SQLReady {
    * @return SQL
    */
   public String getSql() {
-    return Joiner.on(SQL_SPLITTER).join(appended);
+    String text = rendered;
+    if(text == null) {
+      text = sql.toString();
+      rendered = text;
+    }
+    return text;
+  }
+  
+  /**
+   * 追加一个SQL片段，并更新ORDER BY，WHERE等子句的状态。只检查新追加的部分（包括与之前的SQL衔接的部分），
+   * 因此，构建SQL的开销与SQL的长度成正比。
+   */
+  private void appendSegment(String segment) {
+    int from = sql.length();
+    if(segments > 0) {
+      sql.append(SQL_SPLITTER);
+    }
+    sql.append(segment);
+    segments++;
+    rendered = null;
+    if(!hasOrderBy) {
+      hasOrderBy = containsIgnoreCase(sql, ORDER_BY, from);
+    }
+    if(!hasWhere) {
+      hasWhere = containsIgnoreCase(sql, WHERE, from);
+    }
+  }
+  
+  /**
+   * 从from附近开始，查找keyword，keyword可能跨越新旧两部分
+   */
+  private static boolean containsIgnoreCase(StringBuilder text, String keyword, int from) {
+    int start = Math.max(0, from - keyword.length() + 1);
+    int end = text.length() - keyword.length();
+    for(int i = start; i <= end; i++) {
+      int j = 0;
+      while(j < keyword.length() && Character.toUpperCase(text.charAt(i + j)) == keyword.charAt(j)) {
+        j++;
+      }
+      if(j == keyword.length()) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * SQL中是否已经包含ORDER BY（不区分大小写）
+   */
+  public boolean hasOrderBy() {
+    return hasOrderBy;
+  }
+  
+  /**
+   * SQL中是否已经包含WHERE（不区分大小写，包括子查询中的WHERE）
+   */
+  public boolean hasWhere() {
+    return hasWhere;
+  }
+  
+  private void addArgs(Object[] values) {
+    if(values == null || values.length == 0) {
+      return;
+    }
+    ensureCapacity(argCount + values.length);
+    System.arraycopy(values, 0, args, argCount, values.length);
+    argCount += values.length;
+  }
+  
+  private void ensureCapacity(int capacity) {
+    if(capacity > args.length) {
+      args = Arrays.copyOf(args, Math.max(capacity, args.length * 2));
+    }
   }
   
   /**
    * 返回所有的SQL参数，返回的顺序与SQL中占位符的顺序相同，数量相同
    */
   public Object[] getArgs() {
-    Object[] objs = new Object[args.size()];
-    return args.toArray(objs);
+    return Arrays.copyOf(args, argCount);
+  }
+  
+  /**
+   * 将本实例的SQL替换为规范化并驻留的文本，参见{@link SQLText#intern(String)}。
+   * 逻辑上相同的SQL，规范化之后文本完全相同，可以共用数据库服务器端的预编译语句和执行计划。
+   * @return this instance.
+   */
+  public SQLReady intern() {
+    String text = SQLText.intern(getSql());
+    sql.setLength(0);
+    sql.append(text);
+    rendered = text;
+    return this;
+  }
+  
+  /**
+   * 返回SQL语句的指纹，只是参数值不同的SQL具有相同的指纹，参见{@link Fingerprint}
+   */
+  public String getFingerprint() {
+    return Fingerprint.of(getSql());
+  }
+  
+  /**
+   * 设置参数的类型，与参数一一对应，之后追加的参数按照其实际类型绑定
+   */
+  SQLReady paramTypes(byte[] types) {
+    this.paramTypes = types;
+    return this;
+  }
+  
+  /**
+   * 按照顺序，将参数直接绑定到PreparedStatement，不复制参数数组。如果参数的类型已知（例如由{@link SQLFactory}生成的SQLReady），
+   * 则直接调用setLong、setString、setTimestamp等方法，参数为<code>null</code>的时候使用对应的SQL类型调用setNull；
+   * 否则按照参数值的实际类型绑定。参见{@link ParameterBinder}。
+   * <p>
+   * 只适用于使用?作为占位符的SQL，命名参数可以先调用{@link #positional()}
+   * </p>
+   * @param ps PreparedStatement，由{@link #getSql()}创建
+   * @throws SQLException 绑定失败
+   */
+  public void bindTo(PreparedStatement ps) throws SQLException {
+    if(namedParameters != null && !namedParameters.isEmpty()) {
+      throw new IllegalStateException("命名参数不能直接绑定，请先调用positional()");
+    }
+    ParameterBinder.bind(ps, args, argCount, paramTypes);
+  }
+  
+  /**
+   * 返回一个PreparedStatementSetter，调用{@link #bindTo(PreparedStatement)}绑定参数，可以用于JdbcTemplate：
+   * <pre>
+   * jdbcTemplate.query(sqlReady.getSql(), sqlReady.getPreparedStatementSetter(), rowMapper);
+   * </pre>
+   */
+  public PreparedStatementSetter getPreparedStatementSetter() {
+    return this::bindTo;
   }
   
   /**
@@ -130,11 +280,7 @@ public final class SQLReady {
    * @param args 查询参数。
    */
   public void setArgs(Object[] args) {
-    if(args != null) {
-      for(Object arg : args) {
-        this.args.add(arg);
-      }
-    }
+    addArgs(args);
   }
   /**
    * 新增一个SQL参数，SQL参数的数量必须与SQL语句中占位符的数量一致
@@ -142,7 +288,8 @@ public final class SQLReady {
    * @return this instance.
    */
   public SQLReady addArg(Object arg) {
-    this.args.add(arg);
+    ensureCapacity(argCount + 1);
+    args[argCount++] = arg;
     return this;
   }
 
@@ -171,12 +318,8 @@ public final class SQLReady {
     if(sqlSegment == null) {
       throw new IllegalArgumentException("Sql Segment must not be null.");
     }
-    appended.add(sqlSegment);
-    if(args != null && args.length > 0) {
-      for(Object arg : args) {
-        this.args.add(arg);
-      }
-    }
+    appendSegment(sqlSegment);
+    addArgs(args);
     return this;
   }
   
@@ -215,7 +358,7 @@ public final class SQLReady {
     if(sqlSegment == null) {
       throw new IllegalArgumentException("Sql Segment must not be null.");
     }
-    appended.add(sqlSegment);
+    appendSegment(sqlSegment);
     if(name != null) {
       this.namedParameters.put(name, value);
     }
@@ -259,7 +402,7 @@ public final class SQLReady {
     if(sqlSegment == null) {
       throw new IllegalArgumentException("Sql Segment must not be null.");
     }
-    appended.add(sqlSegment);
+    appendSegment(sqlSegment);
     if(namedParams != null) {
       this.namedParameters.putAll(namedParams);
     }
@@ -322,8 +465,8 @@ public final class SQLReady {
       return this;
     }
     
-    String orderBy = getSql().indexOf(ORDER_BY) > 0 ? " , " : ORDER_BY;
-    appended.add(new StringBuilder(20).append(orderBy).append(column).append(" ").append(direction).toString());
+    String orderBy = hasOrderBy ? " , " : ORDER_BY;
+    appendSegment(new StringBuilder(20).append(orderBy).append(column).append(" ").append(direction).toString());
     return this;
   }
   /**
@@ -356,11 +499,21 @@ public final class SQLReady {
   }
   
   /**
-   * 将原始的SQL转换为一个用于count查询的SQL，会去掉原始SQL中的order， limit等子句，然后在外围包装一个SELECT count(*) FROM..
+   * 将原始的SQL转换为一个用于count查询的SQL，会去掉原始SQL中的order， limit等子句，并将字段列表替换为COUNT(*)；
+   * 包含DISTINCT、GROUP BY的SQL，则在外围包装一个SELECT count(*) FROM..，参见{@link SQLFactory#countSql(String, LimitSQL)}
    * @return 用于count查询的SQL
    */
   public String countSql() {
-    return SQLFactory.getInstance().countSql(getSql());
+    return factory().countSql(getSql(), limitSql);
+  }
+  
+  /**
+   * 将原始的SQL转换为一个有上限的count查询的SQL，数据库最多扫描cap行，参见{@link SQLFactory#cappedCountSql(String, long, LimitSQL)}
+   * @param cap 总数的上限
+   * @return 用于count查询的SQL
+   */
+  public String cappedCountSql(long cap) {
+    return factory().cappedCountSql(getSql(), cap, limitSql);
   }
   /**
    * 将一个普通的SQL转换为限制查询抓取范围的SQL
@@ -369,7 +522,106 @@ public final class SQLReady {
    * @return 带有limit功能的SQL
    */
   public String limitSql(int start, int limit) {
-    return SQLFactory.getInstance().limitSql(getSql(), start, limit, limitSql);
+    return factory().limitSql(getSql(), start, limit, limitSql);
+  }
+
+  /**
+   * 如果本实例使用命名参数，则通过{@link CompiledSql}转换为使用?作为占位符的SQLReady，否则返回本实例。
+   * 转换后可以直接使用JdbcTemplate执行，不必由NamedParameterJdbcTemplate每次解析SQL。
+   * 与NamedParameterJdbcTemplate相同，集合或者数组参数展开为多个?，例如in (:ids)。
+   * @return 使用?作为占位符的SQLReady
+   */
+  public SQLReady positional() {
+    if(namedParameters == null || namedParameters.isEmpty()) {
+      return this;
+    }
+    return CompiledSql.compile(getSql()).toSQLReady(namedParameters, limitSql).withSqlFactory(sqlFactory);
+  }
+  
+  /**
+   * 生成keyset分页的SQL：在原始SQL的WHERE子句中追加“位于游标之后”的条件，然后追加ORDER BY和LIMIT子句，参考{@link Keyset}。
+   * 原始的WHERE条件用括号包围，即<code>WHERE (原始条件) AND (游标条件)</code>，因此原始条件中的OR不会影响游标条件。
+   * 原始SQL的最外层不能包含ORDER BY、GROUP BY、HAVING、UNION和LIMIT子句。如果本实例使用命名参数，则排序键的值以seek0, seek1...命名。
+   * @param keyset 排序键
+   * @param cursor 上一页返回的游标，为空则抓取第一页
+   * @param limit 抓取的行数
+   * @return 新的SQLReady实例，包含生成的SQL和全部参数
+   */
+  public SQLReady seek(Keyset keyset, String cursor, int limit) {
+    if(keyset == null) {
+      throw new IllegalArgumentException("Keyset must not be null.");
+    }
+    String sql = getSql();
+    if(hasClause(sql, "order", "by")) {
+      throw new IllegalArgumentException("使用keyset分页的SQL不能包含ORDER BY子句。");
+    }
+    if(hasClause(sql, "group", "by") || hasClause(sql, "having") || hasClause(sql, "union") || hasClause(sql, "limit")) {
+      throw new IllegalArgumentException("使用keyset分页的SQL不能包含GROUP BY、HAVING、UNION和LIMIT子句。");
+    }
+    
+    StringBuilder buf = new StringBuilder(sql.length() + 100);
+    List<Object> seekArgs = new ArrayList<>(keyset.size() * 2);
+    if(StringUtils.isNotBlank(cursor)) {
+      String predicate = keyset.seekPredicate(keyset.parseCursor(cursor), limitSql, seekArgs);
+      int where = clauseEnd(sql, "where");
+      if(where >= 0) {
+        //WHERE子句是最外层的最后一个子句，将原始条件用括号包围
+        buf.append(sql, 0, where).append(" (").append(sql.substring(where).trim()).append(") AND (");
+      } else {
+        buf.append(sql).append(" WHERE ");
+      }
+      if(namedParameters != null && !namedParameters.isEmpty()) {
+        //命名参数，依次替换?
+        Map<String, Object> params = new LinkedHashMap<>(namedParameters);
+        StringBuilder named = new StringBuilder(predicate.length() + seekArgs.size() * 6);
+        int n = 0;
+        for(int i = 0; i < predicate.length(); i++) {
+          char c = predicate.charAt(i);
+          if(c == '?') {
+            named.append(":seek").append(n);
+            params.put("seek" + n, seekArgs.get(n));
+            n++;
+          } else {
+            named.append(c);
+          }
+        }
+        buf.append(named).append(where >= 0 ? ")" : "").append(keyset.orderByClause());
+        return new SQLReady(limitSql.getLimitSql(buf.toString(), 0, limit), params, limitSql).withSqlFactory(sqlFactory);
+      }
+      buf.append(predicate).append(where >= 0 ? ")" : "");
+    } else {
+      buf.append(sql);
+    }
+    buf.append(keyset.orderByClause());
+    
+    if(namedParameters != null && !namedParameters.isEmpty()) {
+      return new SQLReady(limitSql.getLimitSql(buf.toString(), 0, limit), new LinkedHashMap<>(namedParameters), limitSql).withSqlFactory(sqlFactory);
+    }
+    Object[] allArgs = Arrays.copyOf(args, argCount + seekArgs.size());
+    for(int i = 0; i < seekArgs.size(); i++) {
+      allArgs[argCount + i] = seekArgs.get(i);
+    }
+    return new SQLReady(limitSql.getLimitSql(buf.toString(), 0, limit), allArgs, limitSql).paramTypes(paramTypes).withSqlFactory(sqlFactory);
+  }
+  
+  /**
+   * SQL的最外层（不在括号和引号中）是否包含某个子句，例如WHERE，ORDER BY
+   * @param sql SQL
+   * @param words 子句的各个单词，单词之间可以有任意的空白
+   */
+  private static boolean hasClause(String sql, String... words) {
+    return clauseEnd(sql, words) >= 0;
+  }
+  
+  /**
+   * 查找SQL的最外层（不在括号、引号和注释中）的子句
+   * @param sql SQL
+   * @param words 子句的各个单词
+   * @return 子句的最后一个单词之后的位置，如果不包含该子句，返回-1
+   */
+  private static int clauseEnd(String sql, String... words) {
+    int[] clause = SQLText.clause(sql, false, words);
+    return clause == null ? -1 : clause[1];
   }
 
   /**
@@ -381,5 +633,27 @@ public final class SQLReady {
     this.limitSql = limitSql;
     return this;
   }
+  
+  /**
+   * 设定生成COUNT和LIMIT SQL使用的{@link SQLFactory}，例如使用独立缓存的SQLFactory实例。
+   * {@link SQLFactory}生成的SQLReady已经设定为生成它的实例。
+   * @param sqlFactory SQLFactory的实例，为<code>null</code>则使用{@link SQLFactory#getInstance()}
+   * @return this instance.
+   */
+  public SQLReady withSqlFactory(SQLFactory sqlFactory) {
+    this.sqlFactory = sqlFactory;
+    return this;
+  }
+  
+  private SQLFactory factory() {
+    return sqlFactory != null ? sqlFactory : SQLFactory.getInstance();
+  }
+  
+  /**
+   * 本实例使用的数据库方言
+   */
+  public LimitSQL getDialect() {
+    return limitSql;
+  }
 }
 
@@ -24,6 +24,14 @@ public final class SQLRequest {
    */
   public static final NamingStrategy DEFAULT_NAME_STRATEGY = new CamelCaseNamingStrategy();
   public static final LimitSQL DEFAULT_LIMIT_SQL = new MySqlLimitSQL();
+  /**
+   * 多行INSERT语句，缺省的最大行数
+   */
+  public static final int DEFAULT_BATCH_ROWS = 1000;
+  /**
+   * 多行INSERT语句，缺省的最大长度，小于MySQL缺省的max_allowed_packet
+   */
+  public static final int DEFAULT_BATCH_BYTES = 1024 * 1024;
   
   Class<?> entityClass;
   BaseEntity entity;
@@ -36,6 +44,13 @@ public final class SQLRequest {
   boolean byId = false;
   LimitSQL limitSql = DEFAULT_LIMIT_SQL;
   Map<String, String> sorts = new LinkedHashMap<>(5);
+  int batchRows = DEFAULT_BATCH_ROWS;
+  int batchBytes = DEFAULT_BATCH_BYTES;
+  SQLFactory sqlFactory;
+  /**
+   * 缓存的SQLKey，实体类、命名策略、includes或excludes发生变化时，会将其清空
+   */
+  private SQLKey sqlKey;
   
   public SQLRequest(Class<?> entityClass) {
     this.entity = null;
@@ -70,6 +85,7 @@ public final class SQLRequest {
    * @return 支持链式操作
    */
   public SQLRequest entityClass(Class<?> entityClass) {
+    this.sqlKey = null;
     this.entityClass = entityClass;
     return this;
   }
@@ -83,6 +99,7 @@ public final class SQLRequest {
     if(entity == null) {
       throw new RuntimeException("实体不可为null.");
     }
+    this.sqlKey = null;
     this.entity = entity;
     this.entityClass = entity.getClass();
     
@@ -94,6 +111,7 @@ public final class SQLRequest {
    * @return  支持链式操作
    */
   public SQLRequest includes(String... includes) {
+    this.sqlKey = null;
     if(includes != null && includes.length > 0) {
       this.includes.addAll(Arrays.asList(includes));
     }
@@ -106,6 +124,7 @@ public final class SQLRequest {
    * @return  支持链式操作
    */
   public SQLRequest excludes(String... excludes) {
+    this.sqlKey = null;
     if(excludes != null && excludes.length > 0) {
       this.excludes.addAll(Arrays.asList(excludes));
     } 
@@ -128,6 +147,7 @@ public final class SQLRequest {
    * @return  支持链式操作
    */
   public SQLRequest namingStrategy(NamingStrategy namingStrategy) {
+    this.sqlKey = null;
     this.namingStrategy = namingStrategy;
     return this;
   }
@@ -165,6 +185,34 @@ public final class SQLRequest {
     return this;
   }
   
+  /**
+   * 设定生成SQL所使用的SQLFactory，例如使用不同缓存配置的实例，缺省为{@link SQLFactory#getInstance()}
+   * @return 支持链式操作
+   */
+  public SQLRequest sqlFactory(SQLFactory sqlFactory) {
+    this.sqlFactory = sqlFactory;
+    return this;
+  }
+  
+  private SQLFactory factory() {
+    return (sqlFactory != null ? sqlFactory : SQLFactory.getInstance());
+  }
+  
+  /**
+   * 设定多行INSERT语句的限制，超出限制的部分，拆分为多条语句
+   * @param batchRows 每条语句的最大行数
+   * @param batchBytes 每条语句的最大长度（SQL文本加参数，预估值）
+   * @return 支持链式操作
+   */
+  public SQLRequest batchLimit(int batchRows, int batchBytes) {
+    if(batchRows <= 0 || batchBytes <= 0) {
+      throw new IllegalArgumentException("批量插入的行数和长度必须大于0。");
+    }
+    this.batchRows = batchRows;
+    this.batchBytes = batchBytes;
+    return this;
+  }
+  
   /**
    * 新增一组排序，Key为字段名，Value为desc/asc
    */
@@ -190,7 +238,7 @@ public final class SQLRequest {
    * @return Instance of SQLReady.
    */
   public SQLReady insert() {
-    SQLFactory sqlFactory = SQLFactory.getInstance();
+    SQLFactory sqlFactory = factory();
     return sqlFactory.insert(this);
   }
   
@@ -199,16 +247,52 @@ public final class SQLRequest {
    * @return Instance of SQLReady.
    */
   public SQLReady insertNonNull() {
-    SQLFactory sqlFactory = SQLFactory.getInstance();
+    SQLFactory sqlFactory = factory();
     this.includesNull(false);
     return sqlFactory.insert(this);
   }
   
+  /**
+   * 生成批量INSERT SQL及每个实体对应的参数，用于JDBC executeBatch，规则参考{@link SQLFactory#insertBatch(SQLRequest, List)}
+   * @param entities 需要插入的实体对象，必须是同一个实体类
+   * @return Instance of BatchSQL.
+   */
+  public BatchSQL insertBatch(List<? extends BaseEntity> entities) {
+    return factory().insertBatch(this, entities);
+  }
+  
+  /**
+   * 生成多行INSERT SQL，即INSERT INTO ... VALUES (...),(...)，按照{@link #batchLimit(int, int)}拆分为多条语句
+   * @param entities 需要插入的实体对象，必须是同一个实体类
+   * @return 一条或者多条SQLReady
+   */
+  public List<SQLReady> insertMultiRows(List<? extends BaseEntity> entities) {
+    return factory().insertMultiRows(this, entities);
+  }
+  
+  /**
+   * 生成UPSERT SQL：主键对应的记录不存在则INSERT，否则UPDATE，语句由{@link #withLimitSql(LimitSQL)}对应的数据库方言决定
+   * @return Instance of SQLReady.
+   */
+  public SQLReady upsert() {
+    return factory().upsert(this);
+  }
+  
+  /**
+   * 生成批量UPSERT SQL及每个实体对应的参数，用于JDBC executeBatch，字段相同的实体合并为一个BatchSQL，
+   * 参考{@link SQLFactory#upsertBatch(SQLRequest, List)}
+   * @param entities 实体对象，必须是同一个实体类
+   * @return 一个或者多个BatchSQL
+   */
+  public List<BatchSQL> upsertBatch(List<? extends BaseEntity> entities) {
+    return factory().upsertBatch(this, entities);
+  }
+  
   /**
    * 生成UPDATE SQL
    */
   public SQLReady update() {
-    SQLFactory sqlFactory = SQLFactory.getInstance();
+    SQLFactory sqlFactory = factory();
     return sqlFactory.update(this);
   }
   
@@ -218,27 +302,60 @@ public final class SQLRequest {
    * 如果参数byId为true，并且，SQLRequest#entity的主键不为空，则自动追加WHERE id=?子句，并且在参数中加入ID值
    */
   public SQLReady updateById() {
-    SQLFactory sqlFactory = SQLFactory.getInstance();
+    SQLFactory sqlFactory = factory();
     return sqlFactory.update(this.byId(true));
   }
   
+  /**
+   * 只更新与快照相比发生变化的字段，快照由{@link BaseEntity#takeSnapshot()}记录，
+   * 或者使用{@link com.github.catstiger.sql.mapper.BeanRowMapper#withSnapshot(boolean)}装载实体时自动记录。
+   * @return SQLReady，如果没有字段发生变化，则返回<code>null</code>
+   */
+  public SQLReady updateChanged() {
+    return factory().updateChanged(this);
+  }
+  
+  /**
+   * 生成DELETE FROM ... WHERE id IN (...)，ID较多时拆分为多条语句，参考{@link SQLFactory#deleteByIds(SQLRequest, long[])}
+   * @param ids 主键
+   */
+  public List<SQLReady> deleteByIds(long... ids) {
+    return factory().deleteByIds(this, ids);
+  }
+  
+  /**
+   * 生成SELECT ... WHERE id IN (...)，ID较多时拆分为多条语句，参考{@link SQLFactory#selectByIds(SQLRequest, long[])}
+   * @param ids 主键
+   */
+  public List<SQLReady> selectByIds(long... ids) {
+    return factory().selectByIds(this, ids);
+  }
+  
+  /**
+   * 以实体对象为模板，生成UPDATE ... SET ... WHERE id IN (...)，参考{@link SQLFactory#updateByIds(SQLRequest, long[])}
+   * @param ids 主键
+   */
+  public List<SQLReady> updateByIds(long... ids) {
+    return factory().updateByIds(this, ids);
+  }
+  
   /**
    * 生成SQL语，如果{@link #byId}为false，则不生成WHERE及WHERE以后的部分，否则生成的语句包括WHERE id=?
    * @return SQLReady, 只有SQL，没有参数
    */
   public SQLReady select() {
-    return SQLFactory.getInstance().select(this, false);
+    return factory().select(this, false);
   }
   
   public SQLReady select(boolean supportsJoin) {
-    return SQLFactory.getInstance().select(this, supportsJoin);
+    return factory().select(this, supportsJoin);
   }
   
   /**
    * 生成根据ID查询的SQL语句
    */
   public SQLReady selectById() {
-    return SQLFactory.getInstance().select(this.byId(true), false);
+    return factory().select(this.byId(true), false);
   }
   
   /**
@@ -246,10 +363,10 @@ public final class SQLRequest {
    * @param supportsJoin 是否支持外键关联
    */
   public SQLReady selectBySample(boolean supportsJoin) {
-    SQLFactory sqlFactory = SQLFactory.getInstance();
+    SQLFactory sqlFactory = factory();
     this.byId = false;
     String select = sqlFactory.select(this, supportsJoin).getSql();
-    SQLReady sqlReady = SQLFactory.getInstance().conditions(this, supportsJoin);
+    SQLReady sqlReady = sqlFactory.conditions(this, supportsJoin);
     
     StringBuilder sql = new StringBuilder(300).append(select)
         .append(" WHERE ");
@@ -259,7 +376,7 @@ public final class SQLRequest {
       sql.append(" 1=1 ");
     }
   
-    return new SQLReady(sql.toString(), sqlReady.getArgs()).withLimitSql(limitSql);
+    return new SQLReady(sql.toString(), sqlReady.getArgs()).withLimitSql(limitSql).withSqlFactory(sqlFactory);
   }
   /**
    * 根据给定的实体，生成查询SQL，生成的规则参考{@link #conditions()}，不支持外键关联
@@ -272,7 +389,7 @@ public final class SQLRequest {
    * 构建查询条件及其参数，不支持外键关联
    */
   public SQLReady conditions() {
-    return SQLFactory.getInstance().conditions(this, false);
+    return factory().conditions(this, false);
   }
   /**
    * 根据Entity中的实体类的实例，创建一个SQL查询的条件: 
@@ -287,7 +404,58 @@ public final class SQLRequest {
    * @return
    */
   public SQLReady conditions(boolean supportsJoin) {
-    return SQLFactory.getInstance().conditions(this, supportsJoin);
+    return factory().conditions(this, supportsJoin);
+  }
+
+  /**
+   * 复制本实例的全部设置，用于需要临时改变某些设置（例如byId、namedParams）的场合，不影响调用者的SQLRequest
+   */
+  SQLRequest copy() {
+    SQLRequest copy = new SQLRequest(entityClass);
+    copy.entity = entity;
+    copy.includes.addAll(includes);
+    copy.excludes.addAll(excludes);
+    copy.usingAlias = usingAlias;
+    copy.namedParams = namedParams;
+    copy.namingStrategy = namingStrategy;
+    copy.includesNull = includesNull;
+    copy.byId = byId;
+    copy.limitSql = limitSql;
+    copy.sorts.putAll(sorts);
+    copy.batchRows = batchRows;
+    copy.batchBytes = batchBytes;
+    copy.sqlFactory = sqlFactory;
+    return copy;
+  }
+
+  /**
+   * 返回用于SQL缓存的键值，只要SQLRequest的设置没有改变，多次调用返回同一个实例
+   * @param op SQL类型，例如{@link SQLKey#OP_SELECT}
+   * @param supportsJoin 是否支持外键关联
+   */
+  SQLKey sqlKey(int op, boolean supportsJoin) {
+    int flags = op;
+    if(usingAlias) {
+      flags |= SQLKey.USING_ALIAS;
+    }
+    if(namedParams) {
+      flags |= SQLKey.NAMED_PARAMS;
+    }
+    if(includesNull) {
+      flags |= SQLKey.INCLUDES_NULL;
+    }
+    if(byId) {
+      flags |= SQLKey.BY_ID;
+    }
+    if(supportsJoin) {
+      flags |= SQLKey.SUPPORTS_JOIN;
+    }
+    SQLKey key = this.sqlKey;
+    if(key == null || key.getFlags() != flags) {
+      key = new SQLKey(entityClass, namingStrategy.getClass(), flags, includes, excludes);
+      this.sqlKey = key;
+    }
+    return key;
   }
 
   @Override
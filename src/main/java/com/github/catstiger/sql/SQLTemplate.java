@@ -0,0 +1,214 @@
+package com.github.catstiger.sql;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.catstiger.sql.limit.LimitSQL;
+import com.github.catstiger.sql.meta.EntityMeta;
+
+/**
+ * 编译好的SQL模板。INSERT、UPDATE和查询条件的SQL文本只取决于哪些字段参与了SQL（通常就是哪些字段不为<code>null</code>），
+ * 因此，对于同一个实体类，相同的字段组合只需要构建一次SQL，之后每次调用只需要把参数值取出，按顺序装入数组即可。
+ * <p>
+ * 参数值事先按照“槽位”存放在一个数组中，模板记录了每一个占位符对应的槽位、参数名、取值方式以及参数的类型，
+ * 参数的类型用于{@link ParameterBinder}直接绑定参数。
+ * </p>
+ * @author catstiger
+ *
+ */
+final class SQLTemplate {
+  /**
+   * 直接使用参数值
+   */
+  static final byte VALUE = 0;
+  /**
+   * 参数值后追加%，用于右LIKE查询
+   */
+  static final byte LIKE = 1;
+
+  private final String sql;
+  private final int[] slots;
+  private final byte[] kinds;
+  private final String[] names;
+  private final byte[] types;
+
+  private SQLTemplate(String sql, int[] slots, byte[] kinds, String[] names, byte[] types) {
+    this.sql = sql;
+    this.slots = slots;
+    this.kinds = kinds;
+    this.names = names;
+    this.types = types;
+  }
+
+  /**
+   * 使用槽位中的参数值，生成SQLReady
+   * @param values 参数值，按照槽位存放
+   * @param namedParams 是否使用命名参数
+   * @param limitSql LimitSQL的实例
+   */
+  SQLReady bind(Object[] values, boolean namedParams, LimitSQL limitSql) {
+    if(namedParams) {
+      Map<String, Object> params = new LinkedHashMap<>(slots.length * 2);
+      for(int i = 0; i < slots.length; i++) {
+        params.put(names[i], valueAt(values, i));
+      }
+      return new SQLReady(sql, params, limitSql);
+    }
+    return new SQLReady(sql, args(values), limitSql).paramTypes(types);
+  }
+  
+  /**
+   * 按照占位符的顺序，从槽位中取出参数值
+   * @param values 参数值，按照槽位存放
+   */
+  Object[] args(Object[] values) {
+    Object[] args = new Object[slots.length];
+    for(int i = 0; i < slots.length; i++) {
+      args[i] = valueAt(values, i);
+    }
+    return args;
+  }
+
+  private Object valueAt(Object[] values, int i) {
+    Object value = values[slots[i]];
+    if(kinds[i] == LIKE && value != null) {
+      return value.toString() + "%";
+    }
+    return value;
+  }
+
+  String getSql() {
+    return sql;
+  }
+  
+  /**
+   * 按照占位符的顺序，返回参数的类型，参见{@link ParameterBinder#typeOf(Class)}
+   */
+  byte[] getTypes() {
+    return types;
+  }
+
+  /**
+   * 参数的数量
+   */
+  int size() {
+    return slots.length;
+  }
+
+  /**
+   * 用于构建SQLTemplate，SQL文本和参数按照出现的顺序追加
+   */
+  static final class Builder {
+    private final StringBuilder sql;
+    private final boolean namedParams;
+    private final List<Integer> slots = new ArrayList<>(16);
+    private final List<Byte> kinds = new ArrayList<>(16);
+    private final List<String> names = new ArrayList<>(16);
+    private final List<Byte> types = new ArrayList<>(16);
+
+    Builder(boolean namedParams, int capacity) {
+      this.namedParams = namedParams;
+      this.sql = new StringBuilder(capacity);
+    }
+
+    Builder append(String text) {
+      sql.append(text);
+      return this;
+    }
+
+    /**
+     * 追加一个占位符，命名参数使用:name，否则使用?
+     * @param slot 参数值在数组中的位置
+     * @param kind 取值方式，{@link SQLTemplate#VALUE}或{@link SQLTemplate#LIKE}
+     * @param name 参数名
+     */
+    Builder param(int slot, byte kind, String name) {
+      return param(slot, kind, name, null);
+    }
+    
+    /**
+     * 追加一个占位符，并记录参数的Java类型
+     * @param type 参数的Java类型，为<code>null</code>则在绑定时按照参数值的实际类型处理
+     */
+    Builder param(int slot, byte kind, String name, Class<?> type) {
+      if(namedParams) {
+        sql.append(":").append(name);
+      } else {
+        sql.append("?");
+      }
+      return bindOnly(slot, kind, name, type);
+    }
+
+    /**
+     * 只记录一个占位符对应的槽位和参数的Java类型，不追加SQL文本，用于占位符已经包含在SQL文本中的情况
+     */
+    Builder bindOnly(int slot, byte kind, String name, Class<?> type) {
+      slots.add(slot);
+      kinds.add(kind);
+      names.add(name);
+      types.add(ParameterBinder.typeOf(type));
+      return this;
+    }
+
+    int length() {
+      return sql.length();
+    }
+
+    SQLTemplate build() {
+      int size = slots.size();
+      int[] slotArray = new int[size];
+      byte[] kindArray = new byte[size];
+      byte[] typeArray = new byte[size];
+      for(int i = 0; i < size; i++) {
+        slotArray[i] = slots.get(i);
+        kindArray[i] = kinds.get(i);
+        typeArray[i] = types.get(i);
+      }
+      return new SQLTemplate(SQLText.intern(sql.toString()), slotArray, kindArray, names.toArray(new String[size]), typeArray);
+    }
+  }
+
+  /**
+   * 模板缓存的键值：实体类元数据、SQL类型及开关、参与SQL的字段，以及数据库方言（如果SQL与方言有关）
+   */
+  static final class Key {
+    private final EntityMeta meta;
+    private final int flags;
+    private final BitSet mask;
+    private final Class<?> dialect;
+    private final int hash;
+
+    Key(EntityMeta meta, int flags, BitSet mask) {
+      this(meta, flags, mask, null);
+    }
+    
+    Key(EntityMeta meta, int flags, BitSet mask, Class<?> dialect) {
+      this.meta = meta;
+      this.flags = flags;
+      this.mask = mask;
+      this.dialect = dialect;
+      this.hash = ((31 * meta.hashCode() + flags) * 31 + mask.hashCode()) * 31 + (dialect == null ? 0 : dialect.hashCode());
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && meta == other.meta && flags == other.flags && dialect == other.dialect
+          && mask.equals(other.mask);
+    }
+  }
+}
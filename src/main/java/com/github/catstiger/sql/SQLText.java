@@ -0,0 +1,223 @@
+package com.github.catstiger.sql;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * SQL文本的规范化和驻留。逻辑上相同的SQL，应该具有完全相同的文本，这样，数据库服务器端的预编译语句缓存和执行计划缓存中，
+ * 同一个查询只占用一项：
+ * <ul>
+ *     <li>{@link #canonical(String)}：引号和注释之外，连续的空白字符合并为一个空格，去掉首尾、“(”之后、“)”和“,”之前的空白。
+ *     单行注释保留其结尾的换行符</li>
+ *     <li>{@link #intern(String)}：规范化之后，返回唯一的String实例（弱引用，不再使用的时候可以被回收），
+ *     相同的SQL可以直接使用==比较</li>
+ * </ul>
+ * {@link SQLFactory}生成并缓存的SQL都经过了驻留。
+ * @author catstiger
+ *
+ */
+public final class SQLText {
+  private static final Interner<String> interner = Interners.newWeakInterner();
+  
+  private SQLText() {
+  }
+  
+  /**
+   * 规范化SQL文本的空白字符，引号和注释中的内容保持不变
+   * @param sql SQL文本
+   * @return 规范化的SQL，如果本来就是规范的，则返回原来的实例
+   */
+  public static String canonical(String sql) {
+    if(sql == null || isCanonical(sql)) {
+      return sql;
+    }
+    int len = sql.length();
+    StringBuilder buf = new StringBuilder(len);
+    int i = 0;
+    while(i < len) {
+      char c = sql.charAt(i);
+      if(c == '\'' || c == '"' || c == '`') {
+        int end = sql.indexOf(c, i + 1);
+        end = (end < 0 ? len : end + 1);
+        buf.append(sql, i, end);
+        i = end;
+      } else if(isComment(sql, i)) {
+        int end = commentEnd(sql, i);
+        buf.append(sql, i, end);
+        i = end;
+      } else if(Character.isWhitespace(c)) {
+        int end = i + 1;
+        while(end < len && Character.isWhitespace(sql.charAt(end))) {
+          end++;
+        }
+        if(needsSpace(buf, sql, end)) {
+          buf.append(' ');
+        }
+        i = end;
+      } else {
+        buf.append(c);
+        i++;
+      }
+    }
+    return buf.toString();
+  }
+  
+  /**
+   * 规范化SQL文本，并返回唯一的实例
+   * @param sql SQL文本
+   * @return 驻留的SQL文本
+   */
+  public static String intern(String sql) {
+    if(sql == null) {
+      return null;
+    }
+    return interner.intern(canonical(sql));
+  }
+  
+  /**
+   * 查找SQL最外层（不在括号、引号和注释中）的子句，例如：clause(sql, false, "order", "by")
+   * @param sql SQL文本
+   * @param last 为true时查找最后一个，否则查找第一个
+   * @param words 子句的各个单词，单词之间可以有任意的空白
+   * @return 子句的开始位置，和最后一个单词之后的位置，如果不包含该子句，返回null
+   */
+  static int[] clause(String sql, boolean last, String... words) {
+    int[] found = null;
+    int depth = 0;
+    int len = sql.length();
+    int i = 0;
+    while(i < len) {
+      char c = sql.charAt(i);
+      if(c == '\'' || c == '"' || c == '`') {
+        int end = sql.indexOf(c, i + 1);
+        i = (end < 0 ? len : end + 1);
+        continue;
+      }
+      if(isComment(sql, i)) {
+        i = commentEnd(sql, i);
+        continue;
+      }
+      if(c == '(') {
+        depth++;
+      } else if(c == ')') {
+        depth--;
+      } else if(depth == 0 && (i == 0 || !isWordChar(sql.charAt(i - 1)))) {
+        int end = wordsEnd(sql, i, words);
+        if(end >= 0) {
+          found = new int[] {i, end};
+          if(!last) {
+            return found;
+          }
+          i = end;
+          continue;
+        }
+      }
+      i++;
+    }
+    return found;
+  }
+  
+  /**
+   * 从位置i开始，依次匹配各个单词（忽略大小写），返回最后一个单词之后的位置，不匹配则返回-1
+   */
+  private static int wordsEnd(String sql, int i, String... words) {
+    int len = sql.length();
+    int pos = i;
+    for(int w = 0; w < words.length; w++) {
+      if(w > 0) {
+        int ws = pos;
+        while(pos < len && Character.isWhitespace(sql.charAt(pos))) {
+          pos++;
+        }
+        if(pos == ws) {
+          return -1;
+        }
+      }
+      if(!sql.regionMatches(true, pos, words[w], 0, words[w].length())) {
+        return -1;
+      }
+      pos += words[w].length();
+    }
+    return (pos >= len || !isWordChar(sql.charAt(pos))) ? pos : -1;
+  }
+  
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+  
+  /**
+   * 连续的空白字符是否需要替换为一个空格
+   * @param buf 已经处理的文本
+   * @param sql 原始的SQL
+   * @param next 空白之后的第一个字符的位置
+   */
+  private static boolean needsSpace(StringBuilder buf, String sql, int next) {
+    if(buf.length() == 0 || next >= sql.length()) {
+      return false;
+    }
+    char prev = buf.charAt(buf.length() - 1);
+    char following = sql.charAt(next);
+    return prev != '(' && prev != '\n' && following != ')' && following != ',';
+  }
+  
+  /**
+   * 位置i是否是注释（--或者/*）的开始
+   */
+  private static boolean isComment(String sql, int i) {
+    if(i + 1 >= sql.length()) {
+      return false;
+    }
+    char c = sql.charAt(i);
+    char next = sql.charAt(i + 1);
+    return (c == '-' && next == '-') || (c == '/' && next == '*');
+  }
+  
+  /**
+   * 注释结束之后的位置，单行注释包括结尾的换行符
+   */
+  private static int commentEnd(String sql, int i) {
+    int end;
+    if(sql.charAt(i) == '-') {
+      end = sql.indexOf('\n', i + 2);
+      return end < 0 ? sql.length() : end + 1;
+    }
+    end = sql.indexOf("*/", i + 2);
+    return end < 0 ? sql.length() : end + 2;
+  }
+  
+  /**
+   * 检查SQL是否已经是规范的，大多数情况下可以避免复制
+   */
+  private static boolean isCanonical(String sql) {
+    int len = sql.length();
+    char quote = 0;
+    for(int i = 0; i < len; i++) {
+      char c = sql.charAt(i);
+      if(quote != 0) {
+        if(c == quote) {
+          quote = 0;
+        }
+        continue;
+      }
+      if(c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if(isComment(sql, i)) {
+        int end = commentEnd(sql, i);
+        if(end < len && Character.isWhitespace(sql.charAt(end))) {
+          return false;
+        }
+        i = end - 1;
+      } else if(Character.isWhitespace(c)) {
+        if(c != ' ' || i == 0 || i == len - 1) {
+          return false;
+        }
+        char prev = sql.charAt(i - 1);
+        char next = sql.charAt(i + 1);
+        if(prev == ' ' || prev == '(' || next == ')' || next == ',') {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
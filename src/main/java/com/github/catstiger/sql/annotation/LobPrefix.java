@@ -0,0 +1,25 @@
+package com.github.catstiger.sql.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 用LobPrefix标注的String属性，从ResultSet装载的时候只读取前{@link #value()}个字符。对于CLOB字段，只从数据库读取这一部分，
+ * 不会把整个CLOB装入内存，适用于列表查询中只需要显示摘要的大文本字段。
+ * <p>
+ * 装载的只是原有内容的一部分，写回数据库会截断原有的内容，因此被LobPrefix标注的属性是只读的：INSERT、UPDATE和UPSERT语句都不包括这个字段，
+ * 除非在{@link com.github.catstiger.sql.SQLRequest#includes(String...)}中明确列出，例如保存新建的实体对象。
+ * </p>
+ * @author catstiger
+ *
+ */
+@Target(value={ElementType.METHOD, ElementType.FIELD})
+@Retention(value=RetentionPolicy.RUNTIME)
+public @interface LobPrefix {
+  /**
+   * 最多读取的字符数
+   */
+  int value();
+}
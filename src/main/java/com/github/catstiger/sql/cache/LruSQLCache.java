@@ -0,0 +1,156 @@
+package com.github.catstiger.sql.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有容量限制的近似LRU缓存。对象保存在{@link ConcurrentHashMap}中，读取不加锁：
+ * <ul>
+ *     <li>每个对象记录最近一次访问时的“时钟”，时钟只在放入新对象的时候前进，因此，读取热点对象时，时钟通常没有变化，不需要写入任何共享的数据</li>
+ *     <li>超出容量时，淘汰时钟最早的一批对象（容量的1/16，至少1个），淘汰的过程加锁，只在放入新对象的时候发生</li>
+ * </ul>
+ * 同一个时钟周期内被访问的对象，淘汰的顺序不确定，因此是近似的LRU。
+ * @author catstiger
+ *
+ * @param <K> 键值的类型
+ * @param <V> 缓存对象的类型
+ */
+public final class LruSQLCache<K, V> implements SQLCache<K, V> {
+  /**
+   * 缺省的容量
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 2048;
+
+  private final ConcurrentHashMap<K, Entry<V>> map;
+  private final int maximumSize;
+  /**
+   * 每次淘汰的数量
+   */
+  private final int evictionBatch;
+  private final AtomicLong clock = new AtomicLong();
+  private final Object evictionLock = new Object();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public LruSQLCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * 创建一个LruSQLCache
+   * @param maximumSize 最多缓存的对象数量
+   */
+  public LruSQLCache(int maximumSize) {
+    if(maximumSize <= 0) {
+      throw new IllegalArgumentException("缓存的容量必须大于0。");
+    }
+    this.maximumSize = maximumSize;
+    this.evictionBatch = Math.max(1, maximumSize / 16);
+    this.map = new ConcurrentHashMap<K, Entry<V>>(Math.min(maximumSize, 256));
+  }
+
+  /**
+   * 返回一个{@link SQLCache.Provider}，创建指定容量的LruSQLCache
+   */
+  public static SQLCache.Provider provider(final int maximumSize) {
+    return new SQLCache.Provider() {
+      @Override
+      public <K, V> SQLCache<K, V> create(String name) {
+        return new LruSQLCache<K, V>(maximumSize);
+      }
+    };
+  }
+
+  @Override
+  public V get(K key) {
+    Entry<V> entry = map.get(key);
+    if(entry == null) {
+      misses.increment();
+      return null;
+    }
+    long now = clock.get();
+    if(entry.stamp != now) {
+      entry.stamp = now;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  @Override
+  public void put(K key, V value) {
+    map.put(key, new Entry<V>(value, clock.incrementAndGet()));
+    if(map.size() > maximumSize) {
+      evict();
+    }
+  }
+
+  /**
+   * 淘汰时钟最早的一批对象，使缓存的数量比容量少evictionBatch - 1个
+   */
+  private void evict() {
+    synchronized (evictionLock) {
+      int size = map.size();
+      if(size <= maximumSize) {
+        return;
+      }
+      long[] stamps = new long[size + 16];
+      int count = 0;
+      for(Entry<V> entry : map.values()) {
+        if(count == stamps.length) {
+          break;
+        }
+        stamps[count++] = entry.stamp;
+      }
+      int toRemove = Math.min(count, size - maximumSize + evictionBatch - 1);
+      Arrays.sort(stamps, 0, count);
+      long threshold = stamps[toRemove - 1];
+
+      int removed = 0;
+      for(Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator(); it.hasNext() && removed < toRemove;) {
+        Map.Entry<K, Entry<V>> entry = it.next();
+        if(entry.getValue().stamp <= threshold && map.remove(entry.getKey(), entry.getValue())) {
+          removed++;
+        }
+      }
+      evictions.add(removed);
+    }
+  }
+
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  @Override
+  public void clear() {
+    map.clear();
+  }
+
+  @Override
+  public SQLCacheStats stats() {
+    return new SQLCacheStats(hits.sum(), misses.sum(), evictions.sum(), size());
+  }
+
+  @Override
+  public String toString() {
+    return "LruSQLCache[" + stats() + "]";
+  }
+
+  /**
+   * 缓存的对象，及其最近一次访问时的时钟
+   */
+  private static final class Entry<V> {
+    private final V value;
+    private volatile long stamp;
+
+    Entry(V value, long stamp) {
+      this.value = value;
+      this.stamp = stamp;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.github.catstiger.sql.cache;
+
+/**
+ * SQLFactory使用的缓存，用于保存生成的SQL文本和SQL模板。每个{@link com.github.catstiger.sql.SQLFactory}实例拥有自己的缓存，
+ * 缓存的实现由{@link Provider}提供，缺省使用{@link LruSQLCache}。
+ * <p>
+ * 实现类必须是线程安全的，并且应该有容量限制：动态的includes/excludes组合会产生大量不同的键值，不加限制的缓存会不断增长。
+ * </p>
+ * @author catstiger
+ *
+ * @param <K> 键值的类型
+ * @param <V> 缓存对象的类型
+ */
+public interface SQLCache<K, V> {
+  /**
+   * 返回缓存的对象，如果没有，则返回<code>null</code>
+   */
+  V get(K key);
+  
+  /**
+   * 放入缓存，如果超出容量，则按照实现类的策略淘汰其他对象
+   */
+  void put(K key, V value);
+  
+  /**
+   * 当前缓存的对象的数量
+   */
+  int size();
+  
+  /**
+   * 清空缓存，不影响统计数据
+   */
+  void clear();
+  
+  /**
+   * 返回命中、未命中、淘汰次数以及缓存对象数量的快照
+   */
+  SQLCacheStats stats();
+  
+  /**
+   * 用于创建SQLCache，SQLFactory为每一种缓存调用一次{@link #create(String)}
+   */
+  interface Provider {
+    /**
+     * 创建一个SQLCache
+     * @param name 缓存的名称，例如{@code "sql"}, {@code "template"}
+     */
+    <K, V> SQLCache<K, V> create(String name);
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.catstiger.sql.cache;
+
+/**
+ * {@link SQLCache}统计数据的快照，不可变
+ * @author catstiger
+ *
+ */
+public final class SQLCacheStats {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final int size;
+  
+  public SQLCacheStats(long hitCount, long missCount, long evictionCount, int size) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * 因为超出容量而被淘汰的次数
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * 缓存对象的数量
+   */
+  public int getSize() {
+    return size;
+  }
+  
+  /**
+   * 命中率，没有访问过则返回1.0
+   */
+  public double getHitRate() {
+    long requests = hitCount + missCount;
+    return requests == 0 ? 1.0 : (double) hitCount / requests;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(80).append("hits=").append(hitCount).append(", misses=").append(missCount)
+        .append(", evictions=").append(evictionCount).append(", size=").append(size).toString();
+  }
+}
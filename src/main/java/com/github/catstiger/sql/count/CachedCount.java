@@ -0,0 +1,104 @@
+package com.github.catstiger.sql.count;
+
+import java.util.Arrays;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.github.catstiger.sql.SQLReady;
+import com.github.catstiger.sql.cache.LruSQLCache;
+import com.github.catstiger.sql.cache.SQLCache;
+
+/**
+ * 缓存另一个{@link CountStrategy}的结果，按照COUNT语句和参数缓存，在给定的时间内，同样条件的查询不再计算总数。
+ * @author catstiger
+ *
+ */
+public class CachedCount implements CountStrategy {
+  private final CountStrategy delegate;
+  private final long ttlMillis;
+  private final SQLCache<CountKey, CachedResult> cache;
+  
+  /**
+   * @param delegate 实际计算总数的CountStrategy
+   * @param ttlMillis 缓存的时间，单位为毫秒
+   */
+  public CachedCount(CountStrategy delegate, long ttlMillis) {
+    this(delegate, ttlMillis, LruSQLCache.DEFAULT_MAXIMUM_SIZE);
+  }
+  
+  /**
+   * @param delegate 实际计算总数的CountStrategy
+   * @param ttlMillis 缓存的时间，单位为毫秒
+   * @param maximumSize 最多缓存的总数的数量
+   */
+  public CachedCount(CountStrategy delegate, long ttlMillis, int maximumSize) {
+    if(delegate == null || ttlMillis <= 0) {
+      throw new IllegalArgumentException("delegate must not be null, and ttl must be positive.");
+    }
+    this.delegate = delegate;
+    this.ttlMillis = ttlMillis;
+    this.cache = new LruSQLCache<CountKey, CachedResult>(maximumSize);
+  }
+
+  @Override
+  public CountResult count(JdbcTemplate jdbcTemplate, SQLReady query) {
+    CountKey key = new CountKey(query.countSql(), query.getArgs());
+    CachedResult cached = cache.get(key);
+    long now = System.currentTimeMillis();
+    if(cached != null && now - cached.timestamp <= ttlMillis) {
+      return cached.result;
+    }
+    CountResult result = delegate.count(jdbcTemplate, query);
+    cache.put(key, new CachedResult(result, now));
+    return result;
+  }
+  
+  /**
+   * 清除缓存的总数，例如数据发生了较大变化之后
+   */
+  public void clear() {
+    cache.clear();
+  }
+  
+  /**
+   * 缓存的键值：COUNT语句和参数
+   */
+  private static final class CountKey {
+    private final String sql;
+    private final Object[] args;
+    private final int hash;
+    
+    CountKey(String sql, Object[] args) {
+      this.sql = sql;
+      this.args = args;
+      this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(args);
+    }
+    
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(!(obj instanceof CountKey)) {
+        return false;
+      }
+      CountKey other = (CountKey) obj;
+      return hash == other.hash && sql.equals(other.sql) && Arrays.deepEquals(args, other.args);
+    }
+  }
+  
+  private static final class CachedResult {
+    private final CountResult result;
+    private final long timestamp;
+    
+    CachedResult(CountResult result, long timestamp) {
+      this.result = result;
+      this.timestamp = timestamp;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.github.catstiger.sql.count;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.github.catstiger.sql.SQLReady;
+import com.github.catstiger.sql.stats.StatementStatsRegistry;
+
+/**
+ * 有上限的总数，例如：SELECT COUNT(*) FROM (SELECT 1 FROM users WHERE ... LIMIT 10000) table_，
+ * 数据库最多扫描cap行。总数小于上限的时候是精确的，否则表示“至少有cap行”。
+ * @author catstiger
+ *
+ */
+public class CappedCount implements CountStrategy {
+  /**
+   * 缺省的上限
+   */
+  public static final long DEFAULT_CAP = 10000L;
+  
+  private final long cap;
+  
+  public CappedCount() {
+    this(DEFAULT_CAP);
+  }
+  
+  /**
+   * @param cap 总数的上限
+   */
+  public CappedCount(long cap) {
+    if(cap <= 0) {
+      throw new IllegalArgumentException("上限必须大于0。");
+    }
+    this.cap = cap;
+  }
+
+  @Override
+  public CountResult count(JdbcTemplate jdbcTemplate, SQLReady query) {
+    String countSql = query.cappedCountSql(cap);
+    long begin = System.nanoTime();
+    Long total = jdbcTemplate.query(countSql, query.getPreparedStatementSetter(), 
+        rs -> rs.next() ? rs.getLong(1) : 0L);
+    StatementStatsRegistry.getInstance().record(countSql, System.nanoTime() - begin, 1L, 0L);
+    long value = (total == null ? 0L : total);
+    return new CountResult(value, value < cap);
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.catstiger.sql.count;
+
+/**
+ * {@link CountStrategy}计算的总数，以及总数是否精确
+ * @author catstiger
+ *
+ */
+public final class CountResult {
+  private final long total;
+  private final boolean exact;
+  
+  public CountResult(long total, boolean exact) {
+    this.total = total;
+    this.exact = exact;
+  }
+  
+  public long getTotal() {
+    return total;
+  }
+  
+  /**
+   * 总数是否精确，估算的总数，或者达到上限的总数，不是精确的
+   */
+  public boolean isExact() {
+    return exact;
+  }
+  
+  @Override
+  public String toString() {
+    return exact ? String.valueOf(total) : "~" + total;
+  }
+}
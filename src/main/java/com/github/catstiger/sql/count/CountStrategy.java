@@ -0,0 +1,26 @@
+package com.github.catstiger.sql.count;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.github.catstiger.sql.SQLReady;
+
+/**
+ * 分页查询时，计算查询结果总数的方式。对于很大的表，精确的COUNT(*)可能需要数秒，此时可以使用估算的、有上限的，或者缓存的总数：
+ * <ul>
+ *     <li>{@link ExactCount}：精确的COUNT(*)</li>
+ *     <li>{@link EstimatedCount}：根据EXPLAIN或者information_schema.tables.table_rows估算</li>
+ *     <li>{@link CappedCount}：最多计算到给定的上限</li>
+ *     <li>{@link CachedCount}：在一段时间内，缓存另一个CountStrategy的结果</li>
+ * </ul>
+ * @author catstiger
+ *
+ */
+public interface CountStrategy {
+  /**
+   * 计算查询结果的总数
+   * @param jdbcTemplate 用于执行查询
+   * @param query 查询语句及其参数，使用?作为占位符，不包括limit子句
+   * @return 总数，以及总数是否精确
+   */
+  CountResult count(JdbcTemplate jdbcTemplate, SQLReady query);
+}
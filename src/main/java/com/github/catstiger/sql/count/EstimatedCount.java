@@ -0,0 +1,93 @@
+package com.github.catstiger.sql.count;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.github.catstiger.sql.SQLReady;
+
+/**
+ * 估算的总数，不扫描数据，适用于MySQL：
+ * <ul>
+ *     <li>缺省使用EXPLAIN，取第一个表的rows（如果有filtered，则乘以filtered%），查询条件可以使用索引的时候，估算较为准确</li>
+ *     <li>如果给定了表名，则使用information_schema.tables.table_rows，适用于没有查询条件的列表</li>
+ * </ul>
+ * 只有数据库方言（{@link com.github.catstiger.sql.limit.LimitSQL#getDbType()}）是mysql的时候才估算，
+ * 其他数据库，或者数据库不支持（例如EXPLAIN的结果中没有rows，或者执行出错），则使用{@link ExactCount}。
+ * @author catstiger
+ *
+ */
+public class EstimatedCount implements CountStrategy {
+  private static final String TABLE_ROWS_SQL = 
+      "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+  
+  private final String tablename;
+  private final ExactCount exactCount = new ExactCount();
+  
+  /**
+   * 使用EXPLAIN估算
+   */
+  public EstimatedCount() {
+    this(null);
+  }
+  
+  /**
+   * 使用information_schema.tables.table_rows估算
+   * @param tablename 表名
+   */
+  public EstimatedCount(String tablename) {
+    this.tablename = tablename;
+  }
+
+  @Override
+  public CountResult count(JdbcTemplate jdbcTemplate, SQLReady query) {
+    if(!"mysql".equalsIgnoreCase(query.getDialect().getDbType())) {
+      return exactCount.count(jdbcTemplate, query);
+    }
+    Long total;
+    try {
+      if(tablename != null) {
+        total = jdbcTemplate.query(TABLE_ROWS_SQL, new Object[] {tablename}, rs -> rs.next() ? rs.getLong(1) : null);
+      } else {
+        total = jdbcTemplate.query("EXPLAIN " + query.getSql(), query.getPreparedStatementSetter(), EstimatedCount::explainRows);
+      }
+    } catch (DataAccessException e) {
+      total = null;
+    }
+    if(total == null) {
+      return exactCount.count(jdbcTemplate, query);
+    }
+    return new CountResult(total, false);
+  }
+  
+  /**
+   * 从EXPLAIN的结果中读取第一行的rows和filtered，如果没有rows，则返回<code>null</code>
+   */
+  private static Long explainRows(ResultSet rs) throws SQLException {
+    ResultSetMetaData rsmd = rs.getMetaData();
+    int rowsIndex = 0;
+    int filteredIndex = 0;
+    for(int i = 1; i <= rsmd.getColumnCount(); i++) {
+      String label = rsmd.getColumnLabel(i);
+      if("rows".equalsIgnoreCase(label)) {
+        rowsIndex = i;
+      } else if("filtered".equalsIgnoreCase(label)) {
+        filteredIndex = i;
+      }
+    }
+    if(rowsIndex == 0 || !rs.next()) {
+      return null;
+    }
+    long rows = rs.getLong(rowsIndex);
+    if(filteredIndex > 0) {
+      double filtered = rs.getDouble(filteredIndex);
+      if(!rs.wasNull()) {
+        rows = (long) (rows * filtered / 100D);
+      }
+    }
+    return rows;
+  }
+}
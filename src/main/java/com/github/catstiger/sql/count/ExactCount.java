@@ -0,0 +1,24 @@
+package com.github.catstiger.sql.count;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.github.catstiger.sql.SQLReady;
+import com.github.catstiger.sql.stats.StatementStatsRegistry;
+
+/**
+ * 使用{@link SQLReady#countSql()}计算精确的总数
+ * @author catstiger
+ *
+ */
+public class ExactCount implements CountStrategy {
+
+  @Override
+  public CountResult count(JdbcTemplate jdbcTemplate, SQLReady query) {
+    String countSql = query.countSql();
+    long begin = System.nanoTime();
+    Long total = jdbcTemplate.query(countSql, query.getPreparedStatementSetter(), 
+        rs -> rs.next() ? rs.getLong(1) : 0L);
+    StatementStatsRegistry.getInstance().record(countSql, System.nanoTime() - begin, 1L, 0L);
+    return new CountResult(total == null ? 0L : total, true);
+  }
+}
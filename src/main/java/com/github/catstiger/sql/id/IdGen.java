@@ -14,4 +14,17 @@ public interface IdGen {
    */
   public Long nextId();
   
+  /**
+   * 一次生成多个全局唯一的ID，用于批量插入。缺省的实现逐个调用{@link #nextId()}，子类可以覆盖此方法，
+   * 例如，只加锁一次，或者一次从数据库中获取一段ID。
+   * @param count ID的数量
+   * @return IDs generated.
+   */
+  default long[] nextIds(int count) {
+    long[] ids = new long[count];
+    for(int i = 0; i < count; i++) {
+      ids[i] = nextId();
+    }
+    return ids;
+  }
 }
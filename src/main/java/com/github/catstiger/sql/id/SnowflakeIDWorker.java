@@ -37,6 +37,21 @@ public class SnowflakeIDWorker {
   }
 
   public synchronized long nextId() {
+    return generate();
+  }
+
+  /**
+   * 一次生成多个ID，只获取一次锁
+   */
+  public synchronized long[] nextIds(int count) {
+    long[] ids = new long[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = generate();
+    }
+    return ids;
+  }
+
+  private long generate() {
     long timestamp = timeGen();
 
     if (timestamp < lastTimestamp) {
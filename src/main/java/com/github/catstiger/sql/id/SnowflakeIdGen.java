@@ -16,11 +16,20 @@ public class SnowflakeIdGen implements IdGen {
   
   @Override
   public Long nextId() {
+    return getWorker().nextId();
+  }
+  
+  @Override
+  public long[] nextIds(int count) {
+    return getWorker().nextIds(count);
+  }
+  
+  private SnowflakeIDWorker getWorker() {
     if(worker == null) {
       long workerId = getWorkderId(datacenterId);
       worker = new SnowflakeIDWorker(workerId, datacenterId);
     }
-    return worker.nextId();
+    return worker;
   }
   
   protected long getWorkderId(long datacenterId) {
@@ -1,5 +1,7 @@
 package com.github.catstiger.sql.limit;
 
+import java.util.List;
+
 public class H2LimitSQL implements LimitSQL {
 
   @Override
@@ -9,5 +11,30 @@ public class H2LimitSQL implements LimitSQL {
     .append(" limit ").append(limit).append(" offset ").append(start)
     .toString();
   }
-
+  
+  @Override
+  public boolean supportsRowValues() {
+    return true;
+  }
+  
+  /**
+   * MERGE INTO t (...) KEY(id) VALUES (...)
+   */
+  @Override
+  public String getUpsertSql(String table, List<String> columns, String keyColumn) {
+    StringBuilder sql = new StringBuilder(100 + columns.size() * 20).append("MERGE INTO ").append(table).append(" (\n");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "" : ",").append(columns.get(i));
+    }
+    sql.append(") KEY(").append(keyColumn).append(") VALUES (\n");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "?" : ",?");
+    }
+    return sql.append(")").toString();
+  }
+  
+  @Override
+  public String getDbType() {
+    return "h2";
+  }
 }
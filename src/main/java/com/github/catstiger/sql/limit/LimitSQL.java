@@ -1,5 +1,7 @@
 package com.github.catstiger.sql.limit;
 
+import java.util.List;
+
 /**
  * 子类将一个普通的SQL加工成一个限制提取（fetch）范围的SQL，子类需要根据不同的数据库实现不同的算法。
  * @author catstiger
@@ -14,4 +16,40 @@ public interface LimitSQL {
    * @return 被limit子句加工过的SQL
    */
   String getLimitSql(String sql, int start, int limit);
+  
+  /**
+   * 是否支持行值比较，例如 (created, id) &gt; (?, ?)，用于keyset分页。不支持的数据库使用等价的展开形式。
+   * @return 缺省为<code>false</code>
+   */
+  default boolean supportsRowValues() {
+    return false;
+  }
+  
+  /**
+   * 生成UPSERT语句：如果主键对应的记录不存在，则INSERT，否则UPDATE除主键之外的字段。
+   * 生成的语句使用?作为占位符，每个字段一个，顺序与columns相同。
+   * @param table 表名
+   * @param columns 字段名，必须包含主键
+   * @param keyColumn 主键字段名
+   * @return UPSERT语句
+   */
+  default String getUpsertSql(String table, List<String> columns, String keyColumn) {
+    throw new UnsupportedOperationException("不支持UPSERT " + getClass().getName());
+  }
+  
+  /**
+   * 逐行读取大量数据时使用的fetch size，参见{@link java.sql.Statement#setFetchSize(int)}
+   * @return 缺省为1000
+   */
+  default int getStreamingFetchSize() {
+    return 1000;
+  }
+  
+  /**
+   * 数据库类型，用于Druid SQL解析器，参见com.alibaba.druid.util.JdbcConstants
+   * @return 缺省为mysql
+   */
+  default String getDbType() {
+    return "mysql";
+  }
 }
@@ -1,5 +1,7 @@
 package com.github.catstiger.sql.limit;
 
+import java.util.List;
+
 public class MySqlLimitSQL implements LimitSQL {
 
   @Override
@@ -7,5 +9,45 @@ public class MySqlLimitSQL implements LimitSQL {
     return new StringBuilder(sql.length() + 20).append(sql)
         .append(" limit ").append(start).append(",").append(limit).toString();
   }
-
+  
+  @Override
+  public boolean supportsRowValues() {
+    return true;
+  }
+  
+  /**
+   * INSERT INTO t (...) VALUES (...) ON DUPLICATE KEY UPDATE c=VALUES(c),...
+   */
+  @Override
+  public String getUpsertSql(String table, List<String> columns, String keyColumn) {
+    StringBuilder sql = new StringBuilder(100 + columns.size() * 30).append("INSERT INTO ").append(table).append(" (\n");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "" : ",").append(columns.get(i));
+    }
+    sql.append(") VALUES (\n");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "?" : ",?");
+    }
+    sql.append(") ON DUPLICATE KEY UPDATE ");
+    boolean first = true;
+    for(String col : columns) {
+      if(col.equalsIgnoreCase(keyColumn)) {
+        continue;
+      }
+      sql.append(first ? "" : ",").append(col).append("=VALUES(").append(col).append(")");
+      first = false;
+    }
+    if(first) { //只有主键
+      sql.append(keyColumn).append("=").append(keyColumn);
+    }
+    return sql.toString();
+  }
+  
+  /**
+   * MySQL驱动只有在fetch size为Integer.MIN_VALUE的时候，才会逐行读取数据，否则会把全部结果读入内存
+   */
+  @Override
+  public int getStreamingFetchSize() {
+    return Integer.MIN_VALUE;
+  }
 }
@@ -1,5 +1,7 @@
 package com.github.catstiger.sql.limit;
 
+import java.util.List;
+
 public class OracleLimitSQL implements LimitSQL {
 
   @Override
@@ -30,5 +32,42 @@ public class OracleLimitSQL implements LimitSQL {
 
     return pagingSelect.toString();
   }
-
+  
+  /**
+   * MERGE INTO t d USING (SELECT ? AS c1, ... FROM dual) s ON (d.id = s.id) WHEN MATCHED THEN UPDATE ... WHEN NOT MATCHED THEN INSERT ...
+   */
+  @Override
+  public String getUpsertSql(String table, List<String> columns, String keyColumn) {
+    StringBuilder sql = new StringBuilder(200 + columns.size() * 40).append("MERGE INTO ").append(table).append(" d USING (SELECT ");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append("? AS ").append(columns.get(i));
+    }
+    sql.append(" FROM dual) s ON (d.").append(keyColumn).append(" = s.").append(keyColumn).append(")");
+    
+    StringBuilder updates = new StringBuilder(columns.size() * 20);
+    for(String col : columns) {
+      if(col.equalsIgnoreCase(keyColumn)) {
+        continue;
+      }
+      updates.append(updates.length() == 0 ? "" : ", ").append("d.").append(col).append(" = s.").append(col);
+    }
+    if(updates.length() > 0) {
+      sql.append(" WHEN MATCHED THEN UPDATE SET ").append(updates);
+    }
+    
+    sql.append(" WHEN NOT MATCHED THEN INSERT (");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append(columns.get(i));
+    }
+    sql.append(") VALUES (");
+    for(int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append("s.").append(columns.get(i));
+    }
+    return sql.append(")").toString();
+  }
+  
+  @Override
+  public String getDbType() {
+    return "oracle";
+  }
 }
@@ -1,24 +1,14 @@
 package com.github.catstiger.sql.mapper;
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
 
-import javax.persistence.Entity;
-import javax.persistence.JoinColumn;
-import javax.persistence.Table;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.RowMapper;
 
+import com.github.catstiger.sql.BaseEntity;
 import com.github.catstiger.sql.NamingStrategy;
 import com.github.catstiger.sql.SQLRequest;
-import com.github.catstiger.utils.ReflectUtils;
+import com.github.catstiger.sql.cache.SQLCacheStats;
 /**
  * 一个{@link RowMapper}的实现类，可以将ResultSet中的数据装入一个JavaBean。他具有如下feature:
  * <ul>
@@ -46,19 +36,22 @@ import com.github.catstiger.utils.ReflectUtils;
  *     <li><b>不</b>支持一对多的情况，也就是说，属性是一个Collection的情况不能装入。</li>
  *     <li><b>不支持</b>重复引用的情况，例如：User中有多个属性指向Dept，则不能正确装入。</li>
  *     <li>支持常用的类型：Integer,Long,Double,Float,String(VARCHAR,CLOB,TEXT), Date, Boolean,后续更多的类型持续加入</li>
+ *     <li>大字段：属性声明为{@link ClobHandle}或{@link BlobHandle}则延迟读取，String属性用@LobPrefix标注则只读取前面若干个字符，
+ *     其他String属性完整读取CLOB</li>
  *     <li>扩展点：传入一个{@link RowHandler}的实现，对数据进行更多操作！</li>
+ *     <li>字段与属性的对应关系编译为映射计划，按照实体类、命名策略和ResultSet的结构全局缓存，不同的BeanRowMapper实例之间共享</li>
+ *     <li>引用的实体对象，只有在ResultSet中有它的字段，并且至少一个字段不为null的时候才会创建</li>
  * </ul>
  * @author catstiger
  *
  * @param <T>
  */
 public class BeanRowMapper<T> implements RowMapper<T> {
-  private static Logger logger = LoggerFactory.getLogger(BeanRowMapper.class);
-  
   private Class<T> beanClass;
-  private Map<String, ColumnTypesIndex> columnIndexMap = new HashMap<String, ColumnTypesIndex>(20);
+  private MappingPlan plan;
   private RowHandler<T> rowHandler;
   private NamingStrategy namingStrategy = SQLRequest.DEFAULT_NAME_STRATEGY;
+  private boolean snapshot = false;
 
   /**
    * 构造一个BeanRowMapper的实例，传入要处理的Bean的类型
@@ -100,6 +93,7 @@ public class BeanRowMapper<T> implements RowMapper<T> {
    */
   public BeanRowMapper<T> withNamingStrategy(NamingStrategy namingStrategy) {
     this.namingStrategy = namingStrategy;
+    this.plan = null;
     return this;
   }
   
@@ -108,6 +102,15 @@ public class BeanRowMapper<T> implements RowMapper<T> {
    */
   public BeanRowMapper<T> withBeanClass(Class<T> beanClass) {
     this.beanClass = beanClass;
+    this.plan = null;
+    return this;
+  }
+  
+  /**
+   * 是否在装载之后，记录实体对象的快照，用于{@link SQLRequest#updateChanged()}，缺省为<code>false</code>
+   */
+  public BeanRowMapper<T> withSnapshot(boolean snapshot) {
+    this.snapshot = snapshot;
     return this;
   }
   
@@ -131,35 +134,18 @@ public class BeanRowMapper<T> implements RowMapper<T> {
    */
   @Override
   public T mapRow(final ResultSet rs, int index) throws SQLException {
-    extractColumnIndexMap(rs); //提取字段名称和字段顺序
+    //每个ResultSet只在第一行取得映射计划，相同结构的ResultSet共享同一个计划
+    MappingPlan mappingPlan = this.plan;
+    if(mappingPlan == null || index == 0) {
+      mappingPlan = MappingPlan.get(beanClass, namingStrategy, rs);
+      this.plan = mappingPlan;
+    }
     
-    T bean = ReflectUtils.instantiate(beanClass);
-    EntityBeanWalker walker = new EntityBeanWalker();
-    walker.walk(bean, new PropertyValueWriter() {
-      @Override
-      public Object writeProperty(Object owner, PropertyDescriptor propertyDescriptor) {
-        String tablename = getTablename(owner.getClass()); //表名
-       
-        //属性名或者属性名单词用下划线分割
-        String key = (tablename + "." + namingStrategy.columnLabel(propertyDescriptor));
-        //作为外键的列名
-        JoinColumn joinColumn = propertyDescriptor.getReadMethod().getAnnotation(JoinColumn.class);
-        Object value = null;
-        //根据列名，找到columnIndex
-        if(columnIndexMap.containsKey(key)) {
-          int columnIndex = columnIndexMap.get(key).index;
-          
-          if(joinColumn == null) { //写入一般属性
-            //调用set方法，写入对应的数据
-            value = writeCommonProperty(owner, propertyDescriptor, rs, columnIndex);
-          } else { //写入ManyToOne
-            value = writeReferenceProperty(owner, propertyDescriptor, rs, columnIndex);
-          }
-        }
-        
-        return value;
-      }
-    });
+    T bean = beanClass.cast(mappingPlan.map(rs));
+    //记录装载时的状态
+    if(snapshot && bean instanceof BaseEntity) {
+      ((BaseEntity) bean).takeSnapshot(namingStrategy);
+    }
     //小小的扩展点
     if(rowHandler != null) {
       rowHandler.handle(bean, rs, index);
@@ -168,115 +154,17 @@ public class BeanRowMapper<T> implements RowMapper<T> {
     return bean;
   }
   
-  private Object writeReferenceProperty(Object owner, PropertyDescriptor propertyDescriptor, ResultSet rs, int columnIndex) {
-    Class<?> propClass = propertyDescriptor.getPropertyType();
-    //ManyToOne
-    if(propClass.getAnnotation(Table.class) != null || propClass.getAnnotation(Entity.class) != null) { //属性对应一个实体类
-      Object refInstance = ReflectUtils.invokeMethod(propertyDescriptor.getReadMethod(), owner); //get这个实体类的实例
-      if(refInstance == null) { //为空则创建
-        refInstance = ReflectUtils.instantiate(propClass);
-      }
-      //因为引用的数据总是引用ID字段，因此直接调用setId即可
-      try {
-        Method setId = propClass.getMethod("setId", Long.class);
-        Long id = rs.getLong(columnIndex);
-        ReflectUtils.invokeMethod(setId, refInstance, id);
-      } catch (Exception e) {
-        e.printStackTrace();
-      } 
-      ReflectUtils.invokeMethod(propertyDescriptor.getWriteMethod(), owner, refInstance);
-      
-      return refInstance;
-    }
-    
-    return null;
-  }
-  
-  private Object writeCommonProperty(Object owner, PropertyDescriptor propertyDescriptor, ResultSet rs, int columnIndex) {
-    Object value = null;
-    try {
-      
-      ResultSetInvoker<?> rsInvoker = ResultSetInvokerFactory.getRSInvoker(propertyDescriptor.getPropertyType());
-      if(rsInvoker == null) {
-        logger.warn("没有找到合适的RSInvoker实例 {}", propertyDescriptor.getPropertyType());
-        return null;
-      }
-      value = rsInvoker.get(rs, columnIndex);
-    } catch (SQLException e) {
-      e.printStackTrace();
-      return null;
-    }
-    Method writer = propertyDescriptor.getWriteMethod();
-    ReflectUtils.invokeMethod(writer, owner, value);
-    
-    return value;
-  }
-  
   /**
-   * 根据类名获取表名，表名来自于javax.persistence.Table或者org.hibernate.annotaions.Table标注，如果没有标注，则取自简单类名小写下划线分割。
-   * @param beanClass 给出对应的类
-   * @return
+   * 返回全局的映射计划缓存的统计数据
    */
-  private String getTablename(Class<?> beanClass) {
-    return namingStrategy.tablename(beanClass);
-  }
-  
-  private void extractColumnIndexMap(ResultSet rs) throws SQLException {
-    if(columnIndexMap.isEmpty()) {
-      ResultSetMetaData rsMetaData = rs.getMetaData();
-     
-      int count = rsMetaData.getColumnCount();
-      for(int  index = 1; index <= count; index++) {
-        String table = rsMetaData.getTableName(index).toLowerCase();
-        //列名(Label)
-        String label = table + "." + namingStrategy.columnLabel(rs, index);
-        int columnType = rsMetaData.getColumnType(index);
-        columnIndexMap.put(label, new ColumnTypesIndex(label, index, columnType));
-      }
-    }
+  public static SQLCacheStats getPlanCacheStats() {
+    return MappingPlan.cacheStats();
   }
   
   /**
-   * 字段名，字段类型，字段顺序的对应关系
-   * @author catstiger
-   *
+   * 清空全局的映射计划缓存，例如，在实体类被重新加载之后
    */
-  @SuppressWarnings("unused")
-  private static class ColumnTypesIndex {
-    private String column;
-    private Integer index;
-    private Integer type;
-   
-    public ColumnTypesIndex(String column, Integer index, Integer type) {
-      this.column = column;
-      this.index = index;
-      this.type = type;
-    }
-
-    public String getColumn() {
-      return column;
-    }
-
-    public void setColumn(String column) {
-      this.column = column;
-    }
-
-    public Integer getIndex() {
-      return index;
-    }
-
-    public void setIndex(Integer index) {
-      this.index = index;
-    }
-
-    public Integer getType() {
-      return type;
-    }
-
-    public void setType(Integer type) {
-      this.type = type;
-    }
-
+  public static void clearPlanCache() {
+    MappingPlan.clearCache();
   }
-
 }
@@ -0,0 +1,109 @@
+package com.github.catstiger.sql.mapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * 延迟读取的二进制数据。实体类的属性声明为BlobHandle，装载的时候只保存驱动返回的{@link Blob}，不读取其内容，
+ * 需要的时候再通过{@link #get()}打开InputStream，或者通过{@link #read()}、{@link #prefix(int)}读取全部或者一部分内容。
+ * <p>
+ * 与{@link ClobHandle}一样，应该在同一个事务中读取。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class BlobHandle implements Supplier<InputStream> {
+  private final Blob blob;
+  private final byte[] bytes;
+  
+  private BlobHandle(Blob blob, byte[] bytes) {
+    this.blob = blob;
+    this.bytes = bytes;
+  }
+  
+  /**
+   * 使用驱动返回的Blob创建BlobHandle
+   */
+  public static BlobHandle of(Blob blob) {
+    return blob == null ? null : new BlobHandle(blob, null);
+  }
+  
+  /**
+   * 使用已经读取的数据创建BlobHandle，例如，写入数据库的时候
+   */
+  public static BlobHandle of(byte[] bytes) {
+    return bytes == null ? null : new BlobHandle(null, bytes);
+  }
+  
+  /**
+   * 打开一个新的InputStream，调用者负责关闭
+   */
+  @Override
+  public InputStream get() {
+    if(blob == null) {
+      return new ByteArrayInputStream(bytes);
+    }
+    try {
+      return blob.getBinaryStream();
+    } catch (SQLException e) {
+      throw new IllegalStateException("读取BLOB失败", e);
+    }
+  }
+  
+  /**
+   * 字节数
+   */
+  public long length() {
+    if(blob == null) {
+      return bytes.length;
+    }
+    try {
+      return blob.length();
+    } catch (SQLException e) {
+      throw new IllegalStateException("读取BLOB失败", e);
+    }
+  }
+  
+  /**
+   * 读取全部内容
+   */
+  public byte[] read() {
+    return prefix(Integer.MAX_VALUE);
+  }
+  
+  /**
+   * 读取前面最多length个字节
+   */
+  public byte[] prefix(int length) {
+    if(blob == null) {
+      return bytes.length <= length ? bytes : Arrays.copyOf(bytes, length);
+    }
+    try {
+      return blob.getBytes(1, (int) Math.min(length, blob.length()));
+    } catch (SQLException e) {
+      throw new IllegalStateException("读取BLOB失败", e);
+    }
+  }
+  
+  /**
+   * 释放驱动持有的资源，之后不能再读取
+   */
+  public void free() {
+    if(blob != null) {
+      try {
+        blob.free();
+      } catch (SQLException e) {
+        throw new IllegalStateException("释放BLOB失败", e);
+      }
+    }
+  }
+  
+  @Override
+  public String toString() {
+    return "BlobHandle[" + (blob == null ? "bytes" : "blob") + "]";
+  }
+}
@@ -0,0 +1,123 @@
+package com.github.catstiger.sql.mapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * 延迟读取的大文本。实体类的属性声明为ClobHandle，装载的时候只保存驱动返回的{@link Clob}，不读取其内容，
+ * 需要的时候再通过{@link #get()}打开Reader，或者通过{@link #read()}、{@link #prefix(int)}读取全部或者一部分内容。
+ * <p>
+ * Clob在事务（或者连接）结束之后可能失效，因此应该在同一个事务中读取。如果字段不是CLOB类型，则装载时已经读取了内容，
+ * 不受此限制。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class ClobHandle implements Supplier<Reader> {
+  private final Clob clob;
+  private final String text;
+  
+  private ClobHandle(Clob clob, String text) {
+    this.clob = clob;
+    this.text = text;
+  }
+  
+  /**
+   * 使用驱动返回的Clob创建ClobHandle
+   */
+  public static ClobHandle of(Clob clob) {
+    return clob == null ? null : new ClobHandle(clob, null);
+  }
+  
+  /**
+   * 使用已经读取的文本创建ClobHandle，例如，写入数据库的时候
+   */
+  public static ClobHandle of(String text) {
+    return text == null ? null : new ClobHandle(null, text);
+  }
+  
+  /**
+   * 打开一个新的Reader，调用者负责关闭
+   */
+  @Override
+  public Reader get() {
+    if(clob == null) {
+      return new StringReader(text);
+    }
+    try {
+      return clob.getCharacterStream();
+    } catch (SQLException e) {
+      throw new IllegalStateException("读取CLOB失败", e);
+    }
+  }
+  
+  /**
+   * 字符数
+   */
+  public long length() {
+    if(clob == null) {
+      return text.length();
+    }
+    try {
+      return clob.length();
+    } catch (SQLException e) {
+      throw new IllegalStateException("读取CLOB失败", e);
+    }
+  }
+  
+  /**
+   * 读取全部内容
+   */
+  public String read() {
+    if(clob == null) {
+      return text;
+    }
+    StringBuilder buf = new StringBuilder(1000);
+    char[] chars = new char[1000];
+    try(Reader reader = get()) {
+      int charsRead;
+      while((charsRead = reader.read(chars)) != -1) {
+        buf.append(chars, 0, charsRead);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("读取CLOB失败", e);
+    }
+    return buf.toString();
+  }
+  
+  /**
+   * 读取前面最多length个字符
+   */
+  public String prefix(int length) {
+    if(clob == null) {
+      return text.length() <= length ? text : text.substring(0, length);
+    }
+    try {
+      return clob.getSubString(1, (int) Math.min(length, clob.length()));
+    } catch (SQLException e) {
+      throw new IllegalStateException("读取CLOB失败", e);
+    }
+  }
+  
+  /**
+   * 释放驱动持有的资源，之后不能再读取
+   */
+  public void free() {
+    if(clob != null) {
+      try {
+        clob.free();
+      } catch (SQLException e) {
+        throw new IllegalStateException("释放CLOB失败", e);
+      }
+    }
+  }
+  
+  @Override
+  public String toString() {
+    return "ClobHandle[" + (clob == null ? "text" : "clob") + "]";
+  }
+}
@@ -0,0 +1,278 @@
+package com.github.catstiger.sql.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.meta.PropertyAccessor;
+
+/**
+ * 映射计划中的一步：读取一个字段，写入一个属性。
+ * <p>
+ * 对于long，int，double，float，boolean，short，byte以及它们的包装类型，读取和写入是成对特化的：
+ * 原生类型的属性通过{@link PropertyAccessor#setLong(Object, long)}等方法直接写入，每个字段都不会分配对象；
+ * 包装类型的属性在读取之后检查{@link ResultSet#wasNull()}，SQL NULL写入<code>null</code>，而不是0。
+ * 其他类型通过{@link ResultSetInvoker}读取。
+ * </p>
+ * @author catstiger
+ *
+ */
+abstract class ColumnStep {
+  /**
+   * 字段的位置，从1开始
+   */
+  final int column;
+  /**
+   * 写入的对象在映射计划中的下标
+   */
+  final int owner;
+  final PropertyAccessor accessor;
+
+  ColumnStep(int column, int owner, PropertyAccessor accessor) {
+    this.column = column;
+    this.owner = owner;
+    this.accessor = accessor;
+  }
+
+  /**
+   * 读取当前行的字段，写入宿主对象的属性
+   */
+  abstract void apply(ResultSet rs, Object bean) throws SQLException;
+
+  /**
+   * 只读取当前行的字段，SQL NULL返回<code>null</code>，用于宿主对象尚未创建的情况
+   */
+  abstract Object read(ResultSet rs) throws SQLException;
+
+  /**
+   * 根据属性的类型创建一步，如果是原生类型或者其包装类型，则使用特化的实现，否则使用给出的ResultSetInvoker
+   * @param column 字段的位置
+   * @param owner 写入的对象的下标
+   * @param accessor 属性的读写器
+   * @param invoker 属性不是原生类型时使用的ResultSetInvoker
+   */
+  static ColumnStep of(int column, int owner, PropertyAccessor accessor, ResultSetInvoker<?> invoker) {
+    ColumnStep step = primitive(column, owner, accessor);
+    return step != null ? step : new InvokerStep(column, owner, accessor, invoker);
+  }
+
+  /**
+   * 属性是原生类型或者其包装类型，则返回特化的实现，否则返回<code>null</code>
+   */
+  static ColumnStep primitive(int column, int owner, PropertyAccessor accessor) {
+    Class<?> type = accessor.getType();
+    boolean primitive = type.isPrimitive();
+    if(type == long.class || type == Long.class) {
+      return new LongStep(column, owner, accessor, primitive);
+    } else if(type == int.class || type == Integer.class) {
+      return new IntStep(column, owner, accessor, primitive);
+    } else if(type == double.class || type == Double.class) {
+      return new DoubleStep(column, owner, accessor, primitive);
+    } else if(type == float.class || type == Float.class) {
+      return new FloatStep(column, owner, accessor, primitive);
+    } else if(type == boolean.class || type == Boolean.class) {
+      return new BooleanStep(column, owner, accessor, primitive);
+    } else if(type == short.class || type == Short.class) {
+      return new ShortStep(column, owner, accessor, primitive);
+    } else if(type == byte.class || type == Byte.class) {
+      return new ByteStep(column, owner, accessor, primitive);
+    }
+    return null;
+  }
+
+  /**
+   * 通过ResultSetInvoker读取，装箱写入
+   */
+  static final class InvokerStep extends ColumnStep {
+    private final ResultSetInvoker<?> invoker;
+
+    InvokerStep(int column, int owner, PropertyAccessor accessor, ResultSetInvoker<?> invoker) {
+      super(column, owner, accessor);
+      this.invoker = invoker;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      accessor.set(bean, invoker.get(rs, column));
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      return invoker.get(rs, column);
+    }
+  }
+
+  static final class LongStep extends ColumnStep {
+    private final boolean primitive;
+
+    LongStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      long value = rs.getLong(column);
+      if(primitive) {
+        accessor.setLong(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Long.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      long value = rs.getLong(column);
+      return rs.wasNull() ? null : Long.valueOf(value);
+    }
+  }
+
+  static final class IntStep extends ColumnStep {
+    private final boolean primitive;
+
+    IntStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      int value = rs.getInt(column);
+      if(primitive) {
+        accessor.setInt(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Integer.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      int value = rs.getInt(column);
+      return rs.wasNull() ? null : Integer.valueOf(value);
+    }
+  }
+
+  static final class DoubleStep extends ColumnStep {
+    private final boolean primitive;
+
+    DoubleStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      double value = rs.getDouble(column);
+      if(primitive) {
+        accessor.setDouble(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Double.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      double value = rs.getDouble(column);
+      return rs.wasNull() ? null : Double.valueOf(value);
+    }
+  }
+
+  static final class FloatStep extends ColumnStep {
+    private final boolean primitive;
+
+    FloatStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      float value = rs.getFloat(column);
+      if(primitive) {
+        accessor.setFloat(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Float.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      float value = rs.getFloat(column);
+      return rs.wasNull() ? null : Float.valueOf(value);
+    }
+  }
+
+  static final class BooleanStep extends ColumnStep {
+    private final boolean primitive;
+
+    BooleanStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      boolean value = rs.getBoolean(column);
+      if(primitive) {
+        accessor.setBoolean(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Boolean.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      boolean value = rs.getBoolean(column);
+      return rs.wasNull() ? null : Boolean.valueOf(value);
+    }
+  }
+
+  static final class ShortStep extends ColumnStep {
+    private final boolean primitive;
+
+    ShortStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      short value = rs.getShort(column);
+      if(primitive) {
+        accessor.setShort(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Short.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      short value = rs.getShort(column);
+      return rs.wasNull() ? null : Short.valueOf(value);
+    }
+  }
+
+  static final class ByteStep extends ColumnStep {
+    private final boolean primitive;
+
+    ByteStep(int column, int owner, PropertyAccessor accessor, boolean primitive) {
+      super(column, owner, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    void apply(ResultSet rs, Object bean) throws SQLException {
+      byte value = rs.getByte(column);
+      if(primitive) {
+        accessor.setByte(bean, value);
+      } else {
+        accessor.set(bean, rs.wasNull() ? null : Byte.valueOf(value));
+      }
+    }
+
+    @Override
+    Object read(ResultSet rs) throws SQLException {
+      byte value = rs.getByte(column);
+      return rs.wasNull() ? null : Byte.valueOf(value);
+    }
+  }
+}
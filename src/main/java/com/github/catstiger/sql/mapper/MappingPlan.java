@@ -0,0 +1,326 @@
+package com.github.catstiger.sql.mapper;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Entity;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.catstiger.sql.NamingStrategy;
+import com.github.catstiger.sql.annotation.LobPrefix;
+import com.github.catstiger.sql.cache.LruSQLCache;
+import com.github.catstiger.sql.cache.SQLCache;
+import com.github.catstiger.sql.cache.SQLCacheStats;
+import com.github.catstiger.sql.mapper.rsi.ClobPrefixRSInvoker;
+import com.github.catstiger.sql.meta.PropertyAccessor;
+import com.github.catstiger.utils.ClassUtils;
+import com.github.catstiger.utils.ReflectUtils;
+
+/**
+ * 编译好的ResultSet映射计划。对于同一个实体类、同一个命名策略和同样的ResultSet结构（字段的表名、Label和类型），
+ * 哪一列写入哪个对象的哪个属性，使用哪个{@link ResultSetInvoker}读取，都是确定的，因此只需要分析一次：
+ * <ul>
+ *     <li>对象：下标0是实体对象本身，其他的是引用的实体对象，每个对象记录其宿主对象的下标，以及宿主对象中对应属性的读写器。
+ *     只有ResultSet中有对应字段的引用对象才会出现在映射计划中，并且只有在它的某个字段不为null的时候才会创建</li>
+ *     <li>步骤：每一步包括字段的位置、读取数据的ResultSetInvoker（已经根据字段的JDBC类型选定）、写入的对象的下标和属性的读写器</li>
+ * </ul>
+ * 每一行数据只需要按顺序执行这些步骤，不再有HashMap查找和字符串拼接，开销只与选择的字段数量有关，而与实体类的关联关系无关。映射计划是只读的，缓存在全局的{@link LruSQLCache}中，
+ * 由所有的{@link BeanRowMapper}实例共享。
+ * @author catstiger
+ *
+ */
+final class MappingPlan {
+  private static Logger logger = LoggerFactory.getLogger(MappingPlan.class);
+  /**
+   * 引用的实体对象的最大深度
+   */
+  private static final int MAX_DEPTH = 3;
+
+  private static final SQLCache<Key, MappingPlan> cache = new LruSQLCache<Key, MappingPlan>(1024);
+
+  private final Class<?>[] nodeClasses;
+  private final int[] nodeParents;
+  private final PropertyAccessor[] nodeAccessors;
+  private final ColumnStep[] steps;
+
+  private MappingPlan(List<Node> nodes, List<ColumnStep> steps) {
+    int size = nodes.size();
+    this.nodeClasses = new Class<?>[size];
+    this.nodeParents = new int[size];
+    this.nodeAccessors = new PropertyAccessor[size];
+    for(int i = 0; i < size; i++) {
+      Node node = nodes.get(i);
+      nodeClasses[i] = node.type;
+      nodeParents[i] = (node.parent == null ? -1 : node.parent.index);
+      nodeAccessors[i] = node.accessor;
+    }
+    this.steps = steps.toArray(new ColumnStep[steps.size()]);
+  }
+
+  /**
+   * 返回与ResultSet的结构对应的映射计划，如果尚未构建，则构建之
+   * @param beanClass 实体类
+   * @param namingStrategy 命名策略
+   * @param rs ResultSet
+   */
+  static MappingPlan get(Class<?> beanClass, NamingStrategy namingStrategy, ResultSet rs) throws SQLException {
+    ResultSetMetaData rsMetaData = rs.getMetaData();
+    int count = rsMetaData.getColumnCount();
+    String[] labels = new String[count];
+    int[] types = new int[count];
+    for(int index = 1; index <= count; index++) {
+      String table = rsMetaData.getTableName(index).toLowerCase();
+      labels[index - 1] = table + "." + namingStrategy.columnLabel(rs, index);
+      types[index - 1] = rsMetaData.getColumnType(index);
+    }
+
+    Key key = new Key(beanClass, namingStrategy.getClass(), labels, types);
+    MappingPlan plan = cache.get(key);
+    if(plan == null) {
+      plan = build(beanClass, namingStrategy, labels, types);
+      cache.put(key, plan);
+    }
+    return plan;
+  }
+
+  static SQLCacheStats cacheStats() {
+    return cache.stats();
+  }
+
+  static void clearCache() {
+    cache.clear();
+  }
+
+  /**
+   * 执行映射计划，将ResultSet当前行的数据写入实体对象
+   * @param rs ResultSet，已经指向当前行
+   * @return 实体对象
+   */
+  Object map(ResultSet rs) throws SQLException {
+    Object[] objects = new Object[nodeClasses.length];
+    objects[0] = ReflectUtils.instantiate(nodeClasses[0]);
+
+    for(ColumnStep step : steps) {
+      Object owner = objects[step.owner];
+      if(owner != null) {
+        step.apply(rs, owner);
+      } else {
+        //引用的实体对象，只有它的某个字段不为null的时候才创建
+        Object value = step.read(rs);
+        if(value != null) {
+          step.accessor.set(owner(objects, step.owner), value);
+        }
+      }
+    }
+    return objects[0];
+  }
+
+  /**
+   * 返回映射计划中的某个对象，如果尚未创建，则创建之，并写入宿主对象（如果宿主对象也未创建，则一并创建）
+   */
+  private Object owner(Object[] objects, int index) {
+    Object owner = objects[index];
+    if(owner == null) {
+      Object parent = owner(objects, nodeParents[index]);
+      PropertyAccessor accessor = nodeAccessors[index];
+      owner = accessor.isReadable() ? accessor.get(parent) : null;
+      if(owner == null) {
+        owner = ReflectUtils.instantiate(nodeClasses[index]);
+        accessor.set(parent, owner);
+      }
+      objects[index] = owner;
+    }
+    return owner;
+  }
+
+  /**
+   * 按照逐个属性遍历实体类的顺序构建步骤，同一个属性被多个字段对应时，保持原来的覆盖顺序。
+   * 引用的实体对象只有在它（或者它引用的对象）有对应的字段时，才会加入映射计划。
+   */
+  private static MappingPlan build(Class<?> beanClass, NamingStrategy namingStrategy, String[] labels, int[] types) {
+    Map<String, Integer> columns = new HashMap<>(labels.length * 2);
+    for(int i = 0; i < labels.length; i++) {
+      columns.put(labels[i], i + 1);
+    }
+    List<Node> nodes = new ArrayList<>(8);
+    List<ColumnStep> steps = new ArrayList<>(labels.length);
+    Node root = new Node(beanClass, null, null);
+    root.indexIn(nodes);
+    build(namingStrategy, columns, types, nodes, steps, root, 0);
+
+    return new MappingPlan(nodes, steps);
+  }
+
+  private static void build(NamingStrategy namingStrategy, Map<String, Integer> columns, int[] types, List<Node> nodes,
+      List<ColumnStep> steps, Node current, int depth) {
+    Class<?> ownerClass = current.type;
+    String tablename = namingStrategy.tablename(ownerClass);
+    PropertyDescriptor[] propDescs = ReflectUtils.getPropertyDescriptors(ownerClass);
+    if(propDescs == null) {
+      return;
+    }
+    for(PropertyDescriptor propDesc : propDescs) {
+      if(!isMappable(propDesc)) {
+        continue;
+      }
+      Class<?> propClass = propDesc.getPropertyType();
+      boolean isEntity = (propClass.getAnnotation(Table.class) != null || propClass.getAnnotation(Entity.class) != null);
+      Node child = (isEntity ? new Node(propClass, current, PropertyAccessor.forProperty(ownerClass, propDesc)) : null);
+
+      Integer column = columns.get(tablename + "." + namingStrategy.columnLabel(propDesc));
+      if(column != null) {
+        if(propDesc.getReadMethod().getAnnotation(JoinColumn.class) == null) { //一般属性
+          PropertyAccessor accessor = PropertyAccessor.forProperty(ownerClass, propDesc);
+          //原生类型及其包装类型使用不装箱的实现，除非注册了自定义的RSInvoker
+          ColumnStep step = null;
+          if(!ResultSetInvokerFactory.isRegistered(propClass)) {
+            step = ColumnStep.primitive(column, current.indexIn(nodes), accessor);
+          }
+          if(step == null) {
+            ResultSetInvoker<?> invoker = prefixInvoker(ownerClass, propDesc);
+            if(invoker == null) {
+              invoker = ResultSetInvokerFactory.getRSInvoker(propClass);
+            }
+            if(invoker == null) {
+              logger.warn("没有找到合适的RSInvoker实例 {}", propClass);
+            } else {
+              //与字段类型有关的选择（例如CLOB）在这里一次完成
+              step = new ColumnStep.InvokerStep(column, current.indexIn(nodes), accessor,
+                  invoker.forColumnType(types[column - 1]));
+            }
+          }
+          if(step != null) {
+            steps.add(step);
+          }
+        } else if(isEntity) { //ManyToOne，引用的数据总是引用ID字段，因此直接写入被引用的实体对象的id属性
+          PropertyAccessor idAccessor = PropertyAccessor.forProperty(propClass, "id");
+          if(idAccessor == null || !idAccessor.isWritable()) {
+            logger.warn("无法写入被引用的实体的id属性 {}", propClass);
+          } else {
+            steps.add(ColumnStep.of(column, child.indexIn(nodes), idAccessor, ResultSetInvokerFactory.getRSInvoker(Long.class)));
+          }
+        }
+      }
+      //发现引用的实体，继续分析
+      if(isEntity && depth < MAX_DEPTH) {
+        build(namingStrategy, columns, types, nodes, steps, child, depth + 1);
+      }
+    }
+  }
+
+  /**
+   * 可读写，没有被标注为Transient，并且不是集合（不支持OneToMany）的属性
+   */
+  private static boolean isMappable(PropertyDescriptor propDesc) {
+    if(propDesc == null) {
+      return false;
+    }
+    Method reader = propDesc.getReadMethod();
+    if(reader == null || reader.getAnnotation(Transient.class) != null) {
+      return false;
+    }
+    Method writer = propDesc.getWriteMethod();
+    if(writer == null || writer.getAnnotation(Transient.class) != null) {
+      return false;
+    }
+    return !ClassUtils.isAssignable(propDesc.getPropertyType(), Collection.class);
+  }
+
+  /**
+   * 被{@link LobPrefix}标注的String属性，只读取前面若干个字符
+   */
+  private static ResultSetInvoker<?> prefixInvoker(Class<?> ownerClass, PropertyDescriptor propDesc) {
+    if(propDesc.getPropertyType() != String.class) {
+      return null;
+    }
+    Field field = ReflectUtils.findField(ownerClass, propDesc.getName());
+    LobPrefix lobPrefix = (field != null ? field.getAnnotation(LobPrefix.class) : null);
+    if(lobPrefix == null) {
+      lobPrefix = propDesc.getReadMethod().getAnnotation(LobPrefix.class);
+    }
+    return lobPrefix == null ? null : new ClobPrefixRSInvoker(lobPrefix.value());
+  }
+
+  /**
+   * 映射计划中的一个对象，在构建计划时使用。只有第一次有步骤写入这个对象时才分配下标，没有对应字段的对象不会出现在映射计划中
+   */
+  private static final class Node {
+    private final Class<?> type;
+    private final Node parent;
+    private final PropertyAccessor accessor;
+    private int index = -1;
+
+    Node(Class<?> type, Node parent, PropertyAccessor accessor) {
+      this.type = type;
+      this.parent = parent;
+      this.accessor = accessor;
+    }
+
+    /**
+     * 返回本对象在映射计划中的下标，如果尚未分配，则先为宿主对象分配，因此宿主对象的下标总是小于本对象
+     */
+    int indexIn(List<Node> nodes) {
+      if(index < 0) {
+        if(parent != null) {
+          parent.indexIn(nodes);
+        }
+        nodes.add(this);
+        index = nodes.size() - 1;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * 映射计划的键值：实体类、命名策略，以及ResultSet的结构
+   */
+  private static final class Key {
+    private final Class<?> beanClass;
+    private final Class<?> namingStrategyClass;
+    private final String[] labels;
+    private final int[] types;
+    private final int hash;
+
+    Key(Class<?> beanClass, Class<?> namingStrategyClass, String[] labels, int[] types) {
+      this.beanClass = beanClass;
+      this.namingStrategyClass = namingStrategyClass;
+      this.labels = labels;
+      this.types = types;
+      this.hash = ((31 * beanClass.hashCode() + namingStrategyClass.hashCode()) * 31 + Arrays.hashCode(labels)) * 31
+          + Arrays.hashCode(types);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && beanClass == other.beanClass && namingStrategyClass == other.namingStrategyClass
+          && Arrays.equals(types, other.types) && Arrays.equals(labels, other.labels);
+    }
+  }
+}
@@ -5,4 +5,13 @@ import java.sql.SQLException;
 
 public interface ResultSetInvoker<T> {
   T get(ResultSet rs, int index) throws SQLException;
+  
+  /**
+   * 根据字段的JDBC类型（{@link java.sql.Types}），返回读取该字段的ResultSetInvoker。映射计划对每个字段只调用一次，
+   * 因此，与字段类型有关的判断（例如CLOB）不必在读取每一行数据的时候重复进行。缺省返回this。
+   * @param jdbcType 字段的JDBC类型，来自ResultSetMetaData
+   */
+  default ResultSetInvoker<T> forColumnType(int jdbcType) {
+    return this;
+  }
 }
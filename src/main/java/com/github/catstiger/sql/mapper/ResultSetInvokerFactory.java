@@ -1,53 +1,120 @@
 package com.github.catstiger.sql.mapper;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.github.catstiger.sql.mapper.rsi.BigDecimalRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.BigIntegerRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.BlobHandleRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.BooleanRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.ByteRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.BytesRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.ClobHandleRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.DateRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.DoubleRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.EnumRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.FloatRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.InstantRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.IntegerRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.LocalDateRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.LocalDateTimeRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.LongRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.ShortRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.StringRSInvoker;
 import com.github.catstiger.sql.mapper.rsi.TimestampRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.UUIDRSInvoker;
 
-abstract class ResultSetInvokerFactory {
+/**
+ * 属性类型与{@link ResultSetInvoker}的对照表。除了内置的类型之外，可以通过{@link #register(Class, ResultSetInvoker)}
+ * 注册其他类型，或者替换内置的实现。枚举类型按照枚举类自动创建{@link EnumRSInvoker}。
+ * <p>
+ * 映射计划构建的时候，对每个字段查找一次，读取每一行数据的时候不再查找。
+ * </p>
+ * @author catstiger
+ *
+ */
+public abstract class ResultSetInvokerFactory {
   @SuppressWarnings("rawtypes")
   private static Map<Class<?>, ResultSetInvoker> invokers = new ConcurrentHashMap<Class<?>, ResultSetInvoker>();
-  
+  /**
+   * 通过{@link #register(Class, ResultSetInvoker)}注册的类型
+   */
+  private static Set<Class<?>> registered = ConcurrentHashMap.newKeySet();
+
   static {
     invokers.put(Integer.class, new IntegerRSInvoker());
     invokers.put(Double.class, new DoubleRSInvoker());
     invokers.put(Float.class, new FloatRSInvoker());
     invokers.put(Long.class, new LongRSInvoker());
+    invokers.put(Short.class, new ShortRSInvoker());
+    invokers.put(Byte.class, new ByteRSInvoker());
     invokers.put(int.class, new IntegerRSInvoker());
     invokers.put(double.class, new DoubleRSInvoker());
     invokers.put(float.class, new FloatRSInvoker());
     invokers.put(long.class, new LongRSInvoker());
-    
+    invokers.put(short.class, new ShortRSInvoker());
+    invokers.put(byte.class, new ByteRSInvoker());
+    invokers.put(boolean.class, new BooleanRSInvoker());
+
     invokers.put(Date.class, new DateRSInvoker());
     invokers.put(Timestamp.class, new TimestampRSInvoker());
     invokers.put(BigDecimal.class, new BigDecimalRSInvoker());
+    invokers.put(BigInteger.class, new BigIntegerRSInvoker());
     invokers.put(Boolean.class, new BooleanRSInvoker());
-    
+    invokers.put(byte[].class, new BytesRSInvoker());
+
+    invokers.put(LocalDate.class, new LocalDateRSInvoker());
+    invokers.put(LocalDateTime.class, new LocalDateTimeRSInvoker());
+    invokers.put(Instant.class, new InstantRSInvoker());
+    invokers.put(UUID.class, new UUIDRSInvoker());
+
     invokers.put(String.class, new StringRSInvoker());
+    invokers.put(ClobHandle.class, new ClobHandleRSInvoker());
+    invokers.put(BlobHandle.class, new BlobHandleRSInvoker());
   }
-  
+
   /**
    * 根据给定的类型，返回合适的RSInvoker的实例，如果没有，则返回null
    * @param type 给出类型
    * @return
    */
-  @SuppressWarnings("unchecked")
-  static <T> ResultSetInvoker<T> getRSInvoker(Class<T> type) {
-    if(invokers.containsKey(type)) {
-      return invokers.get(type);
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static <T> ResultSetInvoker<T> getRSInvoker(Class<T> type) {
+    ResultSetInvoker<T> invoker = invokers.get(type);
+    if(invoker == null && type.isEnum()) {
+      invoker = invokers.computeIfAbsent(type, enumType -> new EnumRSInvoker(enumType));
+    }
+    return invoker;
+  }
+
+  /**
+   * 注册一个类型的RSInvoker，如果该类型已经有RSInvoker（包括内置的类型），则替换之。已经缓存的映射计划会被清空。
+   * @param type 属性的类型
+   * @param invoker RSInvoker的实例
+   */
+  public static <T> void register(Class<T> type, ResultSetInvoker<T> invoker) {
+    if(type == null || invoker == null) {
+      throw new IllegalArgumentException("类型和RSInvoker不可为空。");
     }
-    return null;
+    invokers.put(type, invoker);
+    registered.add(type);
+    MappingPlan.clearCache();
+  }
+
+  /**
+   * 给出的类型是否通过{@link #register(Class, ResultSetInvoker)}注册过，原生类型及其包装类型，只有注册过，
+   * 映射计划才会使用RSInvoker读取，否则使用不装箱的特化实现
+   */
+  static boolean isRegistered(Class<?> type) {
+    return registered.contains(type);
   }
 }
@@ -0,0 +1,20 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * 很少有驱动支持getObject(index, BigInteger.class)，因此通过BigDecimal转换
+ */
+public class BigIntegerRSInvoker implements ResultSetInvoker<BigInteger> {
+
+  @Override
+  public BigInteger get(ResultSet rs, int index) throws SQLException {
+    BigDecimal value = rs.getBigDecimal(index);
+    return value == null ? null : value.toBigInteger();
+  }
+}
@@ -0,0 +1,26 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import com.github.catstiger.sql.mapper.BlobHandle;
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * BLOB字段只保存驱动返回的Blob，不读取内容，其他字段按照byte[]读取
+ */
+public class BlobHandleRSInvoker implements ResultSetInvoker<BlobHandle> {
+  private static final ResultSetInvoker<BlobHandle> BLOB = (rs, index) -> BlobHandle.of(rs.getBlob(index));
+  private static final ResultSetInvoker<BlobHandle> BYTES = (rs, index) -> BlobHandle.of(rs.getBytes(index));
+
+  @Override
+  public BlobHandle get(ResultSet rs, int index) throws SQLException {
+    return forColumnType(rs.getMetaData().getColumnType(index)).get(rs, index);
+  }
+  
+  @Override
+  public ResultSetInvoker<BlobHandle> forColumnType(int jdbcType) {
+    return jdbcType == Types.BLOB ? BLOB : BYTES;
+  }
+}
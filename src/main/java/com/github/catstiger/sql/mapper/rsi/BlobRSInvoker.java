@@ -0,0 +1,29 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * 将BLOB字段读取为byte[]，由{@link BytesRSInvoker#forColumnType(int)}根据字段类型选择
+ * @author catstiger
+ *
+ */
+public class BlobRSInvoker implements ResultSetInvoker<byte[]> {
+  public static final BlobRSInvoker INSTANCE = new BlobRSInvoker();
+  
+  @Override
+  public byte[] get(ResultSet rs, int index) throws SQLException {
+    Blob blob = rs.getBlob(index);
+    if(blob == null) {
+      return null;
+    }
+    try {
+      return blob.getBytes(1, (int) blob.length());
+    } finally {
+      blob.free();
+    }
+  }
+}
@@ -9,6 +9,7 @@ public class BooleanRSInvoker implements ResultSetInvoker<Boolean> {
 
   @Override
   public Boolean get(ResultSet rs, int index) throws SQLException {
-    return rs.getBoolean(index);
+    boolean value = rs.getBoolean(index);
+    return rs.wasNull() ? null : value;
   }
 }
@@ -0,0 +1,15 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+public class ByteRSInvoker implements ResultSetInvoker<Byte> {
+
+  @Override
+  public Byte get(ResultSet rs, int index) throws SQLException {
+    byte value = rs.getByte(index);
+    return rs.wasNull() ? null : value;
+  }
+}
@@ -0,0 +1,20 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+public class BytesRSInvoker implements ResultSetInvoker<byte[]> {
+
+  @Override
+  public byte[] get(ResultSet rs, int index) throws SQLException {
+    return rs.getBytes(index);
+  }
+  
+  @Override
+  public ResultSetInvoker<byte[]> forColumnType(int jdbcType) {
+    return jdbcType == Types.BLOB ? BlobRSInvoker.INSTANCE : this;
+  }
+}
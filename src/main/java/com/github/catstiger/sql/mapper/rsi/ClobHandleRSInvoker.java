@@ -0,0 +1,32 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import com.github.catstiger.sql.mapper.ClobHandle;
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * CLOB和NCLOB字段只保存驱动返回的Clob，不读取内容，其他字段按照String读取
+ */
+public class ClobHandleRSInvoker implements ResultSetInvoker<ClobHandle> {
+  private static final ResultSetInvoker<ClobHandle> CLOB = (rs, index) -> ClobHandle.of(rs.getClob(index));
+  private static final ResultSetInvoker<ClobHandle> NCLOB = (rs, index) -> ClobHandle.of(rs.getNClob(index));
+  private static final ResultSetInvoker<ClobHandle> TEXT = (rs, index) -> ClobHandle.of(rs.getString(index));
+
+  @Override
+  public ClobHandle get(ResultSet rs, int index) throws SQLException {
+    return forColumnType(rs.getMetaData().getColumnType(index)).get(rs, index);
+  }
+  
+  @Override
+  public ResultSetInvoker<ClobHandle> forColumnType(int jdbcType) {
+    if(jdbcType == Types.CLOB) {
+      return CLOB;
+    } else if(jdbcType == Types.NCLOB) {
+      return NCLOB;
+    }
+    return TEXT;
+  }
+}
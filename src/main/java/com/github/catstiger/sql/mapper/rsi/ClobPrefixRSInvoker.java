@@ -0,0 +1,65 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import com.github.catstiger.sql.annotation.LobPrefix;
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * 只读取前面若干个字符，用于{@link LobPrefix}标注的属性。CLOB字段通过{@link Clob#getSubString(long, int)}只读取需要的部分，
+ * 其他字段读取之后截断。
+ * @author catstiger
+ *
+ */
+public class ClobPrefixRSInvoker implements ResultSetInvoker<String> {
+  private final int length;
+  private final ResultSetInvoker<String> clobReader;
+  private final ResultSetInvoker<String> nclobReader;
+  private final ResultSetInvoker<String> textReader;
+  
+  public ClobPrefixRSInvoker(int length) {
+    if(length < 0) {
+      throw new IllegalArgumentException("读取的字符数不可小于0。");
+    }
+    this.length = length;
+    this.clobReader = (rs, index) -> prefix(rs.getClob(index));
+    this.nclobReader = (rs, index) -> prefix(rs.getNClob(index));
+    this.textReader = (rs, index) -> prefix(rs.getString(index));
+  }
+
+  @Override
+  public String get(ResultSet rs, int index) throws SQLException {
+    return forColumnType(rs.getMetaData().getColumnType(index)).get(rs, index);
+  }
+  
+  @Override
+  public ResultSetInvoker<String> forColumnType(int jdbcType) {
+    if(jdbcType == Types.CLOB) {
+      return clobReader;
+    } else if(jdbcType == Types.NCLOB) {
+      return nclobReader;
+    }
+    return textReader;
+  }
+  
+  private String prefix(Clob clob) throws SQLException {
+    if(clob == null) {
+      return null;
+    }
+    try {
+      return clob.getSubString(1, (int) Math.min(length, clob.length()));
+    } finally {
+      clob.free();
+    }
+  }
+  
+  private String prefix(String text) {
+    if(text == null || text.length() <= length) {
+      return text;
+    }
+    return text.substring(0, length);
+  }
+}
@@ -0,0 +1,53 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * 将CLOB或NCLOB字段读取为String，由{@link StringRSInvoker#forColumnType(int)}根据字段类型选择
+ * @author catstiger
+ *
+ */
+public class ClobRSInvoker implements ResultSetInvoker<String> {
+  public static final ClobRSInvoker CLOB = new ClobRSInvoker(false);
+  public static final ClobRSInvoker NCLOB = new ClobRSInvoker(true);
+  
+  private final boolean national;
+  
+  private ClobRSInvoker(boolean national) {
+    this.national = national;
+  }
+  
+  @Override
+  public String get(ResultSet rs, int index) throws SQLException {
+    Clob clob = national ? rs.getNClob(index) : rs.getClob(index);
+    if(clob == null) {
+      return null;
+    }
+    try {
+      return read(clob);
+    } finally {
+      clob.free();
+    }
+  }
+  
+  private static String read(Clob clob) throws SQLException {
+    long length = clob.length();
+    StringBuilder stringBuilder = new StringBuilder(length > 0 && length < 8192 ? (int) length : 1000);
+    char[] buf = new char[1000];
+    try(Reader reader = clob.getCharacterStream()) {
+      int charsRead;
+      while((charsRead = reader.read(buf)) != -1) {
+        stringBuilder.append(buf, 0, charsRead);
+      }
+    } catch (IOException e) {
+      throw new SQLException("读取CLOB失败", e);
+    }
+    return stringBuilder.toString();
+  }
+}
@@ -9,6 +9,7 @@ public class DoubleRSInvoker implements ResultSetInvoker<Double> {
 
   @Override
   public Double get(ResultSet rs, int index) throws SQLException {
-    return rs.getDouble(index);
+    double value = rs.getDouble(index);
+    return rs.wasNull() ? null : value;
   }
 }
@@ -0,0 +1,97 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * 读取枚举类型的属性：数值类型的字段按照ordinal转换，其他字段按照name转换。每个枚举类只创建一个实例，
+ * name和ordinal的对照表在创建时构建，读取时不再调用{@link Enum#valueOf(Class, String)}或者values()。
+ * @author catstiger
+ *
+ * @param <E> 枚举类型
+ */
+public class EnumRSInvoker<E extends Enum<E>> implements ResultSetInvoker<E> {
+  private final Class<E> enumType;
+  private final E[] constants;
+  private final Map<String, E> byName;
+  private final ResultSetInvoker<E> byOrdinalInvoker = this::getByOrdinal;
+  private final ResultSetInvoker<E> byNameInvoker = this::getByName;
+  
+  public EnumRSInvoker(Class<E> enumType) {
+    this.enumType = enumType;
+    this.constants = enumType.getEnumConstants();
+    this.byName = new HashMap<>(constants.length * 2);
+    for(E constant : constants) {
+      byName.put(constant.name(), constant);
+    }
+  }
+
+  /**
+   * 字段类型未知，按照读取到的值判断
+   */
+  @Override
+  public E get(ResultSet rs, int index) throws SQLException {
+    Object value = rs.getObject(index);
+    if(value == null) {
+      return null;
+    }
+    if(value instanceof Number) {
+      return ordinal(((Number) value).intValue());
+    }
+    return name(value.toString());
+  }
+  
+  @Override
+  public ResultSetInvoker<E> forColumnType(int jdbcType) {
+    switch (jdbcType) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        return byOrdinalInvoker;
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGVARCHAR:
+        return byNameInvoker;
+      default:
+        return this;
+    }
+  }
+  
+  private E getByOrdinal(ResultSet rs, int index) throws SQLException {
+    int ordinal = rs.getInt(index);
+    return rs.wasNull() ? null : ordinal(ordinal);
+  }
+  
+  private E getByName(ResultSet rs, int index) throws SQLException {
+    String name = rs.getString(index);
+    return name == null ? null : name(name);
+  }
+  
+  private E ordinal(int ordinal) {
+    if(ordinal < 0 || ordinal >= constants.length) {
+      throw new IllegalArgumentException("枚举值不存在 " + enumType.getName() + "#" + ordinal);
+    }
+    return constants[ordinal];
+  }
+  
+  private E name(String name) {
+    E constant = byName.get(name);
+    if(constant == null) {
+      constant = byName.get(name.trim()); //CHAR类型的字段可能带有空格
+      if(constant == null) {
+        throw new IllegalArgumentException("枚举值不存在 " + enumType.getName() + "#" + name);
+      }
+    }
+    return constant;
+  }
+}
@@ -9,6 +9,7 @@ public class FloatRSInvoker implements ResultSetInvoker<Float> {
 
   @Override
   public Float get(ResultSet rs, int index) throws SQLException {
-    return rs.getFloat(index);
+    float value = rs.getFloat(index);
+    return rs.wasNull() ? null : value;
   }
 }
@@ -0,0 +1,22 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * JDBC 4.2没有规定Instant的映射，驱动不支持的时候通过Timestamp转换，时区与驱动的getTimestamp一致
+ */
+public class InstantRSInvoker extends TypedObjectRSInvoker<Instant> {
+  
+  public InstantRSInvoker() {
+    super(Instant.class);
+  }
+
+  @Override
+  protected Instant convert(ResultSet rs, int index) throws SQLException {
+    Timestamp timestamp = rs.getTimestamp(index);
+    return timestamp == null ? null : timestamp.toInstant();
+  }
+}
@@ -9,6 +9,7 @@ public class IntegerRSInvoker implements ResultSetInvoker<Integer> {
 
   @Override
   public Integer get(ResultSet rs, int index) throws SQLException {
-    return rs.getInt(index);
+    int value = rs.getInt(index);
+    return rs.wasNull() ? null : value;
   }
 }
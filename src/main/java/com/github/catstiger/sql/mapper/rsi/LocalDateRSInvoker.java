@@ -0,0 +1,19 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+public class LocalDateRSInvoker extends TypedObjectRSInvoker<LocalDate> {
+  
+  public LocalDateRSInvoker() {
+    super(LocalDate.class);
+  }
+
+  @Override
+  protected LocalDate convert(ResultSet rs, int index) throws SQLException {
+    Date date = rs.getDate(index);
+    return date == null ? null : date.toLocalDate();
+  }
+}
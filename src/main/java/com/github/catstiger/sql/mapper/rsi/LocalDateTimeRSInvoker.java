@@ -0,0 +1,19 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+public class LocalDateTimeRSInvoker extends TypedObjectRSInvoker<LocalDateTime> {
+  
+  public LocalDateTimeRSInvoker() {
+    super(LocalDateTime.class);
+  }
+
+  @Override
+  protected LocalDateTime convert(ResultSet rs, int index) throws SQLException {
+    Timestamp timestamp = rs.getTimestamp(index);
+    return timestamp == null ? null : timestamp.toLocalDateTime();
+  }
+}
@@ -9,6 +9,7 @@ public class LongRSInvoker implements ResultSetInvoker<Long> {
 
   @Override
   public Long get(ResultSet rs, int index) throws SQLException {
-    return rs.getLong(index);
+    long value = rs.getLong(index);
+    return rs.wasNull() ? null : value;
   }
 }
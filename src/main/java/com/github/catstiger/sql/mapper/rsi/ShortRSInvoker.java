@@ -0,0 +1,15 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+public class ShortRSInvoker implements ResultSetInvoker<Short> {
+
+  @Override
+  public Short get(ResultSet rs, int index) throws SQLException {
+    short value = rs.getShort(index);
+    return rs.wasNull() ? null : value;
+  }
+}
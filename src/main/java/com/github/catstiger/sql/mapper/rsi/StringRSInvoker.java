@@ -1,8 +1,5 @@
 package com.github.catstiger.sql.mapper.rsi;
 
-import java.io.IOException;
-import java.io.Reader;
-import java.sql.Clob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
@@ -10,35 +7,26 @@ import java.sql.Types;
 import com.github.catstiger.sql.mapper.ResultSetInvoker;
 
 public class StringRSInvoker implements ResultSetInvoker<String> {
+  /**
+   * 字段类型已知，并且不是CLOB的时候使用，不再检查字段类型
+   */
+  private static final ResultSetInvoker<String> PLAIN = (rs, index) -> rs.getString(index);
 
+  /**
+   * 字段类型未知的时候，每次都要检查是否是CLOB，映射计划使用{@link #forColumnType(int)}返回的实例，不会调用这个方法
+   */
   @Override
   public String get(ResultSet rs, int index) throws SQLException {
-    int type = rs.getMetaData().getColumnType(index);
-    if (type == Types.CLOB) {
-      Clob clob = rs.getClob(index);
-      StringBuilder stringBuilder = new StringBuilder(1000);
-      if (clob != null) {
-        char[] buf = new char[1000];
-        Reader reader = null;
-        try {
-          reader = clob.getCharacterStream();
-          int bytesRead = 0;
-          while ((bytesRead = reader.read(buf)) != -1) {
-            stringBuilder.append(buf, 0, bytesRead);
-          }
-          
-        } catch (Exception e) {
-          e.printStackTrace();
-        } finally {
-          try {
-            reader.close();
-          } catch (IOException e) {
-          }
-        }
-      }
-      return stringBuilder.toString();
-    } else {
-      return rs.getString(index);
+    return forColumnType(rs.getMetaData().getColumnType(index)).get(rs, index);
+  }
+  
+  @Override
+  public ResultSetInvoker<String> forColumnType(int jdbcType) {
+    if(jdbcType == Types.CLOB) {
+      return ClobRSInvoker.CLOB;
+    } else if(jdbcType == Types.NCLOB) {
+      return ClobRSInvoker.NCLOB;
     }
+    return PLAIN;
   }
 }
@@ -0,0 +1,77 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.github.catstiger.sql.mapper.ResultSetInvoker;
+
+/**
+ * 优先使用JDBC 4.1/4.2的{@link ResultSet#getObject(int, Class)}直接读取。如果驱动不支持（抛出异常、没有实现这个方法的旧驱动，
+ * 或者驱动依赖的类不存在），则使用{@link #convert(ResultSet, int)}从其他类型转换。
+ * <ul>
+ *     <li>映射计划通过{@link #forColumnType(int)}为每个字段取得单独的实例：{@link #isDirect(int)}根据字段的JDBC类型决定是否尝试直接读取，
+ *     直接读取失败并且转换成功之后，只有这个字段不再尝试直接读取，不影响其他的字段和其他的映射计划</li>
+ *     <li>直接调用本实例的{@link #get(ResultSet, int)}，每次都先尝试直接读取，失败则转换，不记录任何状态</li>
+ * </ul>
+ * @author catstiger
+ *
+ * @param <T> 属性的类型
+ */
+public abstract class TypedObjectRSInvoker<T> implements ResultSetInvoker<T> {
+  private final Class<T> type;
+  
+  protected TypedObjectRSInvoker(Class<T> type) {
+    this.type = type;
+  }
+  
+  @Override
+  public T get(ResultSet rs, int index) throws SQLException {
+    try {
+      return rs.getObject(index, type);
+    } catch (SQLException | LinkageError | UnsupportedOperationException e) {
+      return convert(rs, index);
+    }
+  }
+  
+  @Override
+  public ResultSetInvoker<T> forColumnType(int jdbcType) {
+    if(!isDirect(jdbcType)) {
+      return (rs, index) -> convert(rs, index);
+    }
+    return new ColumnInvoker();
+  }
+  
+  /**
+   * 某个JDBC类型的字段是否尝试直接读取，缺省为<code>true</code>
+   * @param jdbcType 字段的JDBC类型，参见{@link java.sql.Types}
+   */
+  protected boolean isDirect(int jdbcType) {
+    return true;
+  }
+  
+  /**
+   * 驱动不支持直接读取的时候，从其他类型转换
+   */
+  protected abstract T convert(ResultSet rs, int index) throws SQLException;
+  
+  /**
+   * 映射计划中一个字段的读取器，记录这个字段是否仍然尝试直接读取
+   */
+  private final class ColumnInvoker implements ResultSetInvoker<T> {
+    private volatile boolean direct = true;
+    
+    @Override
+    public T get(ResultSet rs, int index) throws SQLException {
+      if(direct) {
+        try {
+          return rs.getObject(index, type);
+        } catch (SQLException | LinkageError | UnsupportedOperationException e) {
+          T value = convert(rs, index);
+          direct = false; //转换成功，说明是驱动不支持直接读取这个字段
+          return value;
+        }
+      }
+      return convert(rs, index);
+    }
+  }
+}
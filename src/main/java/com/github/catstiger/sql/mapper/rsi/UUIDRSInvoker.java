@@ -0,0 +1,35 @@
+package com.github.catstiger.sql.mapper.rsi;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+/**
+ * PostgreSQL等有UUID类型的数据库（JDBC类型为OTHER）直接读取，否则从CHAR(36)或者BINARY(16)转换
+ */
+public class UUIDRSInvoker extends TypedObjectRSInvoker<UUID> {
+  
+  public UUIDRSInvoker() {
+    super(UUID.class);
+  }
+
+  @Override
+  protected boolean isDirect(int jdbcType) {
+    return jdbcType == Types.OTHER || jdbcType == Types.JAVA_OBJECT;
+  }
+
+  @Override
+  protected UUID convert(ResultSet rs, int index) throws SQLException {
+    Object value = rs.getObject(index);
+    if(value == null || value instanceof UUID) {
+      return (UUID) value;
+    }
+    if(value instanceof byte[] && ((byte[]) value).length == 16) {
+      ByteBuffer buffer = ByteBuffer.wrap((byte[]) value);
+      return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    return UUID.fromString(value.toString().trim());
+  }
+}
@@ -0,0 +1,181 @@
+package com.github.catstiger.sql.meta;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import com.github.catstiger.sql.annotation.FullMatches;
+import com.github.catstiger.sql.annotation.FullText;
+import com.github.catstiger.sql.annotation.LobPrefix;
+import com.github.catstiger.sql.annotation.RangeQuery;
+
+/**
+ * 实体类的一个属性与数据库字段的对应关系。由{@link EntityMeta}在第一次使用时构建，之后只读，可以在多线程之间共享。
+ * @author catstiger
+ *
+ */
+public final class ColumnMeta {
+  private final int index;
+  private final String fieldname;
+  private final String col;
+  private final Field field;
+  private final PropertyDescriptor propertyDescriptor;
+  private final Method getter;
+  private final Class<?> type;
+  private final boolean primary;
+  private final boolean foreign;
+  private final FullText fullText;
+  private final FullMatches fullMatches;
+  private final RangeQuery rangeQuery;
+  private final PropertyAccessor accessor;
+  private final PropertyAccessor rangeStartAccessor;
+  private final PropertyAccessor rangeEndAccessor;
+  /**
+   * 只读的字段，不参与INSERT、UPDATE和UPSERT，例如被{@link LobPrefix}标注的属性
+   */
+  private final boolean readOnly;
+
+  ColumnMeta(int index, String col, Field field, PropertyDescriptor propertyDescriptor, PropertyAccessor accessor, 
+      boolean primary, boolean foreign, FullText fullText, FullMatches fullMatches, RangeQuery rangeQuery, 
+      PropertyAccessor rangeStartAccessor, PropertyAccessor rangeEndAccessor, boolean readOnly) {
+    this.index = index;
+    this.col = col;
+    this.field = field;
+    this.fieldname = field.getName();
+    this.propertyDescriptor = propertyDescriptor;
+    this.getter = propertyDescriptor.getReadMethod();
+    this.type = field.getType();
+    this.accessor = accessor;
+    this.primary = primary;
+    this.foreign = foreign;
+    this.fullText = fullText;
+    this.fullMatches = fullMatches;
+    this.rangeQuery = rangeQuery;
+    this.rangeStartAccessor = rangeStartAccessor;
+    this.rangeEndAccessor = rangeEndAccessor;
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * 复制一个ColumnMeta，仅改变其在{@link EntityMeta#getColumns()}中的顺序
+   */
+  ColumnMeta withIndex(int index) {
+    return new ColumnMeta(index, col, field, propertyDescriptor, accessor, primary, foreign, fullText, fullMatches,
+        rangeQuery, rangeStartAccessor, rangeEndAccessor, readOnly);
+  }
+
+  /**
+   * 读取给定实体对象中，本属性的值
+   * @param owner 实体对象
+   * @return 属性值
+   */
+  public Object getValue(Object owner) {
+    return accessor.get(owner);
+  }
+  
+  /**
+   * 向给定的实体对象写入本属性的值
+   * @param owner 实体对象
+   * @param value 属性值
+   */
+  public void setValue(Object owner, Object value) {
+    accessor.set(owner, value);
+  }
+
+  /**
+   * 读取@RangeQuery#start()指定的属性的值，调用之前，应该确认start()不为空
+   */
+  public Object getRangeStartValue(Object owner) {
+    if(rangeStartAccessor == null) {
+      throw new RuntimeException("属性不存在 " + rangeQuery.start());
+    }
+    return rangeStartAccessor.get(owner);
+  }
+
+  /**
+   * 读取@RangeQuery#end()指定的属性的值，调用之前，应该确认end()不为空
+   */
+  public Object getRangeEndValue(Object owner) {
+    if(rangeEndAccessor == null) {
+      throw new RuntimeException("属性不存在 " + rangeQuery.end());
+    }
+    return rangeEndAccessor.get(owner);
+  }
+
+  /**
+   * 在{@link EntityMeta#getColumns()}中的位置，从0开始
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  public String getFieldname() {
+    return fieldname;
+  }
+
+  /**
+   * 字段名，由{@link com.github.catstiger.sql.NamingStrategy}决定
+   */
+  public String getCol() {
+    return col;
+  }
+
+  public Field getField() {
+    return field;
+  }
+
+  public PropertyDescriptor getPropertyDescriptor() {
+    return propertyDescriptor;
+  }
+
+  public Method getGetter() {
+    return getter;
+  }
+
+  /**
+   * 属性的读写器
+   */
+  public PropertyAccessor getAccessor() {
+    return accessor;
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * 是否只读，只读的字段只出现在SELECT中，不参与INSERT、UPDATE和UPSERT。被{@link LobPrefix}标注的属性只装载了前面的一部分，
+   * 如果写回数据库，会截断原有的内容，因此是只读的
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  public boolean isPrimary() {
+    return primary;
+  }
+
+  /**
+   * 是否是外键，即被@JoinColumn标注，并且属性的类型是一个实体类
+   */
+  public boolean isForeign() {
+    return foreign;
+  }
+
+  public FullText getFullText() {
+    return fullText;
+  }
+
+  public FullMatches getFullMatches() {
+    return fullMatches;
+  }
+
+  public RangeQuery getRangeQuery() {
+    return rangeQuery;
+  }
+
+  @Override
+  public String toString() {
+    return fieldname + ":" + col;
+  }
+}
@@ -0,0 +1,234 @@
+package com.github.catstiger.sql.meta;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Entity;
+import javax.persistence.JoinColumn;
+import javax.persistence.Transient;
+
+import com.github.catstiger.sql.NamingStrategy;
+import com.github.catstiger.sql.ORMHelper;
+import com.github.catstiger.sql.annotation.FullMatches;
+import com.github.catstiger.sql.annotation.FullText;
+import com.github.catstiger.sql.annotation.LobPrefix;
+import com.github.catstiger.sql.annotation.RangeQuery;
+import com.github.catstiger.utils.ClassUtils;
+import com.github.catstiger.utils.ReflectUtils;
+import com.github.catstiger.utils.StringUtils;
+
+/**
+ * 实体类的元数据，包括表名、字段列表、主键、外键，以及@RangeQuery，@FullText，@FullMatches等标注。
+ * <p>
+ * 生成SQL的时候需要反复读取这些信息，如果每次都通过反射获取，会带来大量的CPU和内存开销。EntityMeta对于每一个实体类和
+ * {@link NamingStrategy}只构建一次，之后只读，可以在多线程之间共享。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class EntityMeta {
+  /**
+   * 每个实体类，按照NamingStrategy的类型，保存一个EntityMeta
+   */
+  private static final ClassValue<Map<Class<?>, EntityMeta>> registry = new ClassValue<Map<Class<?>, EntityMeta>>() {
+    @Override
+    protected Map<Class<?>, EntityMeta> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>(4);
+    }
+  };
+
+  /**
+   * 字段的排列顺序：id在前，其他的按照字段名排序
+   */
+  public static final Comparator<String> COLUMN_ORDER = new Comparator<String>() {
+    @Override
+    public int compare(String col1, String col2) {
+      boolean id1 = "id".equalsIgnoreCase(col1);
+      boolean id2 = "id".equalsIgnoreCase(col2);
+      if(id1 || id2) {
+        return id1 == id2 ? 0 : (id1 ? -1 : 1);
+      }
+      return col1.compareToIgnoreCase(col2);
+    }
+  };
+
+  private final Class<?> entityClass;
+  private final NamingStrategy namingStrategy;
+  private final String tablename;
+  private final String tableAlias;
+  private final List<ColumnMeta> columns;
+  private final Map<String, ColumnMeta> columnsByField;
+  private final ColumnMeta primary;
+  private final List<ColumnMeta> foreigns;
+
+  /**
+   * 取得实体类对应的EntityMeta，如果尚未构建，则构建之
+   * @param entityClass 实体类
+   * @param namingStrategy 命名策略
+   * @return Instance of EntityMeta
+   */
+  public static EntityMeta get(Class<?> entityClass, NamingStrategy namingStrategy) {
+    if(entityClass == null || namingStrategy == null) {
+      throw new IllegalArgumentException("实体类和命名策略不可为空。");
+    }
+    Map<Class<?>, EntityMeta> metas = registry.get(entityClass);
+    EntityMeta meta = metas.get(namingStrategy.getClass());
+    if(meta == null) {
+      //构建过程中可能会引用其他实体类的EntityMeta，因此不使用computeIfAbsent
+      meta = new EntityMeta(entityClass, namingStrategy);
+      EntityMeta prev = metas.putIfAbsent(namingStrategy.getClass(), meta);
+      if(prev != null) {
+        meta = prev;
+      }
+    }
+    return meta;
+  }
+
+  private EntityMeta(Class<?> entityClass, NamingStrategy namingStrategy) {
+    this.entityClass = entityClass;
+    this.namingStrategy = namingStrategy;
+    this.tablename = namingStrategy.tablename(entityClass);
+    this.tableAlias = namingStrategy.tableAlias(entityClass);
+
+    PropertyDescriptor[] propertyDescriptors = ReflectUtils.getPropertyDescriptors(entityClass);
+    if(propertyDescriptors == null) {
+      throw new RuntimeException("无法获取PropertyDescriptor " + entityClass.getName());
+    }
+    ORMHelper ormHelper = ORMHelper.getInstance(namingStrategy);
+    List<ColumnMeta> cols = new ArrayList<>(propertyDescriptors.length);
+
+    for(PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+      if(propertyDescriptor == null) {
+        continue;
+      }
+      Method readMethod = propertyDescriptor.getReadMethod();
+      Field field = ReflectUtils.findField(entityClass, propertyDescriptor.getName());
+      if(readMethod == null || field == null) {
+        continue;
+      }
+      //如果标注为Transient,则忽略
+      if(findAnnotation(field, readMethod, Transient.class) != null
+          || findAnnotation(field, readMethod, java.beans.Transient.class) != null) {
+        continue;
+      }
+      //如果是集合类或者数组，则忽略
+      Class<?> propType = propertyDescriptor.getPropertyType();
+      if(ClassUtils.isAssignable(propType, Collection.class) || propType.isArray()) {
+        continue;
+      }
+      String col = namingStrategy.columnName(entityClass, field);
+      boolean isPrimary = ormHelper.isPrimaryKey(field);
+      boolean isForeign = (findAnnotation(field, readMethod, JoinColumn.class) != null
+          && field.getType().getAnnotation(Entity.class) != null);
+
+      RangeQuery rangeQuery = findAnnotation(field, readMethod, RangeQuery.class);
+      PropertyAccessor rangeStartAccessor = null;
+      PropertyAccessor rangeEndAccessor = null;
+      if(rangeQuery != null) {
+        if(StringUtils.isNotBlank(rangeQuery.start())) {
+          rangeStartAccessor = PropertyAccessor.forProperty(entityClass, rangeQuery.start());
+        }
+        if(StringUtils.isNotBlank(rangeQuery.end())) {
+          rangeEndAccessor = PropertyAccessor.forProperty(entityClass, rangeQuery.end());
+        }
+      }
+
+      cols.add(new ColumnMeta(-1, col, field, propertyDescriptor, PropertyAccessor.forProperty(entityClass, propertyDescriptor),
+          isPrimary, isForeign, findAnnotation(field, readMethod, FullText.class), findAnnotation(field, readMethod, FullMatches.class),
+          rangeQuery, rangeStartAccessor, rangeEndAccessor, findAnnotation(field, readMethod, LobPrefix.class) != null));
+    }
+
+    cols.sort((c1, c2) -> COLUMN_ORDER.compare(c1.getCol(), c2.getCol()));
+
+    List<ColumnMeta> ordered = new ArrayList<>(cols.size());
+    Map<String, ColumnMeta> byField = new HashMap<>(cols.size() * 2);
+    List<ColumnMeta> fks = new ArrayList<>(2);
+    ColumnMeta pk = null;
+    for(ColumnMeta cm : cols) {
+      ColumnMeta indexed = cm.withIndex(ordered.size());
+      ordered.add(indexed);
+      byField.put(indexed.getFieldname(), indexed);
+      if(pk == null && indexed.isPrimary()) {
+        pk = indexed;
+      }
+      if(indexed.isForeign()) {
+        fks.add(indexed);
+      }
+    }
+
+    this.columns = Collections.unmodifiableList(ordered);
+    this.columnsByField = Collections.unmodifiableMap(byField);
+    this.primary = pk;
+    this.foreigns = Collections.unmodifiableList(fks);
+  }
+
+  /**
+   * 优先取属性上的标注，如果没有，则取Getter方法上的标注
+   */
+  private static <T extends Annotation> T findAnnotation(Field field, Method getter, Class<T> annotationClass) {
+    T ann = field.getAnnotation(annotationClass);
+    if(ann == null && getter != null) {
+      ann = getter.getAnnotation(annotationClass);
+    }
+    return ann;
+  }
+
+  public Class<?> getEntityClass() {
+    return entityClass;
+  }
+
+  public NamingStrategy getNamingStrategy() {
+    return namingStrategy;
+  }
+
+  public String getTablename() {
+    return tablename;
+  }
+
+  public String getTableAlias() {
+    return tableAlias;
+  }
+
+  /**
+   * 返回所有对应数据库字段的属性，按照{@link #COLUMN_ORDER}排序
+   */
+  public List<ColumnMeta> getColumns() {
+    return columns;
+  }
+
+  /**
+   * 根据属性名，返回对应的ColumnMeta，如果属性不对应数据库字段，则返回<code>null</code>
+   */
+  public ColumnMeta getColumn(String fieldname) {
+    return columnsByField.get(fieldname);
+  }
+
+  /**
+   * 返回主键，如果没有主键，则返回<code>null</code>
+   */
+  public ColumnMeta getPrimary() {
+    return primary;
+  }
+
+  /**
+   * 返回所有的外键
+   */
+  public List<ColumnMeta> getForeigns() {
+    return foreigns;
+  }
+
+  @Override
+  public String toString() {
+    return entityClass.getName() + "@" + namingStrategy.getClass().getSimpleName();
+  }
+}
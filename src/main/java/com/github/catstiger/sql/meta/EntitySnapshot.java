@@ -0,0 +1,95 @@
+package com.github.catstiger.sql.meta;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import com.github.catstiger.sql.BaseEntity;
+
+/**
+ * 实体对象在某一时刻（通常是从数据库中装载之后）各个字段的值。与实体对象当前的值比较，就可以知道哪些字段发生了变化，
+ * 从而只UPDATE这些字段。
+ * <ul>
+ *     <li>Date和byte[]等可变的值，保存其副本</li>
+ *     <li>外键保存引用的实体的ID，引用了另一个ID相同的实体对象，不认为发生了变化</li>
+ *     <li>BigDecimal使用compareTo比较，忽略精度的差别</li>
+ * </ul>
+ * @author catstiger
+ *
+ */
+public final class EntitySnapshot {
+  private final EntityMeta meta;
+  private final Object[] values;
+  
+  private EntitySnapshot(EntityMeta meta, Object[] values) {
+    this.meta = meta;
+    this.values = values;
+  }
+  
+  /**
+   * 记录实体对象当前各个字段的值
+   * @param meta 实体类的元数据
+   * @param entity 实体对象
+   */
+  public static EntitySnapshot capture(EntityMeta meta, Object entity) {
+    List<ColumnMeta> columns = meta.getColumns();
+    Object[] values = new Object[columns.size()];
+    for(ColumnMeta column : columns) {
+      values[column.getIndex()] = copyOf(column, column.getValue(entity));
+    }
+    return new EntitySnapshot(meta, values);
+  }
+  
+  /**
+   * 与实体对象当前的值比较，返回发生变化的字段
+   * @param target 用于确定字段顺序的元数据，按照其{@link ColumnMeta#getIndex()}设置返回值
+   * @param entity 实体对象
+   * @return 发生变化的字段
+   */
+  public BitSet changed(EntityMeta target, Object entity) {
+    List<ColumnMeta> columns = target.getColumns();
+    BitSet changed = new BitSet(columns.size());
+    for(ColumnMeta column : columns) {
+      //不同命名策略的EntityMeta，字段的顺序可能不同，按照属性名对应
+      ColumnMeta origin = (target == meta ? column : meta.getColumn(column.getFieldname()));
+      if(origin == null) {
+        changed.set(column.getIndex());
+        continue;
+      }
+      Object current = copyOf(column, column.getValue(entity));
+      if(!isEqual(values[origin.getIndex()], current)) {
+        changed.set(column.getIndex());
+      }
+    }
+    return changed;
+  }
+  
+  private static Object copyOf(ColumnMeta column, Object value) {
+    if(value == null) {
+      return null;
+    }
+    if(column.isForeign() && value instanceof BaseEntity) {
+      return ((BaseEntity) value).getId();
+    }
+    if(value instanceof Date) {
+      return ((Date) value).clone();
+    }
+    if(value instanceof byte[]) {
+      return ((byte[]) value).clone();
+    }
+    return value;
+  }
+  
+  private static boolean isEqual(Object origin, Object current) {
+    if(origin instanceof BigDecimal && current instanceof BigDecimal) {
+      return ((BigDecimal) origin).compareTo((BigDecimal) current) == 0;
+    }
+    if(origin instanceof byte[] && current instanceof byte[]) {
+      return Arrays.equals((byte[]) origin, (byte[]) current);
+    }
+    return Objects.equals(origin, current);
+  }
+}
@@ -0,0 +1,446 @@
+package com.github.catstiger.sql.meta;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.github.catstiger.utils.ReflectUtils;
+
+/**
+ * 实体类属性的读写器。对于每一个类的每一个属性，只创建一次：
+ * <ul>
+ *     <li>如果Getter/Setter是public的，则通过{@link LambdaMetafactory}生成对应的{@link Function}和{@link BiConsumer}，
+ *     其调用开销与直接调用Getter/Setter相当，可以被JIT内联</li>
+ *     <li>否则，通过反射调用Getter/Setter</li>
+ *     <li>如果没有Getter/Setter，则直接读写Field</li>
+ * </ul>
+ * 用于代替{@code ReflectUtils.invokeMethod}，生成SQL和装载ResultSet的时候，每一行、每一个字段都要读写属性，反射调用的开销不可忽视。
+ * <p>
+ * 如果属性是原生类型（long，int，double，float，boolean，short，byte），还会生成一个参数为原生类型的Setter，
+ * 通过{@link #setLong(Object, long)}等方法写入，不需要装箱。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class PropertyAccessor {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  
+  private static final ClassValue<Map<String, PropertyAccessor>> accessors = new ClassValue<Map<String, PropertyAccessor>>() {
+    @Override
+    protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>(16);
+    }
+  };
+  
+  private final String name;
+  private final Class<?> type;
+  private final Function<Object, Object> getter;
+  private final BiConsumer<Object, Object> setter;
+  /**
+   * 原生类型的Setter，例如{@link LongSetter}，属性不是原生类型则为<code>null</code>
+   */
+  private final Object primitiveSetter;
+  
+  private PropertyAccessor(String name, Class<?> type, Function<Object, Object> getter, BiConsumer<Object, Object> setter,
+      Object primitiveSetter) {
+    this.name = name;
+    this.type = type;
+    this.getter = getter;
+    this.setter = setter;
+    this.primitiveSetter = primitiveSetter;
+  }
+  
+  /**
+   * 返回给定类的某个属性的读写器，如果既没有对应的Getter/Setter，也没有对应的Field，则返回<code>null</code>
+   * @param beanClass 实体类，或者普通的JavaBean
+   * @param name 属性名
+   */
+  public static PropertyAccessor forProperty(Class<?> beanClass, String name) {
+    Map<String, PropertyAccessor> map = accessors.get(beanClass);
+    PropertyAccessor accessor = map.get(name);
+    if(accessor == null) {
+      accessor = create(beanClass, name);
+      if(accessor != null) {
+        PropertyAccessor prev = map.putIfAbsent(name, accessor);
+        if(prev != null) {
+          accessor = prev;
+        }
+      }
+    }
+    return accessor;
+  }
+  
+  /**
+   * 返回PropertyDescriptor对应的属性的读写器
+   */
+  public static PropertyAccessor forProperty(Class<?> beanClass, PropertyDescriptor propertyDescriptor) {
+    return forProperty(beanClass, propertyDescriptor.getName());
+  }
+  
+  private static PropertyAccessor create(Class<?> beanClass, String name) {
+    PropertyDescriptor propertyDescriptor = null;
+    PropertyDescriptor[] propertyDescriptors = ReflectUtils.getPropertyDescriptors(beanClass);
+    if(propertyDescriptors != null) {
+      for(PropertyDescriptor pd : propertyDescriptors) {
+        if(pd != null && name.equals(pd.getName())) {
+          propertyDescriptor = pd;
+          break;
+        }
+      }
+    }
+    Field field = ReflectUtils.findField(beanClass, name);
+    if(propertyDescriptor == null && field == null) {
+      return null;
+    }
+    
+    Method readMethod = (propertyDescriptor != null ? propertyDescriptor.getReadMethod() : null);
+    Method writeMethod = (propertyDescriptor != null ? propertyDescriptor.getWriteMethod() : null);
+    Class<?> type = (propertyDescriptor != null && propertyDescriptor.getPropertyType() != null) ? 
+        propertyDescriptor.getPropertyType() : field.getType();
+    
+    Function<Object, Object> getter = null;
+    if(readMethod != null) {
+      getter = methodGetter(readMethod);
+    } else if(field != null) {
+      getter = fieldGetter(field);
+    }
+    BiConsumer<Object, Object> setter = null;
+    Object primitiveSetter = null;
+    if(writeMethod != null) {
+      setter = methodSetter(writeMethod);
+      primitiveSetter = primitiveSetter(writeMethod);
+    } else if(field != null && !Modifier.isFinal(field.getModifiers())) {
+      setter = fieldSetter(field);
+      primitiveSetter = primitiveSetter(field);
+    }
+    
+    return new PropertyAccessor(name, type, getter, setter, primitiveSetter);
+  }
+  
+  /**
+   * 读取属性值
+   * @param bean 属性的宿主对象
+   */
+  public Object get(Object bean) {
+    if(getter == null) {
+      throw new IllegalStateException("属性不可读 " + name);
+    }
+    return getter.apply(bean);
+  }
+  
+  /**
+   * 写入属性值，如果属性是原生类型，并且value为<code>null</code>，则保持属性的缺省值不变
+   * @param bean 属性的宿主对象
+   * @param value 属性值
+   */
+  public void set(Object bean, Object value) {
+    if(setter == null) {
+      throw new IllegalStateException("属性不可写 " + name);
+    }
+    if(value == null && type.isPrimitive()) {
+      return;
+    }
+    setter.accept(bean, value);
+  }
+  
+  /**
+   * 写入long类型的属性值，如果属性是long，则不装箱
+   */
+  public void setLong(Object bean, long value) {
+    if(primitiveSetter instanceof LongSetter) {
+      ((LongSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  /**
+   * 写入int类型的属性值，如果属性是int，则不装箱
+   */
+  public void setInt(Object bean, int value) {
+    if(primitiveSetter instanceof IntSetter) {
+      ((IntSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  /**
+   * 写入double类型的属性值，如果属性是double，则不装箱
+   */
+  public void setDouble(Object bean, double value) {
+    if(primitiveSetter instanceof DoubleSetter) {
+      ((DoubleSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  /**
+   * 写入float类型的属性值，如果属性是float，则不装箱
+   */
+  public void setFloat(Object bean, float value) {
+    if(primitiveSetter instanceof FloatSetter) {
+      ((FloatSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  /**
+   * 写入boolean类型的属性值，如果属性是boolean，则不装箱
+   */
+  public void setBoolean(Object bean, boolean value) {
+    if(primitiveSetter instanceof BooleanSetter) {
+      ((BooleanSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  /**
+   * 写入short类型的属性值，如果属性是short，则不装箱
+   */
+  public void setShort(Object bean, short value) {
+    if(primitiveSetter instanceof ShortSetter) {
+      ((ShortSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  /**
+   * 写入byte类型的属性值，如果属性是byte，则不装箱
+   */
+  public void setByte(Object bean, byte value) {
+    if(primitiveSetter instanceof ByteSetter) {
+      ((ByteSetter) primitiveSetter).set(bean, value);
+    } else {
+      set(bean, value);
+    }
+  }
+  
+  public boolean isReadable() {
+    return getter != null;
+  }
+  
+  public boolean isWritable() {
+    return setter != null;
+  }
+  
+  public String getName() {
+    return name;
+  }
+  
+  public Class<?> getType() {
+    return type;
+  }
+  
+  @Override
+  public String toString() {
+    return "PropertyAccessor[" + name + ":" + type.getName() + "]";
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> methodGetter(final Method method) {
+    if(isLambdaSupported(method)) {
+      try {
+        MethodHandle handle = LOOKUP.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+            MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+        return (Function<Object, Object>) site.getTarget().invokeExact();
+      } catch (Throwable e) {
+        //退回到反射调用
+      }
+    }
+    method.setAccessible(true);
+    return bean -> ReflectUtils.invokeMethod(method, bean);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> methodSetter(final Method method) {
+    if(isLambdaSupported(method)) {
+      try {
+        MethodHandle handle = LOOKUP.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+            MethodType.methodType(void.class, Object.class, Object.class), handle, 
+            handle.type().wrap().changeReturnType(void.class));
+        return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+      } catch (Throwable e) {
+        //退回到反射调用
+      }
+    }
+    method.setAccessible(true);
+    return (bean, value) -> ReflectUtils.invokeMethod(method, bean, value);
+  }
+  
+  /**
+   * 原生类型的Setter对应的接口
+   */
+  private static Class<?> primitiveSetterType(Class<?> type) {
+    if(type == long.class) {
+      return LongSetter.class;
+    } else if(type == int.class) {
+      return IntSetter.class;
+    } else if(type == double.class) {
+      return DoubleSetter.class;
+    } else if(type == float.class) {
+      return FloatSetter.class;
+    } else if(type == boolean.class) {
+      return BooleanSetter.class;
+    } else if(type == short.class) {
+      return ShortSetter.class;
+    } else if(type == byte.class) {
+      return ByteSetter.class;
+    }
+    return null;
+  }
+  
+  /**
+   * 通过{@link LambdaMetafactory}，为参数是原生类型的Setter生成对应的接口实现，不支持的情况返回<code>null</code>，
+   * 此时按照一般的方式装箱写入
+   */
+  private static Object primitiveSetter(Method method) {
+    Class<?> type = method.getParameterTypes()[0];
+    Class<?> setterType = primitiveSetterType(type);
+    if(setterType == null || !isLambdaSupported(method)) {
+      return null;
+    }
+    try {
+      MethodHandle handle = LOOKUP.unreflect(method);
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "set", MethodType.methodType(setterType),
+          MethodType.methodType(void.class, Object.class, type), handle, handle.type().changeReturnType(void.class));
+      return site.getTarget().invoke();
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+  
+  /**
+   * 直接写入原生类型的Field
+   */
+  private static Object primitiveSetter(final Field field) {
+    Class<?> type = field.getType();
+    field.setAccessible(true);
+    if(type == long.class) {
+      return (LongSetter) (bean, value) -> {
+        try {
+          field.setLong(bean, value);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      };
+    } else if(type == int.class) {
+      return (IntSetter) (bean, value) -> {
+        try {
+          field.setInt(bean, value);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      };
+    } else if(type == double.class) {
+      return (DoubleSetter) (bean, value) -> {
+        try {
+          field.setDouble(bean, value);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      };
+    }
+    //其他原生类型的Field较少使用，按照一般的方式装箱写入
+    return null;
+  }
+  
+  private static Function<Object, Object> fieldGetter(final Field field) {
+    field.setAccessible(true);
+    return bean -> {
+      try {
+        return field.get(bean);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+  
+  private static BiConsumer<Object, Object> fieldSetter(final Field field) {
+    field.setAccessible(true);
+    return (bean, value) -> {
+      try {
+        field.set(bean, value);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+  
+  /**
+   * 只有public类的public方法，并且涉及的类型对于本类的ClassLoader可见，才使用LambdaMetafactory
+   */
+  private static boolean isLambdaSupported(Method method) {
+    if(!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return false;
+    }
+    if(!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) {
+      return false;
+    }
+    for(Class<?> paramType : method.getParameterTypes()) {
+      if(!isVisible(paramType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static boolean isVisible(Class<?> type) {
+    if(type.isPrimitive()) {
+      return true;
+    }
+    ClassLoader classLoader = PropertyAccessor.class.getClassLoader();
+    if(type.getClassLoader() == classLoader || type.getClassLoader() == null) {
+      return true;
+    }
+    try {
+      return Class.forName(type.getName(), false, classLoader) == type;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+  
+  interface LongSetter {
+    void set(Object bean, long value);
+  }
+  
+  interface IntSetter {
+    void set(Object bean, int value);
+  }
+  
+  interface DoubleSetter {
+    void set(Object bean, double value);
+  }
+  
+  interface FloatSetter {
+    void set(Object bean, float value);
+  }
+  
+  interface BooleanSetter {
+    void set(Object bean, boolean value);
+  }
+  
+  interface ShortSetter {
+    void set(Object bean, short value);
+  }
+  
+  interface ByteSetter {
+    void set(Object bean, byte value);
+  }
+}
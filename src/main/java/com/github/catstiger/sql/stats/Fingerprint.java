@@ -0,0 +1,137 @@
+package com.github.catstiger.sql.stats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * SQL语句的指纹。结构相同、只是参数值不同的SQL，具有相同的指纹，用于按照语句统计执行情况：
+ * <ul>
+ *     <li>去掉注释，连续的空白字符合并为一个空格，引号之外的字符转换为小写</li>
+ *     <li>字符串和数字常量、命名参数（:name）替换为?</li>
+ *     <li>只包含占位符的列表，例如IN (?, ?, ?)，不论长短，都替换为(?+)；多行INSERT的VALUES (?+), (?+)...替换为(?+)+</li>
+ * </ul>
+ * 例如：SELECT * FROM users WHERE name = 'sam' AND id IN (1, 2, 3)，指纹为select * from users where name = ? and id in (?+)
+ * <p>
+ * 计算的结果缓存在{@link ConcurrentHashMap}中，已经计算过的SQL，取得指纹的过程不加锁。缓存的数量达到上限（{@link #MAXIMUM_SIZE}）的时候，
+ * 全部清除，避免拼接了常量的SQL撑满内存。
+ * </p>
+ * @author catstiger
+ *
+ */
+public final class Fingerprint {
+  private static final Pattern PARAM_LIST = Pattern.compile("\\( ?\\?( ?, ?\\?)* ?\\)");
+  private static final Pattern PARAM_ROWS = Pattern.compile("\\(\\?\\+\\)( ?, ?\\(\\?\\+\\))+");
+  /**
+   * 最多缓存的指纹数量
+   */
+  public static final int MAXIMUM_SIZE = 4096;
+  private static final ConcurrentMap<String, String> cache = new ConcurrentHashMap<String, String>(256);
+  
+  private Fingerprint() {
+  }
+  
+  /**
+   * 返回SQL语句的指纹，同一个SQL文本只计算一次
+   * @param sql SQL语句
+   * @return 指纹
+   */
+  public static String of(String sql) {
+    String fingerprint = cache.get(sql);
+    if(fingerprint == null) {
+      fingerprint = normalize(sql);
+      if(cache.size() >= MAXIMUM_SIZE) {
+        cache.clear();
+      }
+      cache.putIfAbsent(sql, fingerprint);
+    }
+    return fingerprint;
+  }
+  
+  /**
+   * 计算SQL语句的指纹，不使用缓存
+   */
+  static String normalize(String sql) {
+    int len = sql.length();
+    StringBuilder buf = new StringBuilder(len);
+    int i = 0;
+    while(i < len) {
+      char c = sql.charAt(i);
+      if(c == '\'') { //字符串常量
+        int end = i + 1;
+        while(end < len) {
+          if(sql.charAt(end) == '\'') {
+            if(end + 1 < len && sql.charAt(end + 1) == '\'') { //转义的单引号
+              end += 2;
+              continue;
+            }
+            break;
+          }
+          end++;
+        }
+        buf.append('?');
+        i = end + 1;
+      } else if(c == '"' || c == '`') { //标识符
+        int end = sql.indexOf(c, i + 1);
+        end = (end < 0 ? len : end + 1);
+        buf.append(sql, i, end);
+        i = end;
+      } else if(c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') { //单行注释
+        int end = sql.indexOf('\n', i);
+        i = (end < 0 ? len : end);
+        space(buf);
+      } else if(c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') { //多行注释
+        int end = sql.indexOf("*/", i + 2);
+        i = (end < 0 ? len : end + 2);
+        space(buf);
+      } else if(Character.isWhitespace(c)) {
+        space(buf);
+        i++;
+      } else if(c == ':' && i + 1 < len && sql.charAt(i + 1) == ':') { //类型转换
+        buf.append("::");
+        i += 2;
+      } else if(c == ':' && i + 1 < len && Character.isJavaIdentifierStart(sql.charAt(i + 1))) { //命名参数
+        int end = i + 1;
+        while(end < len && (Character.isJavaIdentifierPart(sql.charAt(end)) || sql.charAt(end) == '.')) {
+          end++;
+        }
+        buf.append('?');
+        i = end;
+      } else if(Character.isDigit(c) && !isIdentifierPart(buf)) { //数字常量
+        int end = i + 1;
+        while(end < len && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+          end++;
+        }
+        buf.append('?');
+        i = end;
+      } else {
+        buf.append(Character.toLowerCase(c));
+        i++;
+      }
+    }
+    int end = buf.length();
+    while(end > 0 && buf.charAt(end - 1) == ' ') {
+      end--;
+    }
+    buf.setLength(end);
+    String normalized = PARAM_LIST.matcher(buf).replaceAll("(?+)");
+    return PARAM_ROWS.matcher(normalized).replaceAll("(?+)+");
+  }
+  
+  private static void space(StringBuilder buf) {
+    if(buf.length() > 0 && buf.charAt(buf.length() - 1) != ' ') {
+      buf.append(' ');
+    }
+  }
+  
+  /**
+   * 前一个字符是否是标识符的一部分，例如t1中的1不是数字常量
+   */
+  private static boolean isIdentifierPart(StringBuilder buf) {
+    if(buf.length() == 0) {
+      return false;
+    }
+    char prev = buf.charAt(buf.length() - 1);
+    return Character.isLetterOrDigit(prev) || prev == '_' || prev == '$';
+  }
+}
@@ -0,0 +1,89 @@
+package com.github.catstiger.sql.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时的直方图，不加锁，可以在多线程之间共享。桶的划分类似于HdrHistogram：每一个2的整数次幂的区间，再等分为8个子区间，
+ * 因此，在整个取值范围之内，相对误差不超过12.5%。
+ * @author catstiger
+ *
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  static final int BUCKETS = 64 * SUB_BUCKETS;
+  
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  
+  /**
+   * 记录一次耗时
+   * @param nanos 耗时，单位为纳秒，小于0按照0处理
+   */
+  public void record(long nanos) {
+    counts.incrementAndGet(indexOf(Math.max(0L, nanos)));
+  }
+  
+  /**
+   * 返回各个桶中的计数
+   */
+  public long[] counts() {
+    long[] snapshot = new long[BUCKETS];
+    for(int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+  
+  /**
+   * 根据计数，计算百分位数
+   * @param counts {@link #counts()}的返回值
+   * @param percentile 百分位，例如99.9
+   * @return 对应的耗时（所在桶的上界），单位为纳秒
+   */
+  public static long percentile(long[] counts, double percentile) {
+    long total = 0L;
+    for(long count : counts) {
+      total += count;
+    }
+    if(total == 0L) {
+      return 0L;
+    }
+    long rank = (long) Math.ceil(total * Math.min(100D, Math.max(0D, percentile)) / 100D);
+    long seen = 0L;
+    for(int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if(seen >= Math.max(1L, rank)) {
+        return upperBound(i);
+      }
+    }
+    return upperBound(counts.length - 1);
+  }
+  
+  static int indexOf(long value) {
+    if(value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int major = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (major - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (major - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+  
+  /**
+   * 桶的下界（包含）
+   */
+  static long lowerBound(int index) {
+    if(index < SUB_BUCKETS) {
+      return index;
+    }
+    int major = index / SUB_BUCKETS + SUB_BITS - 1;
+    long sub = index % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (major - SUB_BITS);
+  }
+  
+  /**
+   * 桶的上界（包含）
+   */
+  static long upperBound(int index) {
+    return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+  }
+}
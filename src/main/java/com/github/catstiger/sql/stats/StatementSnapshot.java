@@ -0,0 +1,102 @@
+package com.github.catstiger.sql.stats;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 某一时刻，一个SQL指纹的执行统计，不可变
+ * @author catstiger
+ *
+ */
+public final class StatementSnapshot implements Serializable {
+  private static final long serialVersionUID = -3526409214318235418L;
+  
+  private final String fingerprint;
+  private final long calls;
+  private final long totalNanos;
+  private final long maxNanos;
+  private final long rows;
+  private final long mappingNanos;
+  private final long[] histogram;
+  
+  StatementSnapshot(String fingerprint, long calls, long totalNanos, long maxNanos, long rows, long mappingNanos, long[] histogram) {
+    this.fingerprint = fingerprint;
+    this.calls = calls;
+    this.totalNanos = totalNanos;
+    this.maxNanos = maxNanos;
+    this.rows = rows;
+    this.mappingNanos = mappingNanos;
+    this.histogram = histogram;
+  }
+  
+  public String getFingerprint() {
+    return fingerprint;
+  }
+  
+  /**
+   * 执行的次数
+   */
+  public long getCalls() {
+    return calls;
+  }
+  
+  /**
+   * 执行的总耗时，单位为纳秒
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+  
+  /**
+   * 单次执行的最大耗时，单位为纳秒
+   */
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+  
+  /**
+   * 返回（或者影响）的总行数
+   */
+  public long getRows() {
+    return rows;
+  }
+  
+  /**
+   * 将结果转换为对象的总耗时，单位为纳秒
+   */
+  public long getMappingNanos() {
+    return mappingNanos;
+  }
+  
+  /**
+   * 耗时的百分位数，单位为纳秒，相对误差不超过12.5%
+   * @param percentile 百分位，例如99
+   */
+  public long getPercentileNanos(double percentile) {
+    return LatencyHistogram.percentile(histogram, percentile);
+  }
+  
+  /**
+   * 转换为Map，耗时的单位为微秒，便于输出为JSON或者日志
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<String, Object>(16);
+    map.put("fingerprint", fingerprint);
+    map.put("calls", calls);
+    map.put("totalMicros", TimeUnit.NANOSECONDS.toMicros(totalNanos));
+    map.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos));
+    map.put("p50Micros", TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(50)));
+    map.put("p95Micros", TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(95)));
+    map.put("p99Micros", TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)));
+    map.put("rows", rows);
+    map.put("mappingMicros", TimeUnit.NANOSECONDS.toMicros(mappingNanos));
+    return map;
+  }
+  
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+}
@@ -0,0 +1,53 @@
+package com.github.catstiger.sql.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个指纹对应的SQL语句的执行统计，所有的计数器都不加锁，可以被多个线程同时更新
+ * @author catstiger
+ *
+ */
+public final class StatementStats {
+  private final String fingerprint;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final LongAdder rows = new LongAdder();
+  private final LongAdder mappingNanos = new LongAdder();
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  
+  StatementStats(String fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+  
+  /**
+   * 记录一次执行
+   * @param elapsedNanos 执行的耗时，单位为纳秒
+   * @param rowCount 返回（或者影响）的行数
+   * @param mappingNanos 将结果转换为对象的耗时，单位为纳秒
+   */
+  void record(long elapsedNanos, long rowCount, long mappingNanos) {
+    calls.increment();
+    totalNanos.add(elapsedNanos);
+    rows.add(rowCount);
+    this.mappingNanos.add(mappingNanos);
+    histogram.record(elapsedNanos);
+    long max = maxNanos.get();
+    while(elapsedNanos > max && !maxNanos.compareAndSet(max, elapsedNanos)) {
+      max = maxNanos.get();
+    }
+  }
+  
+  public String getFingerprint() {
+    return fingerprint;
+  }
+  
+  /**
+   * 返回当前统计数据的快照
+   */
+  public StatementSnapshot snapshot() {
+    return new StatementSnapshot(fingerprint, calls.sum(), totalNanos.sum(), maxNanos.get(), rows.sum(), 
+        mappingNanos.sum(), histogram.counts());
+  }
+}
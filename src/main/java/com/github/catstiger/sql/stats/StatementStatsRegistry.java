@@ -0,0 +1,105 @@
+package com.github.catstiger.sql.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按照SQL指纹（参见{@link Fingerprint}）记录执行统计：执行次数、总耗时、最大耗时、行数、转换对象的耗时，以及耗时的直方图。
+ * 记录的过程不加锁：指纹从{@link Fingerprint}的缓存中读取，统计使用LongAdder等原子变量累加。缺省不启用，启用之后，{@link com.github.catstiger.sql.PageExecutor}和{@link com.github.catstiger.sql.Cursor}
+ * 执行的SQL会自动记录，其他的执行方式可以调用{@link #record(String, long, long, long)}：
+ * <pre>
+ * StatementStatsRegistry.getInstance().setEnabled(true);
+ * ...
+ * for(StatementSnapshot snapshot : StatementStatsRegistry.getInstance().snapshot()) {
+ *   logger.info("{}", snapshot.toMap());
+ * }
+ * </pre>
+ * @author catstiger
+ *
+ */
+public final class StatementStatsRegistry {
+  /**
+   * 最多记录的指纹数量，超出之后的新指纹不再记录，避免拼接了常量的SQL撑满内存
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+  
+  private static final StatementStatsRegistry instance = new StatementStatsRegistry(DEFAULT_MAXIMUM_SIZE);
+  
+  private final ConcurrentMap<String, StatementStats> stats = new ConcurrentHashMap<String, StatementStats>(256);
+  private final int maximumSize;
+  private volatile boolean enabled = false;
+  
+  public StatementStatsRegistry(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+  
+  public static StatementStatsRegistry getInstance() {
+    return instance;
+  }
+  
+  public boolean isEnabled() {
+    return enabled;
+  }
+  
+  /**
+   * 启用或者停用统计
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+  
+  /**
+   * 记录一次执行，未启用的时候不做任何事情
+   * @param sql SQL语句
+   * @param elapsedNanos 执行的耗时，单位为纳秒
+   * @param rows 返回（或者影响）的行数
+   * @param mappingNanos 将结果转换为对象的耗时，单位为纳秒
+   */
+  public void record(String sql, long elapsedNanos, long rows, long mappingNanos) {
+    if(!enabled || sql == null) {
+      return;
+    }
+    String fingerprint = Fingerprint.of(sql);
+    StatementStats statementStats = stats.get(fingerprint);
+    if(statementStats == null) {
+      if(stats.size() >= maximumSize) {
+        return;
+      }
+      statementStats = new StatementStats(fingerprint);
+      StatementStats prev = stats.putIfAbsent(fingerprint, statementStats);
+      if(prev != null) {
+        statementStats = prev;
+      }
+    }
+    statementStats.record(elapsedNanos, rows, mappingNanos);
+  }
+  
+  /**
+   * 返回某个指纹的统计，如果没有记录，返回<code>null</code>
+   */
+  public StatementSnapshot get(String fingerprint) {
+    StatementStats statementStats = stats.get(fingerprint);
+    return statementStats == null ? null : statementStats.snapshot();
+  }
+  
+  /**
+   * 返回所有指纹的统计快照，按照总耗时从大到小排列
+   */
+  public List<StatementSnapshot> snapshot() {
+    List<StatementSnapshot> snapshots = new ArrayList<StatementSnapshot>(stats.size());
+    for(StatementStats statementStats : stats.values()) {
+      snapshots.add(statementStats.snapshot());
+    }
+    snapshots.sort((s1, s2) -> Long.compare(s2.getTotalNanos(), s1.getTotalNanos()));
+    return snapshots;
+  }
+  
+  /**
+   * 清除所有的统计
+   */
+  public void reset() {
+    stats.clear();
+  }
+}
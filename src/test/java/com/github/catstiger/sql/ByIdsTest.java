@@ -0,0 +1,53 @@
+package com.github.catstiger.sql;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class ByIdsTest {
+
+  @Test
+  public void testDeleteByIds() {
+    List<SQLReady> sqls = new SQLRequest(TestDbModel.class).deleteByIds(3L, 1L, 3L, 2L);
+    Assert.isTrue(sqls.size() == 1);
+    Assert.isTrue(sqls.get(0).getSql().startsWith("DELETE FROM test_db_model WHERE id IN (?,?,?"));
+    Object[] args = sqls.get(0).getArgs();
+    //去重、排序，补足16个
+    Assert.isTrue(args.length == 16 && args[0].equals(1L) && args[2].equals(3L) && args[15].equals(3L));
+    
+    long[] ids = new long[1100];
+    for(int i = 0; i < ids.length; i++) {
+      ids[i] = i;
+    }
+    sqls = new SQLRequest(TestDbModel.class).deleteByIds(ids);
+    Assert.isTrue(sqls.size() == 2 && sqls.get(0).getArgs().length == 1000 && sqls.get(1).getArgs().length == 256);
+    Assert.isTrue(new SQLRequest(TestDbModel.class).deleteByIds().isEmpty());
+  }
+  
+  @Test
+  public void testUpdateAndSelectByIds() {
+    TestDbModel model = new TestDbModel();
+    model.setUsername("bob");
+    List<SQLReady> sqls = new SQLRequest(model).updateByIds(5L, 6L);
+    Assert.isTrue(sqls.get(0).getSql().startsWith("UPDATE test_db_model SET username=? WHERE id IN (?,?"));
+    Object[] args = sqls.get(0).getArgs();
+    Assert.isTrue(args.length == 17 && "bob".equals(args[0]) && args[1].equals(5L));
+    
+    sqls = new SQLRequest(TestDbModel.class).usingAlias(true).selectByIds(5L);
+    Assert.isTrue(sqls.get(0).getSql().contains(" WHERE testDbModel.id IN (?"));
+    
+    //调用者的SQLRequest不受影响，之后仍然生成同样的SQL
+    model.setId(7L);
+    SQLRequest request = new SQLRequest(model).byId(true).namedParams(true);
+    String before = request.update().getSql();
+    request.updateByIds(5L, 6L);
+    Assert.isTrue(request.update().getSql().equals(before) && before.endsWith("WHERE id=:id"));
+    request = new SQLRequest(TestDbModel.class).byId(true);
+    before = request.select().getSql();
+    request.selectByIds(5L);
+    Assert.isTrue(request.select().getSql().equals(before) && before.contains("WHERE id=?"));
+  }
+}
@@ -0,0 +1,108 @@
+package com.github.catstiger.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+public class CompiledSqlTest {
+
+  @Test
+  public void testCompile() {
+    String namedSql = "select * from users u where u.name=:name and u.remark <> ':skip' -- :comment\n"
+        + "and u.birth::date > :birth and u.id in (:user.id, :name)";
+    CompiledSql compiled = CompiledSql.compile(namedSql);
+    Assert.isTrue(compiled == CompiledSql.compile(namedSql));
+    Assert.isTrue(compiled.getSql().equals("select * from users u where u.name=? and u.remark <> ':skip' -- :comment\n"
+        + "and u.birth::date > ? and u.id in (?, ?)"));
+    Assert.isTrue(compiled.getNames().length == 4);
+    Assert.isTrue(compiled.getNames()[2].equals("user.id"));
+    
+    Map<String, Object> params = new HashMap<>();
+    params.put("name", "sam");
+    params.put("birth", null);
+    params.put("user.id", 1L);
+    Object[] args = compiled.bind(params);
+    Assert.isTrue(args[0].equals("sam") && args[1] == null && args[2].equals(1L) && args[3].equals("sam"));
+    
+    User user = new User();
+    user.setId(2L);
+    user.setName("tom");
+    args = compiled.bindBean(user);
+    Assert.isTrue(args[0].equals("tom") && args[1] == null && args[2].equals(2L));
+  }
+  
+  @Test
+  public void testPositional() {
+    Map<String, Object> params = new HashMap<>();
+    params.put("name", "sam");
+    SQLReady sqlReady = new SQLReady("select * from users where name=:name", params).positional();
+    Assert.isTrue(sqlReady.getSql().equals("select * from users where name=?"));
+    Assert.isTrue(sqlReady.getArgs().length == 1 && sqlReady.getArgs()[0].equals("sam"));
+  }
+  
+  @Test
+  public void testExpandCollections() {
+    Map<String, Object> params = new HashMap<>();
+    params.put("ids", Arrays.asList(1L, 2L, 3L));
+    params.put("name", "x");
+    params.put("types", new int[] {7, 8});
+    params.put("data", new byte[] {1, 2});
+    String namedSql = "select * from users where id in (:ids) and name=:name and type in (:types) and data=:data";
+    SQLReady sqlReady = new SQLReady(namedSql, params).positional();
+    Assert.isTrue(sqlReady.getSql().equals("select * from users where id in (?, ?, ?) and name=? and type in (?, ?) and data=?"));
+    Object[] args = sqlReady.getArgs();
+    Assert.isTrue(args.length == 7 && args[0].equals(1L) && args[2].equals(3L) && args[3].equals("x") && args[5].equals(8));
+    Assert.isTrue(args[6] instanceof byte[]);
+    //同样的长度，使用缓存的SQL
+    params.put("ids", Arrays.asList(4L, 5L, 6L));
+    Assert.isTrue(sqlReady.getSql() == new SQLReady(namedSql, params).positional().getSql());
+    params.put("ids", Arrays.asList(4L));
+    Assert.isTrue(new SQLReady(namedSql, params).positional().getSql().startsWith("select * from users where id in (?) and"));
+    
+    //bind不能展开SQL，空的集合无法展开
+    boolean rejected = false;
+    try {
+      CompiledSql.compile(namedSql).bind(params);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    Assert.isTrue(rejected);
+    rejected = false;
+    params.put("ids", Collections.emptyList());
+    try {
+      new SQLReady(namedSql, params).positional();
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    Assert.isTrue(rejected);
+  }
+  
+  public static class User {
+    private Long id;
+    private String name;
+    private java.util.Date birth;
+    
+    public Long getId() {
+      return id;
+    }
+    public void setId(Long id) {
+      this.id = id;
+    }
+    public String getName() {
+      return name;
+    }
+    public void setName(String name) {
+      this.name = name;
+    }
+    public java.util.Date getBirth() {
+      return birth;
+    }
+    public void setBirth(java.util.Date birth) {
+      this.birth = birth;
+    }
+  }
+}
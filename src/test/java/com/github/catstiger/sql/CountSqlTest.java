@@ -0,0 +1,63 @@
+package com.github.catstiger.sql;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.limit.OracleLimitSQL;
+
+public class CountSqlTest {
+
+  @Test
+  public void testCountSql() {
+    SQLFactory sqlFactory = new SQLFactory();
+    String sql = "select u.id, u.name from users u where u.name like ? order by u.name desc limit 10, 20";
+    String countSql = sqlFactory.countSql(sql);
+    Assert.isTrue(countSql.startsWith("SELECT COUNT(*)"));
+    Assert.isTrue(!countSql.contains("table_") && !countSql.toUpperCase().contains("ORDER BY") && !countSql.toUpperCase().contains("LIMIT"));
+    Assert.isTrue(countSql.contains("?"));
+    //缓存
+    Assert.isTrue(countSql == sqlFactory.countSql(sql));
+    
+    //GROUP BY和DISTINCT，使用派生表
+    countSql = sqlFactory.countSql("select dept_id, count(*) from users group by dept_id order by dept_id");
+    Assert.isTrue(countSql.contains("table_") && !countSql.toUpperCase().contains("ORDER BY"));
+    countSql = sqlFactory.countSql("select distinct name from users");
+    Assert.isTrue(countSql.contains("table_"));
+    
+    //嵌套在表达式中的聚合函数、HAVING和窗口函数，使用派生表
+    countSql = sqlFactory.countSql("select ifnull(sum(amount),0) from orders where uid=?");
+    Assert.isTrue(countSql.contains("table_") && countSql.toUpperCase().contains("SUM(AMOUNT)"));
+    countSql = sqlFactory.countSql("select sum(amount)+1 s from orders where uid=?");
+    Assert.isTrue(countSql.contains("table_"));
+    countSql = sqlFactory.countSql("select uid from orders having uid > 10");
+    Assert.isTrue(countSql.contains("table_"));
+    countSql = sqlFactory.countSql("select id, sum(amount) over (partition by uid) from orders");
+    Assert.isTrue(countSql.contains("table_"));
+    //标量子查询中的聚合函数不影响外层查询的行数
+    countSql = sqlFactory.countSql("select u.id, (select max(o.amount) from orders o where o.uid = u.id) m from users u");
+    Assert.isTrue(countSql.startsWith("SELECT COUNT(*)") && !countSql.contains("table_"));
+    
+    //子查询中的ORDER BY不受影响
+    countSql = sqlFactory.countSql("select * from users where id in (select user_id from (select user_id from logs order by id limit 5) t) order by id");
+    Assert.isTrue(countSql.toUpperCase().contains("LIMIT 5") && !countSql.contains("table_"));
+    
+    countSql = sqlFactory.countSql("select * from users where rownum < 10 order by id", new OracleLimitSQL());
+    Assert.isTrue(countSql.startsWith("SELECT COUNT(*)") && !countSql.toUpperCase().contains("ORDER BY"));
+  }
+  
+  @Test
+  public void testUnparsedCountSql() {
+    SQLFactory sqlFactory = new SQLFactory();
+    //Druid不支持SKIP LOCKED，只去掉最外层的ORDER BY和LIMIT，子查询和之后的WHERE条件保持不变
+    String sql = "select * from users u where u.id in (select uid from logs order by id) and credit_limit > ? order by u.id limit 10 for update skip locked";
+    String countSql = sqlFactory.countSql(sql);
+    Assert.isTrue(countSql.equals("SELECT COUNT(*) FROM (select * from users u where u.id in (select uid from logs order by id) and credit_limit > ?) table_"));
+    countSql = sqlFactory.cappedCountSql(sql, 100, null);
+    Assert.isTrue(countSql.contains("order by id) and credit_limit > ? limit 0,100) table_"));
+    
+    Assert.isTrue(sqlFactory.removeOrders("select credit_limit from users order by credit_limit limit 5").equals("select credit_limit from users limit 5"));
+    Assert.isTrue(sqlFactory.removeLimit("select * from users where credit_limit > 0").equals("select * from users where credit_limit > 0"));
+    Assert.isTrue(sqlFactory.removeLimit("select * from users where name = 'limit' -- limit\n").equals("select * from users where name = 'limit' -- limit\n"));
+    Assert.isTrue(sqlFactory.removeOrders("select * from (select id from t order by id) q").equals("select * from (select id from t order by id) q"));
+  }
+}
@@ -0,0 +1,40 @@
+package com.github.catstiger.sql;
+
+import java.util.stream.Stream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.limit.H2LimitSQL;
+
+public class CursorTest {
+  private static JdbcTemplate jdbcTemplate;
+  
+  @BeforeClass
+  public static void init() {
+    DriverManagerDataSource ds = new DriverManagerDataSource("jdbc:h2:mem:cursor;DB_CLOSE_DELAY=-1", "sa", "");
+    ds.setDriverClassName("org.h2.Driver");
+    jdbcTemplate = new JdbcTemplate(ds);
+    jdbcTemplate.execute("create table cursor_users (id bigint primary key, name varchar(20))");
+    for(int i = 0; i < 50; i++) {
+      jdbcTemplate.update("insert into cursor_users (id, name) values (?,?)", i, "user" + i);
+    }
+  }
+  
+  @Test
+  public void testCursor() {
+    SQLReady sqlReady = new SQLReady("select id, name from cursor_users where id >= ?", 10).orderBy("id").withLimitSql(new H2LimitSQL());
+    Cursor<String> cursor = Cursor.open(jdbcTemplate, sqlReady, (rs, i) -> rs.getString("name"));
+    Assert.isTrue(cursor.hasNext() && cursor.hasNext());
+    Assert.isTrue(cursor.next().equals("user10") && cursor.next().equals("user11"));
+    cursor.close();
+    Assert.isTrue(!cursor.hasNext() && cursor.getRowNum() == 2);
+    
+    try(Stream<Long> ids = Cursor.stream(jdbcTemplate, sqlReady, (rs, i) -> rs.getLong("id"))) {
+      Assert.isTrue(ids.filter(id -> id % 2 == 0).count() == 20);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.github.catstiger.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class InsertBatchTest {
+  
+  private List<TestDbModel> models(int count) {
+    List<TestDbModel> models = new ArrayList<>(count);
+    for(int i = 0; i < count; i++) {
+      TestDbModel model = new TestDbModel();
+      model.setUsername("user" + i);
+      if(i % 2 == 0) {
+        model.setRealName("real" + i);
+      }
+      models.add(model);
+    }
+    return models;
+  }
+
+  @Test
+  public void testInsertBatch() {
+    List<TestDbModel> models = models(5);
+    BatchSQL batchSql = new SQLRequest(TestDbModel.class).insertBatch(models);
+    //与单条INSERT使用同样的SQL
+    Assert.isTrue(batchSql.getSql().equals(new SQLRequest(models.get(0)).insert().getSql()));
+    Assert.isTrue(batchSql.size() == 5);
+    for(int i = 0; i < 5; i++) {
+      Assert.notNull(models.get(i).getId());
+      Object[] args = batchSql.getBatchArgs().get(i);
+      Assert.isTrue(args.length == 3 && models.get(i).getId().equals(args[0]) && ("user" + i).equals(args[2]));
+    }
+    Assert.isNull(batchSql.getBatchArgs().get(1)[1]);
+  }
+  
+  @Test
+  public void testBatchIds() throws Exception {
+    //缺省的IdGen一次取得全部ID，而不是逐个调用nextId()
+    Assert.notNull(SQLFactory.DEF_IDGEN.getClass().getDeclaredMethod("nextIds", int.class));
+    List<TestDbModel> models = models(5000);
+    new SQLRequest(TestDbModel.class).insertBatch(models);
+    long prev = Long.MIN_VALUE;
+    for(TestDbModel model : models) {
+      Assert.isTrue(model.getId() > prev);
+      prev = model.getId();
+    }
+  }
+  
+  @Test
+  public void testInsertMultiRows() {
+    List<SQLReady> sqls = new SQLRequest(TestDbModel.class).batchLimit(2, 1024 * 1024).insertMultiRows(models(5));
+    Assert.isTrue(sqls.size() == 3);
+    Assert.isTrue(sqls.get(0).getArgs().length == 6 && sqls.get(2).getArgs().length == 3);
+    Assert.isTrue(sqls.get(0).getSql().endsWith("VALUES (?,?,?), (?,?,?)"));
+    
+    //按照长度拆分
+    sqls = new SQLRequest(TestDbModel.class).batchLimit(1000, 150).insertMultiRows(models(5));
+    Assert.isTrue(sqls.size() > 1);
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.catstiger.sql;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.limit.OracleLimitSQL;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class KeysetTest {
+  private Keyset keyset = Keyset.orderBy("u.price", SQLReady.DESC).thenBy("u.id", SQLReady.DESC);
+
+  @Test
+  public void testCursor() {
+    Timestamp ts = new Timestamp(1500000000123L);
+    ts.setNanos(123456789);
+    Keyset ks = Keyset.orderBy("a", SQLReady.ASC).thenBy("b", SQLReady.ASC).thenBy("c", SQLReady.ASC).thenBy("id", SQLReady.ASC);
+    Object[] values = new Object[] {"a:b,c", ts, null, 7L};
+    Assert.isTrue(Arrays.equals(values, ks.parseCursor(ks.cursor(values))));
+  }
+  
+  @Test
+  public void testSeek() {
+    SQLReady first = new SQLReady("select u.id, u.price from test_db_model u where u.username=?", "bob").seek(keyset, null, 20);
+    Assert.isTrue(first.getSql().equals("select u.id, u.price from test_db_model u where u.username=? ORDER BY u.price desc, u.id desc limit 0,20"));
+    
+    TestDbModel last = new TestDbModel();
+    last.setId(9L);
+    last.setPrice(2.5);
+    String cursor = keyset.nextCursor(Arrays.asList(last), 1);
+    SQLReady next = new SQLReady("select u.id, u.price from test_db_model u where u.username=?", "bob").seek(keyset, cursor, 20);
+    Assert.isTrue(next.getSql().equals("select u.id, u.price from test_db_model u where (u.username=?) AND ((u.price, u.id) < (?, ?)) "
+        + "ORDER BY u.price desc, u.id desc limit 0,20"));
+    Assert.isTrue(Arrays.equals(next.getArgs(), new Object[] {"bob", 2.5, 9L}));
+    
+    //Oracle不支持行值比较，没有WHERE子句
+    next = new SQLReady("select u.id, u.price from test_db_model u").withLimitSql(new OracleLimitSQL()).seek(keyset, cursor, 20);
+    Assert.isTrue(next.getSql().contains("WHERE ((u.price < ?) OR (u.price = ? AND u.id < ?)) ORDER BY"));
+    Assert.isTrue(Arrays.equals(next.getArgs(), new Object[] {2.5, 2.5, 9L}));
+    
+    //命名参数，Map
+    Map<String, Object> row = new HashMap<>();
+    row.put("price", 2.5);
+    row.put("id", 9L);
+    Map<String, Object> params = new HashMap<>();
+    params.put("name", "bob");
+    next = new SQLReady("select u.id, u.price from test_db_model u where (u.username=:name)", params)
+        .seek(keyset, keyset.nextCursor(Arrays.asList(row), 1), 20);
+    Assert.isTrue(next.getSql().contains("where ((u.username=:name)) AND ((u.price, u.id) < (:seek0, :seek1))"));
+    Assert.isTrue(next.getNamedParameters().size() == 3);
+    
+    //原始条件中的OR不影响游标条件
+    next = new SQLReady("select u.id, u.price from test_db_model u where u.username=? or u.email=?", "bob", "bob@x.com")
+        .seek(keyset, cursor, 20);
+    Assert.isTrue(next.getSql().startsWith("select u.id, u.price from test_db_model u where (u.username=? or u.email=?) "
+        + "AND ((u.price, u.id) < (?, ?)) ORDER BY"));
+    Assert.isTrue(Arrays.equals(next.getArgs(), new Object[] {"bob", "bob@x.com", 2.5, 9L}));
+    //子查询中的WHERE和GROUP BY不受影响
+    next = new SQLReady("select u.id, u.price from test_db_model u where u.id in (select max(id) from logs where a=? group by b)", 1)
+        .seek(keyset, cursor, 20);
+    Assert.isTrue(next.getSql().startsWith("select u.id, u.price from test_db_model u where (u.id in (select max(id) from logs where a=? group by b)) AND"));
+  }
+  
+  @Test
+  public void testSeekUnsupported() {
+    String[] sqls = new String[] {
+        "select dept, max(price) from test_db_model group by dept",
+        "select dept from test_db_model where price > ? having count(*) > 1",
+        "select id, price from a union select id, price from b",
+        "select id, price from test_db_model limit 10",
+        "select id, price from test_db_model order by id"
+    };
+    for(String sql : sqls) {
+      boolean rejected = false;
+      try {
+        new SQLReady(sql).seek(keyset, null, 20);
+      } catch (IllegalArgumentException e) {
+        rejected = true;
+      }
+      Assert.isTrue(rejected, sql);
+    }
+  }
+}
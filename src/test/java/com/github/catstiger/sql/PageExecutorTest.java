@@ -0,0 +1,92 @@
+package com.github.catstiger.sql;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.count.CappedCount;
+import com.github.catstiger.sql.count.EstimatedCount;
+import com.github.catstiger.sql.limit.H2LimitSQL;
+
+public class PageExecutorTest {
+  private static JdbcTemplate jdbcTemplate;
+  
+  @BeforeClass
+  public static void init() {
+    DriverManagerDataSource ds = new DriverManagerDataSource("jdbc:h2:mem:page_executor;DB_CLOSE_DELAY=-1", "sa", "");
+    ds.setDriverClassName("org.h2.Driver");
+    jdbcTemplate = new JdbcTemplate(ds);
+    jdbcTemplate.execute("create table page_users (id bigint primary key, name varchar(20), dept int)");
+    for(int i = 0; i < 50; i++) {
+      jdbcTemplate.update("insert into page_users (id, name, dept) values (?,?,?)", i, "user" + i, i % 2);
+    }
+  }
+  
+  private SQLReady sqlReady() {
+    return new SQLReady("select id, name from page_users where dept = ?", 1).orderBy("id").withLimitSql(new H2LimitSQL());
+  }
+  
+  @Test
+  public void testQuery() {
+    PageExecutor pageExecutor = new PageExecutor(jdbcTemplate);
+    Page page = pageExecutor.query(sqlReady(), 20, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25 && page.getRows().size() == 5);
+    Assert.isTrue(page.getRows().iterator().next().equals(41L));
+  }
+  
+  @Test
+  public void testSkipAndCache() {
+    PageExecutor pageExecutor = new PageExecutor(jdbcTemplate).skipCountOnShortPage(true).cacheTotals(60000L);
+    //不满一页，总数由行数得出
+    Page page = pageExecutor.query(sqlReady(), 20, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25);
+    page = pageExecutor.query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25 && page.getRows().size() == 10);
+    
+    //使用缓存的总数
+    jdbcTemplate.update("insert into page_users (id, name, dept) values (?,?,?)", 101, "user101", 1);
+    page = pageExecutor.query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25);
+    pageExecutor.clearTotals();
+    page = pageExecutor.query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 26);
+    jdbcTemplate.update("delete from page_users where id = ?", 101);
+  }
+  
+  @Test
+  public void testInTransaction() {
+    TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+    tx.execute(status -> {
+      //COUNT查询使用事务的连接，可以看到尚未提交的数据
+      jdbcTemplate.update("insert into page_users (id, name, dept) values (?,?,?)", 102, "user102", 1);
+      Page page = new PageExecutor(jdbcTemplate).query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+      Assert.isTrue(page.getTotal() == 26 && page.getRows().size() == 10);
+      status.setRollbackOnly();
+      return null;
+    });
+    Page page = new PageExecutor(jdbcTemplate).query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25);
+  }
+  
+  @Test
+  public void testCountStrategy() {
+    PageExecutor pageExecutor = new PageExecutor(jdbcTemplate).countStrategy(new CappedCount(20));
+    Page page = pageExecutor.query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 20 && !page.isTotalExact());
+    page = pageExecutor.countStrategy(new CappedCount(100)).query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25 && page.isTotalExact());
+    
+    //H2的EXPLAIN没有rows，使用精确的总数
+    page = pageExecutor.countStrategy(new EstimatedCount()).query(sqlReady(), 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25 && page.isTotalExact());
+    
+    //MySQL方言，但是H2没有table_rows，SQL出错，使用精确的总数
+    SQLReady mysql = new SQLReady("select id, name from page_users where dept = ?", 1).orderBy("id");
+    page = pageExecutor.countStrategy(new EstimatedCount("page_users")).query(mysql, 0, 10, (rs, i) -> rs.getLong("id"));
+    Assert.isTrue(page.getTotal() == 25 && page.isTotalExact());
+  }
+}
@@ -0,0 +1,62 @@
+package com.github.catstiger.sql;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class ParameterBinderTest {
+  
+  /**
+   * 记录PreparedStatement的setXXX调用，例如setLong(1,100)
+   */
+  private PreparedStatement recorder(List<String> calls) {
+    return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class},
+        (proxy, method, args) -> {
+          calls.add(method.getName() + Arrays.toString(args));
+          return null;
+        });
+  }
+  
+  @Test
+  public void testBind() throws Exception {
+    List<String> calls = new ArrayList<>();
+    Date date = new Date(0L);
+    SQLReady sqlReady = new SQLReady("select * from users where id=? and name=? and birth>? and dept_id=?", 
+        1L, "sam", date, null);
+    sqlReady.bindTo(recorder(calls));
+    Assert.isTrue(calls.get(0).equals("setLong[1, 1]"));
+    Assert.isTrue(calls.get(1).equals("setString[2, sam]"));
+    Assert.isTrue(calls.get(2).equals("setTimestamp[3, " + new Timestamp(0L) + "]"));
+    Assert.isTrue(calls.get(3).equals("setNull[4, " + Types.NULL + "]"));
+  }
+  
+  @Test
+  public void testBindBatch() throws Exception {
+    List<TestDbModel> models = new ArrayList<>();
+    for(int i = 0; i < 2; i++) {
+      TestDbModel model = new TestDbModel();
+      model.setUsername("user" + i);
+      if(i == 0) {
+        model.setRealName("real" + i);
+      }
+      models.add(model);
+    }
+    BatchSQL batchSql = new SQLRequest(TestDbModel.class).insertBatch(models);
+    List<String> calls = new ArrayList<>();
+    batchSql.bindTo(recorder(calls), 1);
+    Assert.isTrue(calls.get(0).equals("setLong[1, " + models.get(1).getId() + "]"));
+    //字段类型已知，null使用对应的SQL类型
+    Assert.isTrue(calls.get(1).equals("setNull[2, " + Types.VARCHAR + "]"));
+    Assert.isTrue(calls.get(2).equals("setString[3, user1]"));
+  }
+}
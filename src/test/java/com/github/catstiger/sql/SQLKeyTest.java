@@ -0,0 +1,42 @@
+package com.github.catstiger.sql;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class SQLKeyTest {
+
+  @Test
+  public void testKey() {
+    SQLRequest request = new SQLRequest(TestDbModel.class).includes("id", "username").usingAlias(true);
+    SQLKey key = request.sqlKey(SQLKey.OP_SELECT, false);
+    //没有变化的SQLRequest，返回同一个SQLKey
+    Assert.isTrue(key == request.sqlKey(SQLKey.OP_SELECT, false));
+    
+    SQLKey other = new SQLRequest(TestDbModel.class).includes("id", "username").usingAlias(true).sqlKey(SQLKey.OP_SELECT, false);
+    Assert.isTrue(key.equals(other) && key.hashCode() == other.hashCode());
+    
+    Assert.isTrue(!key.equals(request.sqlKey(SQLKey.OP_SELECT, true)));
+    Assert.isTrue(!key.equals(request.usingAlias(false).sqlKey(SQLKey.OP_SELECT, false)));
+    Assert.isTrue(!key.equals(request.usingAlias(true).includes("price").sqlKey(SQLKey.OP_SELECT, false)));
+  }
+  
+  @Test
+  public void testCanonical() {
+    //includes的顺序和重复不影响键值和SQL
+    SQLKey key = new SQLRequest(TestDbModel.class).includes("id", "username").sqlKey(SQLKey.OP_SELECT, false);
+    SQLKey other = new SQLRequest(TestDbModel.class).includes("username", "id", "id").sqlKey(SQLKey.OP_SELECT, false);
+    Assert.isTrue(key.equals(other));
+    
+    SQLFactory factory = new SQLFactory();
+    String sql = factory.select(new SQLRequest(TestDbModel.class).includes("id", "username"), false).getSql();
+    Assert.isTrue(sql == factory.select(new SQLRequest(TestDbModel.class).includes("username", "id"), false).getSql());
+    Assert.isTrue(sql == new SQLFactory().select(new SQLRequest(TestDbModel.class).includes("username", "id"), false).getSql());
+    Assert.isTrue(sql.indexOf('\n') < 0);
+    
+    Assert.isTrue(SQLText.canonical(" SELECT  a,\n b FROM ( SELECT 1 ) t WHERE c = ' x  y ' ").equals(
+        "SELECT a, b FROM (SELECT 1) t WHERE c = ' x  y '"));
+    Assert.isTrue(SQLText.intern("SELECT\n1") == SQLText.intern("SELECT 1"));
+  }
+}
@@ -0,0 +1,46 @@
+package com.github.catstiger.sql;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class SQLReadyTest {
+
+  @Test
+  public void testAppend() {
+    SQLReady sqlReady = new SQLReady("select * from users where 1=1")
+        .append("and name like ?", "s%")
+        .append("and degree > ?", () -> true, 3)
+        .appendIfExists("and dept = ?", null);
+    for(int i = 0; i < 20; i++) {
+      sqlReady.append("and c" + i + " = ?", i);
+    }
+    Assert.isTrue(sqlReady.hasWhere() && !sqlReady.hasOrderBy());
+    Assert.isTrue(sqlReady.getSql().startsWith("select * from users where 1=1 and name like ? and degree > ? and c0 = ?"));
+    Assert.isTrue(sqlReady.getSql() == sqlReady.getSql());
+    Assert.isTrue(sqlReady.getArgs().length == 22);
+    
+    sqlReady.orderBy("birth", SQLReady.DESC).orderBy("id");
+    Assert.isTrue(sqlReady.getSql().endsWith("and c19 = ?  ORDER BY birth desc  , id "));
+    
+    //原始SQL中的小写order by
+    sqlReady = new SQLReady("select * from users order by name").orderBy("id", SQLReady.ASC);
+    Assert.isTrue(sqlReady.getSql().equals("select * from users order by name  , id asc"));
+  }
+  
+  @Test
+  public void testSqlFactory() {
+    //SQLFactory生成的SQLReady，使用该实例的COUNT缓存
+    SQLFactory sqlFactory = new SQLFactory();
+    SQLReady sqlReady = new SQLRequest(TestDbModel.class).sqlFactory(sqlFactory).select().append("where username = ?", "bob");
+    String countSql = sqlReady.countSql();
+    Assert.isTrue(countSql.startsWith("SELECT COUNT(*)") && countSql == sqlReady.countSql());
+    Assert.isTrue(sqlFactory.getCountCacheStats().getSize() == 1 && sqlFactory.getCountCacheStats().getHitCount() == 1);
+    
+    sqlReady = new SQLReady("select * from users where id > ?", 1).withSqlFactory(sqlFactory);
+    sqlReady.cappedCountSql(100);
+    Assert.isTrue(sqlFactory.getCountCacheStats().getSize() == 2);
+    Assert.isTrue(SQLFactory.getInstance() == SQLFactory.getInstance());
+  }
+}
@@ -0,0 +1,98 @@
+package com.github.catstiger.sql;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.cache.SQLCacheStats;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class SQLTemplateTest {
+
+  private TestDbModel model(Long id, String username, Double price) {
+    TestDbModel model = new TestDbModel();
+    model.setId(id);
+    model.setUsername(username);
+    model.setPrice(price);
+    return model;
+  }
+
+  @Test
+  public void testInsert() {
+    SQLFactory sqlFactory = new SQLFactory();
+    SQLReady sqlReady = new SQLRequest(model(7L, "bob", 3.0)).sqlFactory(sqlFactory).insert();
+    Assert.isTrue(sqlReady.getSql().equals("INSERT INTO test_db_model (id,price,username) VALUES (?,?,?)"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {7L, 3.0, "bob"}));
+
+    //price为null，不包括在内
+    sqlReady = new SQLRequest(model(8L, "sam", null)).sqlFactory(sqlFactory).insert();
+    Assert.isTrue(sqlReady.getSql().equals("INSERT INTO test_db_model (id,username) VALUES (?,?)"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {8L, "sam"}));
+
+    //includesNull，包括全部字段
+    sqlReady = new SQLRequest(model(9L, "tom", null)).sqlFactory(sqlFactory).includesNull(true).includes("username", "price").insert();
+    Assert.isTrue(sqlReady.getSql().equals("INSERT INTO test_db_model (price,username) VALUES (?,?)"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {null, "tom"}));
+
+    //命名参数
+    sqlReady = new SQLRequest(model(10L, "ann", 1.5)).sqlFactory(sqlFactory).namedParams(true).insert();
+    Assert.isTrue(sqlReady.getSql().equals("INSERT INTO test_db_model (id,price,username) VALUES (:id,:price,:username)"));
+    Assert.isTrue(sqlReady.getNamedParameters().size() == 3 && sqlReady.getNamedParameters().get("price").equals(1.5));
+  }
+
+  @Test
+  public void testUpdate() {
+    SQLFactory sqlFactory = new SQLFactory();
+    SQLReady sqlReady = new SQLRequest(model(7L, "bob", 3.0)).sqlFactory(sqlFactory).updateById();
+    Assert.isTrue(sqlReady.getSql().equals("UPDATE test_db_model SET price=?,username=? WHERE id=?"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {3.0, "bob", 7L}));
+
+    sqlReady = new SQLRequest(model(7L, "bob", null)).sqlFactory(sqlFactory).updateById();
+    Assert.isTrue(sqlReady.getSql().equals("UPDATE test_db_model SET username=? WHERE id=?"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {"bob", 7L}));
+
+    sqlReady = new SQLRequest(model(7L, "bob", null)).sqlFactory(sqlFactory).includes("username", "price").includesNull(true).updateById();
+    Assert.isTrue(sqlReady.getSql().equals("UPDATE test_db_model SET price=?,username=? WHERE id=?"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {null, "bob", 7L}));
+
+    //命名参数，WHERE id=:id，主键的值也在Map中
+    sqlReady = new SQLRequest(model(7L, "bob", 3.0)).sqlFactory(sqlFactory).namedParams(true).updateById();
+    Assert.isTrue(sqlReady.getSql().equals("UPDATE test_db_model SET price=:price,username=:username WHERE id=:id"));
+    Assert.isTrue(sqlReady.getNamedParameters().size() == 3 && sqlReady.getNamedParameters().get("id").equals(7L));
+  }
+
+  @Test
+  public void testConditions() {
+    SQLFactory sqlFactory = new SQLFactory();
+    SQLReady sqlReady = new SQLRequest(model(7L, "bob", null)).sqlFactory(sqlFactory).conditions();
+    Assert.isTrue(sqlReady.getSql().equals("id=? AND LOCATE(?,username) > 0"));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {7L, "bob"}));
+
+    sqlReady = new SQLRequest(model(null, "bob", null)).sqlFactory(sqlFactory).usingAlias(true).conditions();
+    Assert.isTrue(sqlReady.getSql().equals("LOCATE(?,testDbModel.username) > 0"));
+
+    sqlReady = new SQLRequest(model(7L, "bob", null)).sqlFactory(sqlFactory).namedParams(true).conditions();
+    Assert.isTrue(sqlReady.getSql().equals("id=:id AND LOCATE(:username,username) > 0"));
+    Assert.isTrue(sqlReady.getNamedParameters().get("username").equals("bob"));
+  }
+
+  @Test
+  public void testCacheHit() {
+    SQLFactory sqlFactory = new SQLFactory();
+    SQLReady first = new SQLRequest(model(7L, "bob", 3.0)).sqlFactory(sqlFactory).insert();
+    //同样的字段，值不同，使用缓存的模板
+    SQLReady second = new SQLRequest(model(8L, "sam", 4.0)).sqlFactory(sqlFactory).insert();
+    Assert.isTrue(first.getSql() == second.getSql());
+    Assert.isTrue(Arrays.equals(second.getArgs(), new Object[] {8L, 4.0, "sam"}));
+    SQLCacheStats stats = sqlFactory.getTemplateCacheStats();
+    Assert.isTrue(stats.getHitCount() == 1 && stats.getMissCount() == 1 && stats.getSize() == 1);
+
+    //不同的字段，或者不同的操作，使用不同的模板
+    new SQLRequest(model(9L, "tom", null)).sqlFactory(sqlFactory).insert();
+    new SQLRequest(model(9L, "tom", 3.0)).sqlFactory(sqlFactory).updateById();
+    new SQLRequest(model(9L, "tom", 3.0)).sqlFactory(sqlFactory).namedParams(true).updateById();
+    stats = sqlFactory.getTemplateCacheStats();
+    Assert.isTrue(stats.getHitCount() == 1 && stats.getSize() == 4);
+  }
+}
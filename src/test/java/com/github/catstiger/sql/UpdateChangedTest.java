@@ -0,0 +1,27 @@
+package com.github.catstiger.sql;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class UpdateChangedTest {
+
+  @Test
+  public void testUpdateChanged() {
+    TestDbModel model = new TestDbModel();
+    model.setId(7L);
+    model.setUsername("bob");
+    model.setPrice(3.0);
+    model.takeSnapshot();
+    //没有变化
+    Assert.isNull(new SQLRequest(model).updateChanged());
+    
+    model.setPrice(4.0);
+    model.setUsername(null);
+    SQLReady sqlReady = new SQLRequest(model).updateChanged();
+    Assert.isTrue("UPDATE test_db_model SET price=?,username=? WHERE id=?".equals(sqlReady.getSql()));
+    Object[] args = sqlReady.getArgs();
+    Assert.isTrue(args.length == 3 && Double.valueOf(4.0).equals(args[0]) && args[1] == null && Long.valueOf(7L).equals(args[2]));
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.catstiger.sql;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.limit.H2LimitSQL;
+import com.github.catstiger.sql.limit.OracleLimitSQL;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class UpsertTest {
+  
+  private TestDbModel model() {
+    TestDbModel model = new TestDbModel();
+    model.setId(7L);
+    model.setUsername("bob");
+    model.setPrice(3.0);
+    return model;
+  }
+
+  @Test
+  public void testUpsert() {
+    SQLReady sqlReady = new SQLRequest(model()).upsert();
+    Assert.isTrue(("INSERT INTO test_db_model (id,price,username) VALUES (?,?,?) "
+        + "ON DUPLICATE KEY UPDATE price=VALUES(price),username=VALUES(username)").equals(sqlReady.getSql()));
+    Assert.isTrue(Arrays.equals(sqlReady.getArgs(), new Object[] {7L, 3.0, "bob"}));
+    
+    sqlReady = new SQLRequest(model()).withLimitSql(new H2LimitSQL()).upsert();
+    Assert.isTrue("MERGE INTO test_db_model (id,price,username) KEY(id) VALUES (?,?,?)".equals(sqlReady.getSql()));
+    
+    sqlReady = new SQLRequest(model()).withLimitSql(new OracleLimitSQL()).upsert();
+    Assert.isTrue(("MERGE INTO test_db_model d USING (SELECT ? AS id, ? AS price, ? AS username FROM dual) s ON (d.id = s.id) "
+        + "WHEN MATCHED THEN UPDATE SET d.price = s.price, d.username = s.username "
+        + "WHEN NOT MATCHED THEN INSERT (id, price, username) VALUES (s.id, s.price, s.username)").equals(sqlReady.getSql()));
+    Assert.isTrue(sqlReady.getArgs().length == 3);
+  }
+  
+  @Test
+  public void testUpsertBatch() {
+    TestDbModel other = model();
+    other.setId(null);
+    List<BatchSQL> batches = new SQLRequest(TestDbModel.class).withLimitSql(new H2LimitSQL()).upsertBatch(Arrays.asList(model(), other));
+    Assert.isTrue(batches.size() == 1);
+    BatchSQL batchSql = batches.get(0);
+    Assert.isTrue(batchSql.getSql().startsWith("MERGE INTO test_db_model"));
+    Assert.isTrue(batchSql.size() == 2 && batchSql.getBatchArgs().get(1)[0] != null);
+  }
+  
+  @Test
+  public void testUpsertBatchMixedNulls() {
+    //第二个实体的price为null，不能覆盖已经存在的值
+    TestDbModel noPrice = model();
+    noPrice.setId(8L);
+    noPrice.setPrice(null);
+    TestDbModel third = model();
+    third.setId(9L);
+    List<BatchSQL> batches = new SQLRequest(TestDbModel.class).upsertBatch(Arrays.asList(model(), noPrice, third));
+    Assert.isTrue(batches.size() == 2);
+    Assert.isTrue(batches.get(0).getSql().equals("INSERT INTO test_db_model (id,price,username) VALUES (?,?,?) "
+        + "ON DUPLICATE KEY UPDATE price=VALUES(price),username=VALUES(username)"));
+    Assert.isTrue(batches.get(0).size() == 2 && Arrays.equals(batches.get(0).getBatchArgs().get(1), new Object[] {9L, 3.0, "bob"}));
+    Assert.isTrue(batches.get(1).getSql().equals("INSERT INTO test_db_model (id,username) VALUES (?,?) "
+        + "ON DUPLICATE KEY UPDATE username=VALUES(username)"));
+    Assert.isTrue(Arrays.equals(batches.get(1).getBatchArgs().get(0), new Object[] {8L, "bob"}));
+    
+    //includesNull，全部字段，只有一个BatchSQL
+    batches = new SQLRequest(TestDbModel.class).includesNull(true).upsertBatch(Arrays.asList(model(), noPrice));
+    Assert.isTrue(batches.size() == 1 && batches.get(0).size() == 2);
+  }
+}
@@ -0,0 +1,53 @@
+package com.github.catstiger.sql.cache;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.SQLFactory;
+import com.github.catstiger.sql.SQLRequest;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class LruSQLCacheTest {
+
+  @Test
+  public void testEviction() {
+    LruSQLCache<String, String> cache = new LruSQLCache<>(16);
+    for(int i = 0; i < 16; i++) {
+      cache.put("k" + i, "v" + i);
+    }
+    Assert.isTrue("v0".equals(cache.get("k0"))); //k0被访问，k1成为最久没有使用的
+    cache.put("k16", "v16");
+    
+    Assert.isNull(cache.get("k1"));
+    Assert.notNull(cache.get("k0"));
+    SQLCacheStats stats = cache.stats();
+    Assert.isTrue(stats.getSize() == 16);
+    Assert.isTrue(stats.getEvictionCount() == 1);
+    Assert.isTrue(stats.getHitCount() == 2 && stats.getMissCount() == 1);
+  }
+  
+  @Test
+  public void testBatchEviction() {
+    LruSQLCache<Integer, Integer> cache = new LruSQLCache<>(256);
+    for(int i = 0; i < 1000; i++) {
+      cache.put(i, i);
+      //0-9一直被访问，不会被淘汰
+      for(int k = 0; k < 10 && k <= i; k++) {
+        Assert.notNull(cache.get(k));
+      }
+    }
+    Assert.isTrue(cache.size() <= 256 && cache.size() > 256 - 16);
+    Assert.isTrue(cache.stats().getEvictionCount() == 1000 - cache.size());
+    Assert.notNull(cache.get(999));
+  }
+  
+  @Test
+  public void testFactoryCache() {
+    SQLFactory sqlFactory = new SQLFactory(LruSQLCache.provider(4));
+    SQLRequest request = new SQLRequest(TestDbModel.class).sqlFactory(sqlFactory);
+    request.select();
+    request.select();
+    SQLCacheStats stats = sqlFactory.getSqlCacheStats();
+    Assert.isTrue(stats.getHitCount() == 1 && stats.getMissCount() == 1 && stats.getSize() == 1);
+  }
+}
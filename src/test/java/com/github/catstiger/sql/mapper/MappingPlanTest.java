@@ -0,0 +1,451 @@
+package com.github.catstiger.sql.mapper;
+
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.BaseEntity;
+import com.github.catstiger.sql.SQLReady;
+import com.github.catstiger.sql.SQLRequest;
+import com.github.catstiger.sql.annotation.LobPrefix;
+import com.github.catstiger.sql.mapper.rsi.ClobRSInvoker;
+import com.github.catstiger.sql.mapper.rsi.StringRSInvoker;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class MappingPlanTest {
+  private static JdbcTemplate jdbcTemplate;
+  
+  @BeforeClass
+  public static void init() {
+    DriverManagerDataSource ds = new DriverManagerDataSource("jdbc:h2:mem:mapping;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=FALSE", "sa", "");
+    ds.setDriverClassName("org.h2.Driver");
+    jdbcTemplate = new JdbcTemplate(ds);
+    jdbcTemplate.execute("create table test_ref_model (id bigint primary key, title varchar(50), descn clob, ref_cate_id bigint)");
+    jdbcTemplate.execute("create table test_db_model (id bigint primary key, username varchar(20), price double, "
+        + "real_name varchar(20), ref_model_id bigint, body clob)");
+    jdbcTemplate.update("insert into test_ref_model (id, title) values (?,?)", 9L, "ref");
+    jdbcTemplate.update("insert into test_db_model (id, username, price, real_name, ref_model_id, body) values (?,?,?,?,?,?)",
+        1L, "sam", 2.5, "Sam", 9L, "long text");
+    jdbcTemplate.update("insert into test_db_model (id, username) values (?,?)", 2L, "bob");
+    jdbcTemplate.execute("create table prim_bean (id bigint, age int, score double, active boolean, level smallint, "
+        + "rank smallint, total int)");
+    jdbcTemplate.update("insert into prim_bean values (?,?,?,?,?,?,?)", 1L, null, 1.5, true, 2, 3, null);
+    jdbcTemplate.execute("create table type_bean (id bigint, status varchar(10), level int, birth date, created timestamp, "
+        + "modified timestamp, token uuid, code varchar(36), amount decimal(30), data varbinary(10), flag tinyint)");
+    jdbcTemplate.update("insert into type_bean values (1, 'ON', 1, '2020-01-02', '2020-01-02 03:04:05', '2020-01-02 03:04:05', "
+        + "'c0a80101-0000-0000-0000-000000000001', 'c0a80101-0000-0000-0000-000000000002', 123456789012345678901234567890, X'0102', 7)");
+    jdbcTemplate.execute("create table lob_bean (id bigint, summary clob, body clob, note clob, data blob, raw blob)");
+    jdbcTemplate.update("insert into lob_bean values (1, 'abcdefghij', 'abcdefghij', 'note text', X'010203', X'0405')");
+    jdbcTemplate.execute("create table prefix_bean (id bigint primary key, summary clob, title varchar(20))");
+    jdbcTemplate.update("insert into prefix_bean values (1, 'abcdefghij', 'old')");
+  }
+  
+  @Test
+  public void testPlan() {
+    String sql = new SQLRequest(TestDbModel.class).includes("id", "username", "price", "realName", "refModel")
+        .usingAlias(false).select(false).getSql() + " ORDER BY id";
+    List<TestDbModel> models = jdbcTemplate.query(sql, new BeanRowMapper<TestDbModel>(TestDbModel.class));
+    Assert.isTrue(models.size() == 2);
+    TestDbModel model = models.get(0);
+    Assert.isTrue(model.getId().equals(1L) && "sam".equals(model.getUsername()) && model.getPrice().equals(2.5));
+    Assert.isTrue("Sam".equals(model.getRealName()) && model.getRefModel().getId().equals(9L));
+    //SQL NULL不再变成0，外键为null则不创建引用的对象
+    Assert.isTrue(models.get(1).getPrice() == null && models.get(1).getRefModel() == null);
+    
+    //相同结构的ResultSet，不同的BeanRowMapper实例共享映射计划
+    long misses = BeanRowMapper.getPlanCacheStats().getMissCount();
+    jdbcTemplate.query(sql, new BeanRowMapper<TestDbModel>(TestDbModel.class));
+    Assert.isTrue(BeanRowMapper.getPlanCacheStats().getMissCount() == misses);
+    
+    sql = new SQLRequest(TestDbModel.class).includes("id", "username", "refModel", "title")
+        .usingAlias(true).select(true).getSql() + " ORDER BY testDbModel.id";
+    models = jdbcTemplate.query(sql, new BeanRowMapper<TestDbModel>(TestDbModel.class));
+    Assert.isTrue(models.size() == 1 && "ref".equals(models.get(0).getRefModel().getTitle()));
+    Assert.isTrue(BeanRowMapper.getPlanCacheStats().getMissCount() == misses + 1);
+    
+    //ResultSet中没有对应字段的引用对象不会被创建
+    sql = new SQLRequest(TestDbModel.class).includes("id", "username").select(false).getSql();
+    models = jdbcTemplate.query(sql, new BeanRowMapper<TestDbModel>(TestDbModel.class));
+    Assert.isTrue(models.get(0).getRefModel() == null && models.get(0).getRefTiger() == null);
+  }
+  
+  @Test
+  public void testColumnType() {
+    //CLOB的读取方式根据字段类型一次选定
+    StringRSInvoker invoker = new StringRSInvoker();
+    Assert.isTrue(invoker.forColumnType(Types.CLOB) == ClobRSInvoker.CLOB);
+    Assert.isTrue(invoker.forColumnType(Types.NCLOB) == ClobRSInvoker.NCLOB);
+    Assert.isTrue(!(invoker.forColumnType(Types.VARCHAR) instanceof ClobRSInvoker));
+    
+    String sql = new SQLRequest(TestDbModel.class).includes("id", "body").select(false).getSql() + " ORDER BY id";
+    List<TestDbModel> models = jdbcTemplate.query(sql, new BeanRowMapper<TestDbModel>(TestDbModel.class));
+    Assert.isTrue("long text".equals(models.get(0).getBody()) && models.get(1).getBody() == null);
+  }
+  
+  @Test
+  public void testPrimitive() {
+    List<PrimBean> beans = jdbcTemplate.query("select id, age, score, active, level, rank, total from prim_bean", 
+        new BeanRowMapper<PrimBean>(PrimBean.class));
+    PrimBean bean = beans.get(0);
+    Assert.isTrue(bean.getId() == 1L && bean.getAge() == 0 && bean.getScore() == 1.5 && bean.isActive());
+    Assert.isTrue(bean.getLevel() == 2 && bean.getRank().equals((short) 3) && bean.getTotal() == null);
+  }
+  
+  @Entity
+  @Table(name = "prim_bean")
+  public static class PrimBean {
+    private long id;
+    private int age = -1;
+    private double score;
+    private boolean active;
+    private short level;
+    private Short rank;
+    private Integer total = -1;
+    
+    public long getId() {
+      return id;
+    }
+    
+    public void setId(long id) {
+      this.id = id;
+    }
+    
+    public int getAge() {
+      return age;
+    }
+    
+    public void setAge(int age) {
+      this.age = age;
+    }
+    
+    public double getScore() {
+      return score;
+    }
+    
+    public void setScore(double score) {
+      this.score = score;
+    }
+    
+    public boolean isActive() {
+      return active;
+    }
+    
+    public void setActive(boolean active) {
+      this.active = active;
+    }
+    
+    public short getLevel() {
+      return level;
+    }
+    
+    public void setLevel(short level) {
+      this.level = level;
+    }
+    
+    public Short getRank() {
+      return rank;
+    }
+    
+    public void setRank(Short rank) {
+      this.rank = rank;
+    }
+    
+    public Integer getTotal() {
+      return total;
+    }
+    
+    public void setTotal(Integer total) {
+      this.total = total;
+    }
+  }
+  
+  @Test
+  public void testTypes() {
+    List<TypeBean> beans = jdbcTemplate.query("select * from type_bean", new BeanRowMapper<TypeBean>(TypeBean.class));
+    TypeBean bean = beans.get(0);
+    Assert.isTrue(bean.getStatus() == Status.ON && bean.getLevel() == Status.ON);
+    Assert.isTrue(bean.getBirth().equals(LocalDate.of(2020, 1, 2)));
+    Assert.isTrue(bean.getCreated().equals(LocalDateTime.of(2020, 1, 2, 3, 4, 5)));
+    Assert.isTrue(bean.getModified().equals(Timestamp.valueOf("2020-01-02 03:04:05").toInstant()));
+    Assert.isTrue(bean.getToken().equals(UUID.fromString("c0a80101-0000-0000-0000-000000000001")));
+    Assert.isTrue(bean.getCode().equals(UUID.fromString("c0a80101-0000-0000-0000-000000000002")));
+    Assert.isTrue(bean.getAmount().equals(new BigInteger("123456789012345678901234567890")));
+    Assert.isTrue(bean.getData().length == 2 && bean.getFlag().equals((byte) 7));
+    
+    //注册自定义的RSInvoker
+    ResultSetInvokerFactory.register(Byte.class, (rs, index) -> (byte) 8);
+    try {
+      beans = jdbcTemplate.query("select * from type_bean", new BeanRowMapper<TypeBean>(TypeBean.class));
+      Assert.isTrue(beans.get(0).getFlag().equals((byte) 8));
+    } finally {
+      ResultSetInvokerFactory.register(Byte.class, ResultSetInvokerFactory.getRSInvoker(byte.class));
+    }
+  }
+  
+  @Test
+  public void testTypedObjectPerColumn() throws Exception {
+    //第1列不支持getObject(int, Class)，第2列支持
+    java.sql.ResultSet rs = (java.sql.ResultSet) java.lang.reflect.Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {java.sql.ResultSet.class}, (proxy, method, args) -> {
+          if(method.getName().equals("getObject") && args.length == 2) {
+            if(args[0].equals(1)) {
+              throw new java.sql.SQLException("Conversion not supported");
+            }
+            return LocalDate.of(2000, 1, 1);
+          }
+          if(method.getName().equals("getDate")) {
+            return java.sql.Date.valueOf("2020-01-02");
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+    ResultSetInvoker<LocalDate> invoker = ResultSetInvokerFactory.getRSInvoker(LocalDate.class);
+    ResultSetInvoker<LocalDate> first = invoker.forColumnType(Types.DATE);
+    ResultSetInvoker<LocalDate> second = invoker.forColumnType(Types.DATE);
+    Assert.isTrue(first.get(rs, 1).equals(LocalDate.of(2020, 1, 2)));
+    //第1列的失败不影响第2列，也不影响共享的实例
+    Assert.isTrue(second.get(rs, 2).equals(LocalDate.of(2000, 1, 1)));
+    Assert.isTrue(invoker.get(rs, 2).equals(LocalDate.of(2000, 1, 1)));
+  }
+  
+  public enum Status {
+    OFF, ON
+  }
+  
+  @Entity
+  @Table(name = "type_bean")
+  public static class TypeBean {
+    private Long id;
+    private Status status;
+    private Status level;
+    private LocalDate birth;
+    private LocalDateTime created;
+    private Instant modified;
+    private UUID token;
+    private UUID code;
+    private BigInteger amount;
+    private byte[] data;
+    private Byte flag;
+    
+    public Long getId() {
+      return id;
+    }
+    
+    public void setId(Long id) {
+      this.id = id;
+    }
+    
+    public Status getStatus() {
+      return status;
+    }
+    
+    public void setStatus(Status status) {
+      this.status = status;
+    }
+    
+    public Status getLevel() {
+      return level;
+    }
+    
+    public void setLevel(Status level) {
+      this.level = level;
+    }
+    
+    public LocalDate getBirth() {
+      return birth;
+    }
+    
+    public void setBirth(LocalDate birth) {
+      this.birth = birth;
+    }
+    
+    public LocalDateTime getCreated() {
+      return created;
+    }
+    
+    public void setCreated(LocalDateTime created) {
+      this.created = created;
+    }
+    
+    public Instant getModified() {
+      return modified;
+    }
+    
+    public void setModified(Instant modified) {
+      this.modified = modified;
+    }
+    
+    public UUID getToken() {
+      return token;
+    }
+    
+    public void setToken(UUID token) {
+      this.token = token;
+    }
+    
+    public UUID getCode() {
+      return code;
+    }
+    
+    public void setCode(UUID code) {
+      this.code = code;
+    }
+    
+    public BigInteger getAmount() {
+      return amount;
+    }
+    
+    public void setAmount(BigInteger amount) {
+      this.amount = amount;
+    }
+    
+    public byte[] getData() {
+      return data;
+    }
+    
+    public void setData(byte[] data) {
+      this.data = data;
+    }
+    
+    public Byte getFlag() {
+      return flag;
+    }
+    
+    public void setFlag(Byte flag) {
+      this.flag = flag;
+    }
+  }
+  
+  @Test
+  public void testLob() {
+    //延迟读取的LOB，需要在同一个连接（事务）中读取
+    jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+      JdbcTemplate template = new JdbcTemplate(new SingleConnectionDataSource(con, true));
+      List<LobBean> beans = template.query("select * from lob_bean", new BeanRowMapper<LobBean>(LobBean.class));
+      LobBean bean = beans.get(0);
+      Assert.isTrue("abcde".equals(bean.getSummary()) && "abcdefghij".equals(bean.getBody()));
+      Assert.isTrue(bean.getNote().length() == 9 && "note".equals(bean.getNote().prefix(4)));
+      Assert.isTrue("note text".equals(bean.getNote().read()));
+      Assert.isTrue(bean.getData().length() == 3 && bean.getData().read()[2] == 3);
+      Assert.isTrue(bean.getRaw().length == 2 && bean.getRaw()[1] == 5);
+      return null;
+    });
+  }
+  
+  @Test
+  public void testPrefixReadOnly() {
+    PrefixBean bean = jdbcTemplate.query("select * from prefix_bean", new BeanRowMapper<PrefixBean>(PrefixBean.class)).get(0);
+    Assert.isTrue("abcde".equals(bean.getSummary()));
+    //只装载了前缀的字段不写回数据库
+    bean.setTitle("new");
+    SQLReady sqlReady = new SQLRequest(bean).updateById();
+    Assert.isTrue(sqlReady.getSql().equals("UPDATE prefix_bean SET title=? WHERE id=?"));
+    jdbcTemplate.update(sqlReady.getSql(), sqlReady.getArgs());
+    Assert.isTrue("abcdefghij".equals(jdbcTemplate.queryForObject("select summary from prefix_bean where id = 1", String.class)));
+    Assert.isTrue(!new SQLRequest(bean).includesNull(true).update().getSql().contains("summary"));
+    Assert.isTrue(!new SQLRequest(bean).insert().getSql().contains("summary"));
+    Assert.isTrue(!new SQLRequest(bean).upsert().getSql().contains("summary"));
+    //明确列出的时候才写入
+    Assert.isTrue(new SQLRequest(bean).includes("summary", "title").insert().getSql().contains("summary"));
+  }
+  
+  @Entity
+  @Table(name = "prefix_bean")
+  public static class PrefixBean extends BaseEntity {
+    private static final long serialVersionUID = 1L;
+    @LobPrefix(5)
+    private String summary;
+    private String title;
+    
+    public String getSummary() {
+      return summary;
+    }
+    
+    public void setSummary(String summary) {
+      this.summary = summary;
+    }
+    
+    public String getTitle() {
+      return title;
+    }
+    
+    public void setTitle(String title) {
+      this.title = title;
+    }
+  }
+  
+  @Entity
+  @Table(name = "lob_bean")
+  public static class LobBean {
+    private Long id;
+    @LobPrefix(5)
+    private String summary;
+    private String body;
+    private ClobHandle note;
+    private BlobHandle data;
+    private byte[] raw;
+    
+    public Long getId() {
+      return id;
+    }
+    
+    public void setId(Long id) {
+      this.id = id;
+    }
+    
+    public String getSummary() {
+      return summary;
+    }
+    
+    public void setSummary(String summary) {
+      this.summary = summary;
+    }
+    
+    public String getBody() {
+      return body;
+    }
+    
+    public void setBody(String body) {
+      this.body = body;
+    }
+    
+    public ClobHandle getNote() {
+      return note;
+    }
+    
+    public void setNote(ClobHandle note) {
+      this.note = note;
+    }
+    
+    public BlobHandle getData() {
+      return data;
+    }
+    
+    public void setData(BlobHandle data) {
+      this.data = data;
+    }
+    
+    public byte[] getRaw() {
+      return raw;
+    }
+    
+    public void setRaw(byte[] raw) {
+      this.raw = raw;
+    }
+  }
+}
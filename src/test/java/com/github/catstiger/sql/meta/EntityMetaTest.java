@@ -0,0 +1,48 @@
+package com.github.catstiger.sql.meta;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.SQLRequest;
+import com.github.catstiger.sql.ns.SnakeCaseNamingStrategy;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+import com.github.catstiger.sql.sync.model.TestRefModel;
+
+public class EntityMetaTest {
+
+  @Test
+  public void testColumns() {
+    EntityMeta meta = EntityMeta.get(TestDbModel.class, SQLRequest.DEFAULT_NAME_STRATEGY);
+    Assert.isTrue(meta == EntityMeta.get(TestDbModel.class, SQLRequest.DEFAULT_NAME_STRATEGY));
+    Assert.isTrue(meta != EntityMeta.get(TestDbModel.class, new SnakeCaseNamingStrategy()));
+    Assert.isTrue("test_db_model".equals(meta.getTablename()));
+    
+    Assert.notNull(meta.getPrimary());
+    Assert.isTrue("id".equals(meta.getColumns().get(0).getCol()));
+    Assert.isTrue(meta.getPrimary().getIndex() == 0);
+    //Transient和集合属性不是字段
+    Assert.isNull(meta.getColumn("priceStart"));
+    Assert.isNull(meta.getColumn("m2mModel"));
+    
+    Assert.notNull(meta.getColumn("username").getFullMatches());
+    Assert.notNull(meta.getColumn("descn").getFullText());
+    Assert.notNull(meta.getColumn("price").getRangeQuery());
+    Assert.isTrue(meta.getColumn("refModel").isForeign());
+    Assert.isTrue(meta.getForeigns().size() == 3);
+    
+    EntityMeta refMeta = EntityMeta.get(TestRefModel.class, SQLRequest.DEFAULT_NAME_STRATEGY);
+    Assert.isNull(refMeta.getColumn("ig"));
+  }
+  
+  @Test
+  public void testRangeValues() {
+    TestDbModel model = new TestDbModel();
+    model.setPrice(1.0);
+    model.setPriceStart(0.5);
+    model.setPriceEnd(2.0);
+    ColumnMeta price = EntityMeta.get(TestDbModel.class, SQLRequest.DEFAULT_NAME_STRATEGY).getColumn("price");
+    Assert.isTrue(Double.valueOf(1.0).equals(price.getValue(model)));
+    Assert.isTrue(Double.valueOf(0.5).equals(price.getRangeStartValue(model)));
+    Assert.isTrue(Double.valueOf(2.0).equals(price.getRangeEndValue(model)));
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.catstiger.sql.meta;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class PropertyAccessorTest {
+  
+  @Test
+  public void testGetterSetter() {
+    TestDbModel model = new TestDbModel();
+    PropertyAccessor accessor = PropertyAccessor.forProperty(TestDbModel.class, "username");
+    Assert.isTrue(accessor == PropertyAccessor.forProperty(TestDbModel.class, "username"));
+    accessor.set(model, "sam");
+    Assert.isTrue("sam".equals(model.getUsername()) && "sam".equals(accessor.get(model)));
+    
+    PropertyAccessor idAccessor = PropertyAccessor.forProperty(TestDbModel.class, "id");
+    idAccessor.set(model, 5L);
+    Assert.isTrue(Long.valueOf(5L).equals(idAccessor.get(model)));
+    
+    Assert.isNull(PropertyAccessor.forProperty(TestDbModel.class, "notExists"));
+  }
+  
+  @Test
+  public void testPrimitiveAndField() {
+    Bean bean = new Bean();
+    PropertyAccessor count = PropertyAccessor.forProperty(Bean.class, "count");
+    count.set(bean, 3);
+    Assert.isTrue(bean.getCount() == 3 && Integer.valueOf(3).equals(count.get(bean)));
+    count.set(bean, null); //原生类型忽略null
+    Assert.isTrue(bean.getCount() == 3);
+    count.setInt(bean, 4); //不装箱
+    Assert.isTrue(bean.getCount() == 4);
+    PropertyAccessor.forProperty(TestDbModel.class, "id").setLong(new TestDbModel(), 6L); //包装类型，装箱写入
+    
+    PropertyAccessor hidden = PropertyAccessor.forProperty(Bean.class, "hidden"); //没有Getter/Setter
+    hidden.set(bean, "h");
+    Assert.isTrue("h".equals(hidden.get(bean)));
+    
+    PropertyAccessor secret = PropertyAccessor.forProperty(PrivateBean.class, "secret"); //非public的类
+    PrivateBean privateBean = new PrivateBean();
+    secret.set(privateBean, "s");
+    Assert.isTrue("s".equals(secret.get(privateBean)));
+  }
+  
+  public static class Bean {
+    private int count;
+    @SuppressWarnings("unused")
+    private String hidden;
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+  }
+  
+  static class PrivateBean {
+    private String secret;
+
+    public String getSecret() {
+      return secret;
+    }
+
+    public void setSecret(String secret) {
+      this.secret = secret;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.github.catstiger.sql.stats;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import com.github.catstiger.sql.SQLRequest;
+import com.github.catstiger.sql.SQLReady;
+import com.github.catstiger.sql.sync.model.TestDbModel;
+
+public class StatementStatsTest {
+
+  @Test
+  public void testFingerprint() {
+    String fingerprint = Fingerprint.of("SELECT * FROM  users u1\n WHERE name = 'it''s' AND age > 18 -- comment\n AND id IN (?, ?,?) limit 0,10");
+    Assert.isTrue(fingerprint.equals("select * from users u1 where name = ? and age > ? and id in (?+) limit ?,?"), fingerprint);
+    Assert.isTrue(Fingerprint.of("select * from users where id in (?)").equals(Fingerprint.of("select * from users where id in (?, ?, ?, ?)")));
+    Assert.isTrue(Fingerprint.of("select * from users where name = :name").equals(Fingerprint.of("select * from users where name = ?")));
+    Assert.isTrue(Fingerprint.of("insert into t (a,b) values (?,?),\n(?,?)").equals("insert into t (a,b) values (?+)+"));
+    
+    //ID列表的长度不影响指纹
+    SQLReady sqlReady1 = new SQLRequest(TestDbModel.class).deleteByIds(1L, 2L).get(0);
+    SQLReady sqlReady2 = new SQLRequest(TestDbModel.class).deleteByIds(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L).get(0);
+    Assert.isTrue(!sqlReady1.getSql().equals(sqlReady2.getSql()) && sqlReady1.getFingerprint().equals(sqlReady2.getFingerprint()));
+  }
+  
+  @Test
+  public void testHistogram() {
+    for(long value : new long[] {0L, 7L, 8L, 100L, 1000L, 123456789L, Long.MAX_VALUE}) {
+      int index = LatencyHistogram.indexOf(value);
+      Assert.isTrue(LatencyHistogram.lowerBound(index) <= value && LatencyHistogram.upperBound(index) >= value);
+    }
+    LatencyHistogram histogram = new LatencyHistogram();
+    for(int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    long p50 = LatencyHistogram.percentile(histogram.counts(), 50);
+    long p99 = LatencyHistogram.percentile(histogram.counts(), 99);
+    Assert.isTrue(p50 >= 500000L && p50 < 500000L * 1.125);
+    Assert.isTrue(p99 >= 990000L && p99 < 990000L * 1.125);
+  }
+  
+  @Test
+  public void testRegistry() {
+    StatementStatsRegistry registry = new StatementStatsRegistry(10);
+    registry.record("select * from users where id = 1", 1000L, 1L, 100L);
+    Assert.isTrue(registry.snapshot().isEmpty());
+    
+    registry.setEnabled(true);
+    registry.record("select * from users where id = 1", 1000L, 1L, 100L);
+    registry.record("select * from users where id = 2", 3000L, 1L, 100L);
+    registry.record("select * from depts", 500L, 10L, 400L);
+    StatementSnapshot snapshot = registry.snapshot().get(0);
+    Assert.isTrue(snapshot.getFingerprint().equals("select * from users where id = ?"));
+    Assert.isTrue(snapshot.getCalls() == 2 && snapshot.getTotalNanos() == 4000L && snapshot.getMaxNanos() == 3000L);
+    Assert.isTrue(snapshot.getRows() == 2 && snapshot.getMappingNanos() == 200L);
+    Assert.isTrue(registry.get("select * from depts").getRows() == 10L);
+  }
+}